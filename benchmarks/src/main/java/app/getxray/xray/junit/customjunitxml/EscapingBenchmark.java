@@ -0,0 +1,127 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Escaping of attribute values and CDATA sections, for text that is already
+ * legal XML (the common case) and for text with control characters and
+ * {@code ]]>} sequences, e.g. captured from a terminal.
+ * <p>
+ * The {@code legacy*} benchmarks keep the previous stream and regex based
+ * implementation as a baseline.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EscapingBenchmark {
+
+	@Param({ "64", "4096", "262144" })
+	public int length;
+
+	@Param({ "legal", "illegal" })
+	public String text;
+
+	// the previous implementation, kept as a baseline
+	private static final Pattern LEGACY_CDATA_SPLIT_PATTERN = Pattern.compile("(?<=]])(?=>)");
+
+	private String input;
+	private XMLStreamWriter writer;
+
+	@Setup(Level.Trial)
+	public void setUp() throws XMLStreamException {
+		String unit = "legal".equals(this.text) ? "at Foo.bar(Foo.java:42) " : "\u001B[31mred\u001B[0m ]]> ";
+		StringBuilder builder = new StringBuilder(this.length + unit.length());
+		while (builder.length() < this.length) {
+			builder.append(unit);
+		}
+		this.input = builder.substring(0, this.length);
+		this.writer = XMLOutputFactory.newInstance().createXMLStreamWriter(Writer.nullWriter());
+		this.writer.writeStartElement("benchmark");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws XMLStreamException {
+		this.writer.close();
+	}
+
+	@Benchmark
+	public String escapeIllegalChars() {
+		return XmlReportWriter.escapeIllegalChars(this.input);
+	}
+
+	@Benchmark
+	public void writeCDataSafely() throws XMLStreamException {
+		XmlReportWriter.writeCDataSafely(this.writer, this.input);
+	}
+
+	@Benchmark
+	public String legacyEscapeIllegalChars() {
+		return legacyEscapeIllegalChars(this.input);
+	}
+
+	@Benchmark
+	public void legacyWriteCDataSafely() throws XMLStreamException {
+		for (String safeDataPart : LEGACY_CDATA_SPLIT_PATTERN.split(legacyEscapeIllegalChars(this.input))) {
+			this.writer.writeCData(safeDataPart);
+		}
+	}
+
+	private static String legacyEscapeIllegalChars(String text) {
+		if (text.codePoints().allMatch(EscapingBenchmark::isAllowedXmlCharacter)) {
+			return text;
+		}
+		StringBuilder result = new StringBuilder(text.length() * 2);
+		text.codePoints().forEach(codePoint -> {
+			if (isAllowedXmlCharacter(codePoint)) {
+				result.appendCodePoint(codePoint);
+			} else {
+				result.append("&#").append(codePoint).append(';');
+			}
+		});
+		return result.toString();
+	}
+
+	private static boolean isAllowedXmlCharacter(int codePoint) {
+		return codePoint == 0x9 //
+				|| codePoint == 0xA //
+				|| codePoint == 0xD //
+				|| (codePoint >= 0x20 && codePoint <= 0xD7FF) //
+				|| (codePoint >= 0xE000 && codePoint <= 0xFFFD) //
+				|| (codePoint >= 0x10000 && codePoint <= 0x10FFFF);
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading and Base64 encoding of an evidence file into an {@code <item>}
+ * element. Run with {@code -prof gc} to see the allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvidenceEncodingBenchmark {
+
+	@Param({ "65536", "1048576", "16777216" })
+	public int size;
+
+	private Path evidence;
+	private XmlReportWriter reportWriter;
+	private XMLStreamWriter writer;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException, XMLStreamException {
+		byte[] content = new byte[this.size];
+		new Random(42).nextBytes(content);
+		this.evidence = Files.createTempFile("xray-evidence-", ".png");
+		Files.write(this.evidence, content);
+		this.reportWriter = ReportFixture.create(1, 1).newXmlReportWriter();
+		this.writer = XMLOutputFactory.newInstance().createXMLStreamWriter(Writer.nullWriter());
+		this.writer.writeStartElement("benchmark");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException, XMLStreamException {
+		this.writer.close();
+		Files.deleteIfExists(this.evidence);
+	}
+
+	@Benchmark
+	public void writeEvidenceItem() throws IOException, XMLStreamException {
+		this.reportWriter.writeEvidenceItem(this.writer, this.evidence.toString());
+	}
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectUniqueId;
+import static org.junit.platform.launcher.LauncherConstants.STDOUT_REPORT_ENTRY_KEY;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.reporting.ReportEntry;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.platform.launcher.core.LauncherConfig;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.opentest4j.TestAbortedException;
+
+import app.getxray.xray.junit.customjunitxml.synthetic.SyntheticTestEngine;
+
+/**
+ * Runs a synthetic test plan once and keeps everything the listener would have
+ * recorded, so that benchmarks only measure report generation.
+ * <p>
+ * Tests are grouped in classes of {@value #TESTS_PER_CLASS}; every 10th test
+ * fails, every 25th is aborted and every test publishes captured output, with
+ * every 5th also adding a testrun comment and a testrun custom field.
+ * </p>
+ */
+final class ReportFixture implements TestExecutionListener {
+
+	static final int TESTS_PER_CLASS = 100;
+
+	private static final String ENGINE_ID = "xray-benchmark";
+
+	private final Clock clock;
+	private XmlReportData reportData;
+	private TestIdentifier root;
+
+	private ReportFixture(Clock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * @param tests number of tests
+	 * @param depth number of nested containers between the engine and the tests
+	 */
+	static ReportFixture create(int tests, int depth) {
+		SyntheticTestEngine engine = new SyntheticTestEngine(ENGINE_ID);
+		int classes = (tests + TESTS_PER_CLASS - 1) / TESTS_PER_CLASS;
+		int test = 0;
+		for (int c = 0; c < classes; c++) {
+			String className = "com.example.synthetic.Synthetic" + c + "Test";
+			TestDescriptor parent = engine.getEngineDescriptor();
+			for (int level = 0; level < Math.max(1, depth); level++) {
+				String name = level == 0 ? className : className + "$Nested" + level;
+				parent = engine.addContainer(parent, name, ClassSource.from(name));
+			}
+			for (int t = 0; t < TESTS_PER_CLASS && test < tests; t++, test++) {
+				engine.addTest(parent, "test" + test, behaviorOf(test), reportEntriesOf(test));
+			}
+		}
+
+		ReportFixture fixture = new ReportFixture(Clock.systemDefaultZone());
+		Launcher launcher = LauncherFactory.create(LauncherConfig.builder()
+				.enableTestEngineAutoRegistration(false)
+				.enableTestExecutionListenerAutoRegistration(false)
+				.addTestEngines(engine)
+				.addTestExecutionListeners(fixture)
+				.build());
+		launcher.execute(LauncherDiscoveryRequestBuilder.request()
+				.selectors(selectUniqueId(UniqueId.forEngine(ENGINE_ID)))
+				.build());
+		return fixture;
+	}
+
+	private static Runnable behaviorOf(int test) {
+		if (test % 25 == 24) {
+			return () -> {
+				throw new TestAbortedException("Assumption failed: not running on CI");
+			};
+		}
+		if (test % 10 == 9) {
+			return () -> {
+				throw new AssertionError("expected: <" + test + "> but was: <" + (test + 1) + ">");
+			};
+		}
+		return () -> {
+		};
+	}
+
+	private static List<Map<String, String>> reportEntriesOf(int test) {
+		List<Map<String, String>> entries = new ArrayList<>();
+		entries.add(Collections.singletonMap(STDOUT_REPORT_ENTRY_KEY, "output of test " + test + "\n"));
+		if (test % 5 == 0) {
+			Map<String, String> xrayEntries = new LinkedHashMap<>();
+			xrayEntries.put("xray:comment", "comment for test " + test);
+			xrayEntries.put(XrayTestReporter.TESTRUN_CUSTOMFIELD_PREFIX + "environment", "benchmark");
+			entries.add(xrayEntries);
+		}
+		return entries;
+	}
+
+	@Override
+	public void testPlanExecutionStarted(TestPlan testPlan) {
+		this.reportData = new XmlReportData(testPlan, this.clock);
+		this.root = testPlan.getRoots().iterator().next();
+	}
+
+	@Override
+	public void executionSkipped(TestIdentifier testIdentifier, String reason) {
+		this.reportData.markSkipped(testIdentifier, reason);
+	}
+
+	@Override
+	public void executionStarted(TestIdentifier testIdentifier) {
+		this.reportData.markStarted(testIdentifier);
+	}
+
+	@Override
+	public void reportingEntryPublished(TestIdentifier testIdentifier, ReportEntry entry) {
+		this.reportData.addReportEntry(testIdentifier, entry);
+	}
+
+	@Override
+	public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult result) {
+		this.reportData.markFinished(testIdentifier, result);
+	}
+
+	XmlReportData getReportData() {
+		return this.reportData;
+	}
+
+	TestIdentifier getRoot() {
+		return this.root;
+	}
+
+	List<TestIdentifier> getTests() {
+		List<TestIdentifier> tests = new ArrayList<>();
+		for (TestIdentifier testIdentifier : this.reportData.getTestPlan().getDescendants(this.root)) {
+			if (testIdentifier.isTest()) {
+				tests.add(testIdentifier);
+			}
+		}
+		return tests;
+	}
+
+	XmlReportWriter newXmlReportWriter() {
+		return new XmlReportWriter(this.reportData, false, new DefaultXrayTestMetadataReader());
+	}
+
+}
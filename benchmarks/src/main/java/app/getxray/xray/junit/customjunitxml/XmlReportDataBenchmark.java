@@ -0,0 +1,79 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.launcher.TestIdentifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Lookups done by the writer for every testcase, which walk the ancestors of
+ * the test; the nesting depth is what makes them expensive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlReportDataBenchmark {
+
+	@Param({ "1", "5", "20" })
+	public int depth;
+
+	private XmlReportData reportData;
+	private List<TestIdentifier> tests;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		ReportFixture fixture = ReportFixture.create(1000, this.depth);
+		this.reportData = fixture.getReportData();
+		this.tests = fixture.getTests();
+	}
+
+	@Benchmark
+	public void getResults(Blackhole blackhole) {
+		for (TestIdentifier test : this.tests) {
+			List<TestExecutionResult> results = this.reportData.getResults(test);
+			blackhole.consume(results);
+		}
+	}
+
+	@Benchmark
+	public void wasSkipped(Blackhole blackhole) {
+		for (TestIdentifier test : this.tests) {
+			blackhole.consume(this.reportData.wasSkipped(test));
+		}
+	}
+
+	@Benchmark
+	public void getSkipReason(Blackhole blackhole) {
+		for (TestIdentifier test : this.tests) {
+			blackhole.consume(this.reportData.getSkipReason(test));
+		}
+	}
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Recording the start and end of every test of a plan, then reading them back
+ * as the writer does: {@code maps} is the former storage, with a map per kind
+ * of event keyed by {@link TestIdentifier}, {@code indexed} is
+ * {@link XmlReportData}. Run with {@code -prof gc} to compare the allocation
+ * rate too.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlReportDataStorageBenchmark {
+
+	@Param({ "1000", "100000" })
+	public int tests;
+
+	private final Clock clock = Clock.fixed(Instant.parse("2025-01-01T10:00:00Z"), ZoneOffset.UTC);
+	private TestPlan testPlan;
+	private List<TestIdentifier> testIdentifiers;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		ReportFixture fixture = ReportFixture.create(this.tests, 1);
+		this.testPlan = fixture.getReportData().getTestPlan();
+		this.testIdentifiers = fixture.getTests();
+	}
+
+	@Benchmark
+	public void maps(Blackhole blackhole) {
+		Map<TestIdentifier, TestExecutionResult> finishedTests = new ConcurrentHashMap<>();
+		Map<TestIdentifier, Instant> startInstants = new ConcurrentHashMap<>();
+		Map<TestIdentifier, Instant> endInstants = new ConcurrentHashMap<>();
+		for (TestIdentifier test : this.testIdentifiers) {
+			startInstants.put(test, this.clock.instant());
+		}
+		for (TestIdentifier test : this.testIdentifiers) {
+			endInstants.put(test, this.clock.instant());
+			finishedTests.put(test, TestExecutionResult.successful());
+		}
+		for (TestIdentifier test : this.testIdentifiers) {
+			blackhole.consume(startInstants.getOrDefault(test, Instant.EPOCH));
+			blackhole.consume(endInstants.get(test));
+			// results are looked up for the test and all of its ancestors
+			for (TestIdentifier current = test; current != null; current = this.testPlan.getParent(current).orElse(null)) {
+				blackhole.consume(finishedTests.get(current));
+			}
+		}
+	}
+
+	@Benchmark
+	public void indexed(Blackhole blackhole) {
+		XmlReportData reportData = new XmlReportData(this.testPlan, this.clock);
+		for (TestIdentifier test : this.testIdentifiers) {
+			reportData.markStarted(test);
+		}
+		for (TestIdentifier test : this.testIdentifiers) {
+			reportData.markFinished(test, TestExecutionResult.successful());
+		}
+		for (TestIdentifier test : this.testIdentifiers) {
+			blackhole.consume(reportData.getStartInstant(test));
+			blackhole.consume(reportData.getEndInstant(test));
+			blackhole.consume(reportData.getResults(test));
+		}
+	}
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end serialization of a whole report, discarding the output, so that
+ * only the cost of building and writing the XML is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XmlReportWriterBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	public int tests;
+
+	private ReportFixture fixture;
+	private XmlReportWriter writer;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		this.fixture = ReportFixture.create(this.tests, 1);
+		this.writer = this.fixture.newXmlReportWriter();
+	}
+
+	@Benchmark
+	public void writeXmlReport() throws XMLStreamException {
+		this.writer.writeXmlReport(this.fixture.getRoot(), Writer.nullWriter());
+	}
+
+}
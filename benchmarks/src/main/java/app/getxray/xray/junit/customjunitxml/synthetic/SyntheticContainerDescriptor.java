@@ -0,0 +1,46 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml.synthetic;
+
+import static org.junit.platform.engine.support.hierarchical.Node.SkipResult.doNotSkip;
+import static org.junit.platform.engine.support.hierarchical.Node.SkipResult.skip;
+
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.support.descriptor.AbstractTestDescriptor;
+import org.junit.platform.engine.support.hierarchical.Node;
+
+public class SyntheticContainerDescriptor extends AbstractTestDescriptor
+		implements Node<SyntheticEngineExecutionContext> {
+
+	private String skippedReason;
+	private boolean skipped;
+
+	public SyntheticContainerDescriptor(UniqueId uniqueId, String displayName, TestSource source) {
+		super(uniqueId, displayName, source);
+	}
+
+	@Override
+	public Type getType() {
+		return Type.CONTAINER;
+	}
+
+	public void markSkipped(String reason) {
+		this.skipped = true;
+		this.skippedReason = reason;
+	}
+
+	@Override
+	public SkipResult shouldBeSkipped(SyntheticEngineExecutionContext context) {
+		return skipped ? skip(skippedReason) : doNotSkip();
+	}
+
+}
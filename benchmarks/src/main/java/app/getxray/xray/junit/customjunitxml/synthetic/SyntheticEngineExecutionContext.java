@@ -0,0 +1,31 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml.synthetic;
+
+import org.junit.platform.engine.EngineExecutionListener;
+import org.junit.platform.engine.support.hierarchical.EngineExecutionContext;
+
+/**
+ * Gives synthetic tests access to the listener, so that they can publish report entries.
+ */
+public class SyntheticEngineExecutionContext implements EngineExecutionContext {
+
+	private final EngineExecutionListener listener;
+
+	public SyntheticEngineExecutionContext(EngineExecutionListener listener) {
+		this.listener = listener;
+	}
+
+	public EngineExecutionListener getListener() {
+		return listener;
+	}
+
+}
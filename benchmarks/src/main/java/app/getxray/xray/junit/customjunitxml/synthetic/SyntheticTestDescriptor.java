@@ -0,0 +1,56 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml.synthetic;
+
+import static org.junit.platform.engine.support.hierarchical.Node.SkipResult.doNotSkip;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.reporting.ReportEntry;
+import org.junit.platform.engine.support.descriptor.AbstractTestDescriptor;
+import org.junit.platform.engine.support.hierarchical.Node;
+
+public class SyntheticTestDescriptor extends AbstractTestDescriptor implements Node<SyntheticEngineExecutionContext> {
+
+	private final Runnable executeBlock;
+	private final List<Map<String, String>> reportEntries;
+
+	public SyntheticTestDescriptor(UniqueId uniqueId, String displayName, TestSource source, Runnable executeBlock,
+			List<Map<String, String>> reportEntries) {
+		super(uniqueId, displayName, source);
+		this.executeBlock = executeBlock;
+		this.reportEntries = reportEntries;
+	}
+
+	@Override
+	public Type getType() {
+		return Type.TEST;
+	}
+
+	@Override
+	public SkipResult shouldBeSkipped(SyntheticEngineExecutionContext context) {
+		return doNotSkip();
+	}
+
+	@Override
+	public SyntheticEngineExecutionContext execute(SyntheticEngineExecutionContext context,
+			DynamicTestExecutor dynamicTestExecutor) {
+		for (Map<String, String> keyValuePairs : this.reportEntries) {
+			context.getListener().reportingEntryPublished(this, ReportEntry.from(keyValuePairs));
+		}
+		this.executeBlock.run();
+		return context;
+	}
+
+}
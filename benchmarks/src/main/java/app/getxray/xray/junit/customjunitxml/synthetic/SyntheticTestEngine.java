@@ -0,0 +1,78 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml.synthetic;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.platform.engine.EngineDiscoveryRequest;
+import org.junit.platform.engine.ExecutionRequest;
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.support.descriptor.EngineDescriptor;
+import org.junit.platform.engine.support.hierarchical.HierarchicalTestEngine;
+
+/**
+ * Test engine whose test plan is built programmatically, following the same
+ * pattern as the {@code DemoHierarchicalTestEngine} used by the functional
+ * tests, but supporting nested containers and report entries.
+ */
+public final class SyntheticTestEngine extends HierarchicalTestEngine<SyntheticEngineExecutionContext> {
+
+	private final String engineId;
+	private final EngineDescriptor engineDescriptor;
+
+	public SyntheticTestEngine(String engineId) {
+		this.engineId = engineId;
+		this.engineDescriptor = new EngineDescriptor(UniqueId.forEngine(engineId), engineId);
+	}
+
+	@Override
+	public String getId() {
+		return engineId;
+	}
+
+	public TestDescriptor getEngineDescriptor() {
+		return engineDescriptor;
+	}
+
+	public SyntheticContainerDescriptor addContainer(TestDescriptor parent, String uniqueName, TestSource source) {
+		SyntheticContainerDescriptor container = new SyntheticContainerDescriptor(
+				parent.getUniqueId().append("container", uniqueName), uniqueName, source);
+		parent.addChild(container);
+		return container;
+	}
+
+	public SyntheticTestDescriptor addTest(TestDescriptor parent, String uniqueName, Runnable executeBlock) {
+		return addTest(parent, uniqueName, executeBlock, Collections.emptyList());
+	}
+
+	public SyntheticTestDescriptor addTest(TestDescriptor parent, String uniqueName, Runnable executeBlock,
+			List<Map<String, String>> reportEntries) {
+		SyntheticTestDescriptor test = new SyntheticTestDescriptor(parent.getUniqueId().append("test", uniqueName),
+				uniqueName, null, executeBlock, reportEntries);
+		parent.addChild(test);
+		return test;
+	}
+
+	@Override
+	public TestDescriptor discover(EngineDiscoveryRequest discoveryRequest, UniqueId uniqueId) {
+		return engineDescriptor;
+	}
+
+	@Override
+	protected SyntheticEngineExecutionContext createExecutionContext(ExecutionRequest request) {
+		return new SyntheticEngineExecutionContext(request.getEngineExecutionListener());
+	}
+
+}
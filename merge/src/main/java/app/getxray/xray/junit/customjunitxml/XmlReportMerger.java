@@ -0,0 +1,548 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * {@code XmlReportMerger} merges the reports written by
+ * {@link EnhancedLegacyXmlReportGeneratingListener} on several nodes, e.g. of a
+ * suite split across CI jobs, into a single report, or into a few of them.
+ *
+ * <p>
+ * Reports are never loaded in memory. A first pass reads them one at a time to
+ * find retried testcases, by the unique id in their first {@code <system-out>},
+ * and keeps only the attempt that finished last. A second pass is a k-way merge
+ * of all the reports, ordered by the {@code started-at} of their testcases,
+ * that copies each kept testcase as it's read; testcases are spooled per output
+ * report, so that the counts of its {@code <testsuite>} are known before it's
+ * written.
+ */
+public final class XmlReportMerger {
+
+	static final String DEFAULT_OUTPUT = "TEST-merged.xml";
+	static final String DEFAULT_SUITE_NAME = "merged";
+
+	private static final String USAGE = "Usage: xray-junit-extensions-merge [--output <file>] [--name <suite name>]"
+			+ " [--max-testcases <n>] <report or directory>...";
+	private static final String UNIQUE_ID_PREFIX = "unique-id: ";
+	// set, when supported, so that CDATA sections (e.g. stack traces) are kept as such
+	private static final String REPORT_CDATA_EVENT = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+	private final List<Path> reports;
+	private final String suiteName;
+	private final int maxTestcases;
+	private final XMLInputFactory inputFactory;
+	private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+
+	/**
+	 * @param reports      the reports to merge, in order of precedence for attempts
+	 *                     of the same test that finished at the same time
+	 * @param suiteName    name of the merged {@code <testsuite>}
+	 * @param maxTestcases maximum number of testcases per merged report, or 0 for
+	 *                     a single one
+	 */
+	XmlReportMerger(List<Path> reports, String suiteName, int maxTestcases) {
+		this.reports = new ArrayList<>(reports);
+		this.suiteName = suiteName;
+		this.maxTestcases = maxTestcases;
+		this.inputFactory = XMLInputFactory.newInstance();
+		this.inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		this.inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		this.inputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+		if (this.inputFactory.isPropertySupported(REPORT_CDATA_EVENT)) {
+			this.inputFactory.setProperty(REPORT_CDATA_EVENT, true);
+		}
+	}
+
+	public static void main(String[] args) {
+		Path output = Paths.get(DEFAULT_OUTPUT);
+		String suiteName = DEFAULT_SUITE_NAME;
+		int maxTestcases = 0;
+		List<Path> reports = new ArrayList<>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+					case "--output":
+						output = Paths.get(args[++i]);
+						break;
+					case "--name":
+						suiteName = args[++i];
+						break;
+					case "--max-testcases":
+						maxTestcases = Integer.parseInt(args[++i]);
+						break;
+					default:
+						reports.addAll(findReports(Paths.get(args[i])));
+						break;
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException | NumberFormatException | IOException e) {
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		if (reports.isEmpty()) {
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		try {
+			for (Path mergedReport : new XmlReportMerger(reports, suiteName, maxTestcases).merge(output)) {
+				System.out.println(mergedReport);
+			}
+		} catch (IOException | XMLStreamException e) {
+			System.err.println("Could not merge reports: " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	// directories are expanded to the reports they contain, in name order
+	static List<Path> findReports(Path path) throws IOException {
+		List<Path> reports = new ArrayList<>();
+		if (!Files.isDirectory(path)) {
+			reports.add(path);
+			return reports;
+		}
+		try (DirectoryStream<Path> directory = Files.newDirectoryStream(path, "TEST-*.{xml,xml.gz}")) {
+			directory.forEach(reports::add);
+		}
+		reports.sort(Comparator.naturalOrder());
+		return reports;
+	}
+
+	/**
+	 * @param output the merged report; with a maximum number of testcases, and
+	 *               more testcases than that, {@code -<n>} is added to its name
+	 * @return the merged reports that were written
+	 */
+	List<Path> merge(Path output) throws IOException, XMLStreamException {
+		Index index = index();
+		List<Spool> spools = new ArrayList<>();
+		List<Cursor> cursors = new ArrayList<>();
+		try {
+			PriorityQueue<Cursor> queue = new PriorityQueue<>(
+					Comparator.comparing((Cursor cursor) -> cursor.startedAt).thenComparingInt(cursor -> cursor.report));
+			for (int i = 0; i < this.reports.size(); i++) {
+				Cursor cursor = new Cursor(i, this.reports.get(i));
+				cursors.add(cursor);
+				if (cursor.advance()) {
+					queue.add(cursor);
+				}
+			}
+			Spool spool = null;
+			while (!queue.isEmpty()) {
+				Cursor cursor = queue.poll();
+				if (index.superseded.contains(cursor.position())) {
+					skipTestcase(cursor.reader);
+				} else {
+					if (spool == null || (this.maxTestcases > 0 && spool.tests >= this.maxTestcases)) {
+						spool = new Spool();
+						spools.add(spool);
+					}
+					spool.copyTestcase(cursor.reader);
+				}
+				if (cursor.advance()) {
+					queue.add(cursor);
+				}
+			}
+			if (spools.isEmpty()) {
+				spools.add(new Spool());
+			}
+			List<Path> mergedReports = new ArrayList<>();
+			for (int i = 0; i < spools.size(); i++) {
+				Path mergedReport = spools.size() == 1 ? output : shardOf(output, i + 1);
+				spools.get(i).writeReport(mergedReport, index);
+				mergedReports.add(mergedReport);
+			}
+			return mergedReports;
+		} finally {
+			for (Cursor cursor : cursors) {
+				closeQuietly(cursor);
+			}
+			for (Spool spool : spools) {
+				closeQuietly(spool);
+			}
+		}
+	}
+
+	private static Path shardOf(Path output, int number) {
+		String fileName = output.getFileName().toString();
+		int extension = fileName.endsWith(".xml") ? fileName.length() - ".xml".length() : fileName.length();
+		return output.resolveSibling(fileName.substring(0, extension) + "-" + number + fileName.substring(extension));
+	}
+
+	/**
+	 * First pass: finds the attempts of each test that were superseded by a later
+	 * one, and the attributes of the input suites that the merged ones inherit.
+	 */
+	private Index index() throws IOException, XMLStreamException {
+		Index index = new Index();
+		Map<String, Attempt> latestAttempts = new HashMap<>();
+		for (int i = 0; i < this.reports.size(); i++) {
+			try (InputStream in = open(this.reports.get(i))) {
+				XMLStreamReader reader = this.inputFactory.createXMLStreamReader(in);
+				int ordinal = -1;
+				while (reader.hasNext()) {
+					if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+						continue;
+					}
+					if ("testsuite".equals(reader.getLocalName())) {
+						index.addSuite(reader);
+					} else if ("testcase".equals(reader.getLocalName())) {
+						ordinal++;
+						Attempt attempt = new Attempt(position(i, ordinal), attributeOrEmpty(reader, "finished-at"));
+						String uniqueId = readUniqueId(reader);
+						if (uniqueId == null) {
+							continue;
+						}
+						Attempt previous = latestAttempts.get(uniqueId);
+						if (previous == null || attempt.finishedAt.compareTo(previous.finishedAt) >= 0) {
+							latestAttempts.put(uniqueId, attempt);
+							if (previous != null) {
+								index.superseded.add(previous.position);
+							}
+						} else {
+							index.superseded.add(attempt.position);
+						}
+					}
+				}
+				reader.close();
+			}
+		}
+		return index;
+	}
+
+	// reads the rest of the testcase, leaving the reader at its end tag
+	private static String readUniqueId(XMLStreamReader reader) throws XMLStreamException {
+		String uniqueId = null;
+		boolean systemOutRead = false;
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				if (depth == 1 && !systemOutRead && "system-out".equals(reader.getLocalName())) {
+					// the first one holds the unique id, and getElementText() leaves the reader at its end tag
+					uniqueId = parseUniqueId(reader.getElementText());
+					systemOutRead = true;
+				} else {
+					depth++;
+				}
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+		return uniqueId;
+	}
+
+	private static String parseUniqueId(String systemOut) {
+		String text = systemOut.trim();
+		if (!text.startsWith(UNIQUE_ID_PREFIX)) {
+			return null;
+		}
+		int end = text.indexOf('\n');
+		return text.substring(UNIQUE_ID_PREFIX.length(), end < 0 ? text.length() : end).trim();
+	}
+
+	private static void skipTestcase(XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+
+	private static long position(int report, int ordinal) {
+		return ((long) report << 32) | (ordinal & 0xffffffffL);
+	}
+
+	private static String attributeOrEmpty(XMLStreamReader reader, String name) {
+		String value = reader.getAttributeValue(null, name);
+		return value == null ? "" : value;
+	}
+
+	private static InputStream open(Path report) throws IOException {
+		InputStream in = new BufferedInputStream(Files.newInputStream(report));
+		if (report.getFileName().toString().endsWith(".gz")) {
+			return new GZIPInputStream(in);
+		}
+		return in;
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			// nothing left to do with it
+		}
+	}
+
+	private static final class Attempt {
+
+		private final long position;
+		private final String finishedAt;
+
+		Attempt(long position, String finishedAt) {
+			this.position = position;
+			this.finishedAt = finishedAt;
+		}
+	}
+
+	private static final class Index {
+
+		private final Set<Long> superseded = new HashSet<>();
+		private int suites;
+		private String hostname;
+		private String timestamp;
+
+		private void addSuite(XMLStreamReader reader) {
+			this.suites++;
+			String suiteHostname = reader.getAttributeValue(null, "hostname");
+			if (this.hostname == null) {
+				this.hostname = suiteHostname;
+			} else if (suiteHostname != null && !suiteHostname.equals(this.hostname)) {
+				this.hostname = "<multiple hosts>";
+			}
+			// ISO timestamps, so the earliest one is also the least
+			String suiteTimestamp = reader.getAttributeValue(null, "timestamp");
+			if (suiteTimestamp != null && (this.timestamp == null || suiteTimestamp.compareTo(this.timestamp) < 0)) {
+				this.timestamp = suiteTimestamp;
+			}
+		}
+	}
+
+	/**
+	 * Position of the k-way merge in one of the reports, at the start tag of its
+	 * next testcase.
+	 */
+	private final class Cursor implements Closeable {
+
+		private final int report;
+		private final InputStream in;
+		private final XMLStreamReader reader;
+		private int ordinal = -1;
+		private String startedAt;
+
+		Cursor(int report, Path path) throws IOException, XMLStreamException {
+			this.report = report;
+			this.in = open(path);
+			this.reader = inputFactory.createXMLStreamReader(this.in);
+		}
+
+		boolean advance() throws XMLStreamException {
+			while (this.reader.hasNext()) {
+				if (this.reader.next() == XMLStreamConstants.START_ELEMENT
+						&& "testcase".equals(this.reader.getLocalName())) {
+					this.ordinal++;
+					this.startedAt = attributeOrEmpty(this.reader, "started-at");
+					return true;
+				}
+			}
+			return false;
+		}
+
+		long position() {
+			return XmlReportMerger.position(this.report, this.ordinal);
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				this.reader.close();
+			} catch (XMLStreamException e) {
+				// the stream is closed below anyway
+			} finally {
+				this.in.close();
+			}
+		}
+	}
+
+	/**
+	 * Testcases of one merged report, along with the counts of its
+	 * {@code <testsuite>}.
+	 */
+	private final class Spool implements Closeable {
+
+		private final Path spoolFile;
+		private final Writer spoolWriter;
+		private final XMLStreamWriter xmlWriter;
+		private final NumberFormat numberFormat = NumberFormat.getInstance(Locale.US);
+		private long tests;
+		private long skipped;
+		private long failures;
+		private long errors;
+		private double time;
+
+		Spool() throws IOException, XMLStreamException {
+			this.spoolFile = Files.createTempFile("xray-junit-merge-", ".spool");
+			this.spoolWriter = Files.newBufferedWriter(this.spoolFile);
+			this.xmlWriter = outputFactory.createXMLStreamWriter(this.spoolWriter);
+		}
+
+		/**
+		 * Copies the testcase at the reader's position, which is left at its end tag.
+		 */
+		void copyTestcase(XMLStreamReader reader) throws XMLStreamException {
+			addTime(reader.getAttributeValue(null, "time"));
+			String result = null;
+			int depth = 0;
+			do {
+				switch (reader.getEventType()) {
+					case XMLStreamConstants.START_ELEMENT:
+						depth++;
+						if (depth == 2 && isResult(reader.getLocalName())) {
+							result = worst(result, reader.getLocalName());
+						}
+						this.xmlWriter.writeStartElement(reader.getLocalName());
+						for (int i = 0; i < reader.getAttributeCount(); i++) {
+							XmlReportWriter.writeAttributeSafely(this.xmlWriter, reader.getAttributeLocalName(i),
+									reader.getAttributeValue(i));
+						}
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						this.xmlWriter.writeEndElement();
+						depth--;
+						break;
+					case XMLStreamConstants.CDATA:
+						XmlReportWriter.writeCDataSafely(this.xmlWriter, reader.getText());
+						break;
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.SPACE:
+						// already legal XML characters, as they were parsed; evidence comes in chunks
+						this.xmlWriter.writeCharacters(reader.getTextCharacters(), reader.getTextStart(),
+								reader.getTextLength());
+						break;
+					default:
+						break;
+				}
+				if (depth > 0) {
+					reader.next();
+				}
+			} while (depth > 0);
+			XmlReportWriter.newLine(this.xmlWriter);
+
+			this.tests++;
+			if ("error".equals(result)) {
+				this.errors++;
+			} else if ("failure".equals(result)) {
+				this.failures++;
+			} else if ("skipped".equals(result)) {
+				this.skipped++;
+			}
+		}
+
+		private void addTime(String value) {
+			if (value == null) {
+				return;
+			}
+			try {
+				this.time += this.numberFormat.parse(value).doubleValue();
+			} catch (ParseException e) {
+				// left out of the suite's time
+			}
+		}
+
+		void writeReport(Path mergedReport, Index index) throws IOException, XMLStreamException {
+			this.xmlWriter.flush();
+			this.spoolWriter.flush();
+			try (Writer out = Files.newBufferedWriter(mergedReport)) {
+				XMLStreamWriter writer = outputFactory.createXMLStreamWriter(out);
+				writer.writeStartDocument("UTF-8", "1.0");
+				XmlReportWriter.newLine(writer);
+				writer.writeStartElement("testsuite");
+				XmlReportWriter.writeAttributeSafely(writer, "name", suiteName);
+				XmlReportWriter.writeAttributeSafely(writer, "tests", String.valueOf(this.tests));
+				XmlReportWriter.writeAttributeSafely(writer, "skipped", String.valueOf(this.skipped));
+				XmlReportWriter.writeAttributeSafely(writer, "failures", String.valueOf(this.failures));
+				XmlReportWriter.writeAttributeSafely(writer, "errors", String.valueOf(this.errors));
+				XmlReportWriter.writeAttributeSafely(writer, "time", this.numberFormat.format(this.time));
+				if (index.hostname != null) {
+					XmlReportWriter.writeAttributeSafely(writer, "hostname", index.hostname);
+				}
+				if (index.timestamp != null) {
+					XmlReportWriter.writeAttributeSafely(writer, "timestamp", index.timestamp);
+				}
+				XmlReportWriter.newLine(writer);
+
+				// no start tag is left open once flushed, so the testcases can be copied verbatim
+				writer.flush();
+				try (Reader spooled = Files.newBufferedReader(this.spoolFile)) {
+					spooled.transferTo(out);
+				}
+
+				writer.writeStartElement("system-out");
+				XmlReportWriter.writeCDataSafely(writer, "\nmerged-reports: " + index.suites + "\n");
+				writer.writeEndElement();
+				XmlReportWriter.newLine(writer);
+				writer.writeEndElement();
+				XmlReportWriter.newLine(writer);
+				writer.writeEndDocument();
+				writer.flush();
+				writer.close();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				this.xmlWriter.close();
+			} catch (XMLStreamException e) {
+				// the underlying writer is closed below anyway
+			} finally {
+				this.spoolWriter.close();
+				Files.deleteIfExists(this.spoolFile);
+			}
+		}
+	}
+
+	private static boolean isResult(String elementName) {
+		return "skipped".equals(elementName) || "failure".equals(elementName) || "error".equals(elementName);
+	}
+
+	// same precedence as the aggregated results of XmlReportWriter: error, failure, skipped
+	private static String worst(String current, String candidate) {
+		if (current == null || "error".equals(candidate)
+				|| ("failure".equals(candidate) && "skipped".equals(current))) {
+			return candidate;
+		}
+		return current;
+	}
+
+}
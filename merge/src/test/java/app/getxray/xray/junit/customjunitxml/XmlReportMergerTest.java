@@ -0,0 +1,112 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class XmlReportMergerTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void shouldKeepLastAttemptOfRetriedTestcasesAndRecomputeCounts() throws Exception {
+        Path firstNode = writeReport("TEST-node1.xml", "node1", "2025-01-01T10:00:00",
+                testcase("x", "2025-01-01T10:00:00", "2025-01-01T10:00:01", "<failure message=\"boom\"><![CDATA[trace]]></failure>"),
+                testcase("y", "2025-01-01T10:00:02", "2025-01-01T10:00:03", ""));
+        Path secondNode = writeReport("TEST-node2.xml", "node2", "2025-01-01T09:59:00",
+                testcase("x", "2025-01-01T10:00:05", "2025-01-01T10:00:06", ""),
+                testcase("z", "2025-01-01T09:59:30", "2025-01-01T09:59:31", "<skipped message=\"nope\"/>"));
+
+        List<Path> merged = new XmlReportMerger(Arrays.asList(firstNode, secondNode), "merged", 0)
+                .merge(tempDirectory.resolve("TEST-merged.xml"));
+
+        assertThat(merged).containsExactly(tempDirectory.resolve("TEST-merged.xml"));
+        Element testsuite = parse(merged.get(0));
+        assertThat(testsuite.getAttribute("name")).isEqualTo("merged");
+        assertThat(testsuite.getAttribute("tests")).isEqualTo("3");
+        assertThat(testsuite.getAttribute("failures")).isEqualTo("0");
+        assertThat(testsuite.getAttribute("skipped")).isEqualTo("1");
+        assertThat(testsuite.getAttribute("errors")).isEqualTo("0");
+        assertThat(testsuite.getAttribute("timestamp")).isEqualTo("2025-01-01T09:59:00");
+        assertThat(testcaseNames(testsuite)).containsExactlyInAnyOrder("x", "y", "z");
+        assertThat(testsuite.getElementsByTagName("failure").getLength()).isZero();
+    }
+
+    @Test
+    void shouldSplitMergedReportByNumberOfTestcases() throws Exception {
+        Path firstNode = writeReport("TEST-node1.xml", "node1", "2025-01-01T10:00:00",
+                testcase("a", "2025-01-01T10:00:00", "2025-01-01T10:00:01", ""),
+                testcase("b", "2025-01-01T10:00:02", "2025-01-01T10:00:03", ""));
+        Path secondNode = writeReport("TEST-node2.xml", "node1", "2025-01-01T10:00:00",
+                testcase("c", "2025-01-01T10:00:01", "2025-01-01T10:00:02", "<error message=\"oops\"/>"));
+
+        List<Path> merged = new XmlReportMerger(XmlReportMerger.findReports(tempDirectory), "merged", 2)
+                .merge(tempDirectory.resolve("merged.xml"));
+
+        assertThat(merged).containsExactly(tempDirectory.resolve("merged-1.xml"), tempDirectory.resolve("merged-2.xml"));
+        Element firstShard = parse(merged.get(0));
+        assertThat(testcaseNames(firstShard)).containsExactly("a", "c");
+        assertThat(firstShard.getAttribute("tests")).isEqualTo("2");
+        assertThat(firstShard.getAttribute("errors")).isEqualTo("1");
+        Element secondShard = parse(merged.get(1));
+        assertThat(testcaseNames(secondShard)).containsExactly("b");
+        assertThat(secondShard.getAttribute("hostname")).isEqualTo("node1");
+    }
+
+    private Path writeReport(String fileName, String hostname, String timestamp, String... testcases) throws Exception {
+        StringBuilder report = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        report.append("<testsuite name=\"JUnit Jupiter\" tests=\"").append(testcases.length)
+                .append("\" hostname=\"").append(hostname).append("\" timestamp=\"").append(timestamp).append("\">\n");
+        for (String testcase : testcases) {
+            report.append(testcase);
+        }
+        report.append("</testsuite>\n");
+        Path reportFile = tempDirectory.resolve(fileName);
+        Files.write(reportFile, report.toString().getBytes(StandardCharsets.UTF_8));
+        return reportFile;
+    }
+
+    private static String testcase(String name, String startedAt, String finishedAt, String result) {
+        return "<testcase name=\"" + name + "\" classname=\"Example\" time=\"0.5\" started-at=\"" + startedAt
+                + "\" finished-at=\"" + finishedAt + "\">\n" + result
+                + "<system-out><![CDATA[\nunique-id: [engine:junit-jupiter]/[method:" + name + "()]\ndisplay-name: "
+                + name + "()\n]]></system-out>\n</testcase>\n";
+    }
+
+    private static Element parse(Path report) throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(report.toFile());
+        return document.getDocumentElement();
+    }
+
+    private static List<String> testcaseNames(Element testsuite) {
+        List<String> names = new ArrayList<>();
+        NodeList testcases = testsuite.getElementsByTagName("testcase");
+        for (int i = 0; i < testcases.getLength(); i++) {
+            names.add(((Element) testcases.item(i)).getAttribute("name"));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * {@code XrayTestIndexProcessor} records what xray-junit-extensions reads from
+ * the annotations of test methods at report time ({@code @XrayTest},
+ * {@code @Requirement}, {@code @DisplayName}, {@code @TestFactory} and the
+ * {@code @DisplayNameGeneration} of the class) in a resource, instead of
+ * resolving the annotations through reflection.
+ *
+ * <p>
+ * Annotations are found as JUnit's {@code AnnotationSupport.findAnnotation}
+ * finds them, i.e., also through composed annotations. Every class declaring a
+ * test method, or a method with one of these annotations, is indexed with all of
+ * its declared methods.
+ *
+ * <p>
+ * The resource is {@value #RESOURCE_NAME}. Each indexed class gets a
+ * {@code <class>#} line, whose value lists the facts about the class, and each
+ * of its methods a {@code <class>#<method>(<parameter types>)} line, using the
+ * same format as JUnit's {@code MethodSource}, followed by one
+ * {@code <method key>.<attribute>} line per fact about the method. Requirements
+ * get a line each, {@code <method key>.requirements.<index>}, so that they may
+ * contain any character. This format must be kept in sync with
+ * {@code XrayTestIndex}.
+ */
+@SupportedAnnotationTypes("*")
+public class XrayTestIndexProcessor extends AbstractProcessor {
+
+	static final String RESOURCE_NAME = "META-INF/xray-junit-extensions/xray-test-index.properties";
+	static final String XRAY_TEST = "app.getxray.xray.junit.customjunitxml.annotations.XrayTest";
+	static final String REQUIREMENT = "app.getxray.xray.junit.customjunitxml.annotations.Requirement";
+	static final String DISPLAY_NAME = "org.junit.jupiter.api.DisplayName";
+	static final String DISPLAY_NAME_GENERATION = "org.junit.jupiter.api.DisplayNameGeneration";
+	static final String TEST_FACTORY = "org.junit.jupiter.api.TestFactory";
+	// meta-annotates @Test, @ParameterizedTest and any other test method annotation
+	static final String TESTABLE = "org.junit.platform.commons.annotation.Testable";
+
+	private static final String[] XRAY_TEST_ATTRIBUTES = { "key", "id", "summary", "description" };
+	private static final String[] METHOD_ANNOTATIONS = { XRAY_TEST, REQUIREMENT, DISPLAY_NAME, TEST_FACTORY, TESTABLE };
+
+	// sorted, so that the generated resource is reproducible
+	private final Map<String, String> entries = new TreeMap<>();
+	private final Set<String> indexedClasses = new HashSet<>();
+	// whether methods annotated with an annotation type make their class indexed
+	private final Map<String, Boolean> indexingAnnotations = new HashMap<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (TypeElement annotation : annotations) {
+			if (!isIndexingAnnotation(annotation)) {
+				continue;
+			}
+			for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+				if (element.getKind() == ElementKind.METHOD) {
+					index((TypeElement) element.getEnclosingElement());
+				}
+			}
+		}
+		if (roundEnv.processingOver() && !this.entries.isEmpty()) {
+			writeIndex();
+		}
+		return false;
+	}
+
+	private boolean isIndexingAnnotation(TypeElement annotation) {
+		return this.indexingAnnotations.computeIfAbsent(annotation.getQualifiedName().toString(), name -> {
+			for (String methodAnnotation : METHOD_ANNOTATIONS) {
+				if (name.equals(methodAnnotation) || findAnnotation(annotation, methodAnnotation) != null) {
+					return true;
+				}
+			}
+			return false;
+		});
+	}
+
+	private void index(TypeElement type) {
+		String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+		if (!this.indexedClasses.add(className)) {
+			return;
+		}
+		this.entries.put(className + "#", findAnnotation(type, DISPLAY_NAME_GENERATION) != null ? "displayNameGeneration" : "");
+		for (Element element : type.getEnclosedElements()) {
+			if (element.getKind() == ElementKind.METHOD) {
+				index(className, (ExecutableElement) element);
+			}
+		}
+	}
+
+	private void index(String className, ExecutableElement method) {
+		String methodKey = className + "#" + method.getSimpleName() + "(" + parameterTypes(method) + ")";
+		this.entries.put(methodKey, "");
+
+		AnnotationMirror xrayTest = findAnnotation(method, XRAY_TEST);
+		if (xrayTest != null) {
+			this.entries.put(methodKey + ".xrayTest", "true");
+			for (String attribute : XRAY_TEST_ATTRIBUTES) {
+				String value = (String) valueOf(xrayTest, attribute);
+				if (value != null && !value.isEmpty()) {
+					this.entries.put(methodKey + "." + attribute, value);
+				}
+			}
+		}
+		AnnotationMirror requirement = findAnnotation(method, REQUIREMENT);
+		if (requirement != null) {
+			this.entries.put(methodKey + ".requirement", "true");
+			@SuppressWarnings("unchecked")
+			List<? extends AnnotationValue> requirements = (List<? extends AnnotationValue>) valueOf(requirement, "value");
+			if (requirements != null) {
+				for (int i = 0; i < requirements.size(); i++) {
+					this.entries.put(methodKey + ".requirements." + i, String.valueOf(requirements.get(i).getValue()));
+				}
+			}
+		}
+		AnnotationMirror displayName = findAnnotation(method, DISPLAY_NAME);
+		if (displayName != null) {
+			this.entries.put(methodKey + ".displayName", String.valueOf(valueOf(displayName, "value")));
+		}
+		if (findAnnotation(method, TEST_FACTORY) != null) {
+			this.entries.put(methodKey + ".testFactory", "true");
+		}
+	}
+
+	private AnnotationMirror findAnnotation(Element element, String annotationName) {
+		return findAnnotation(element, annotationName, new HashSet<>());
+	}
+
+	/**
+	 * Finds an annotation as JUnit's {@code AnnotationSupport.findAnnotation}
+	 * does: directly present, then meta-present on the annotations of the element,
+	 * recursively, and, for classes, on their interfaces, and on their superclasses
+	 * if the annotation is {@code @Inherited}.
+	 */
+	private AnnotationMirror findAnnotation(Element element, String annotationName, Set<String> visited) {
+		List<? extends AnnotationMirror> annotationMirrors = element.getAnnotationMirrors();
+		for (AnnotationMirror annotationMirror : annotationMirrors) {
+			if (nameOf(annotationMirror).equals(annotationName)) {
+				return annotationMirror;
+			}
+		}
+		for (AnnotationMirror annotationMirror : annotationMirrors) {
+			String name = nameOf(annotationMirror);
+			if (!name.startsWith("java.lang.annotation.") && visited.add(name)) {
+				AnnotationMirror metaAnnotation = findAnnotation(annotationMirror.getAnnotationType().asElement(),
+						annotationName, visited);
+				if (metaAnnotation != null) {
+					return metaAnnotation;
+				}
+			}
+		}
+		if (element.getKind() == ElementKind.CLASS || element.getKind() == ElementKind.INTERFACE) {
+			TypeElement type = (TypeElement) element;
+			for (TypeMirror superInterface : type.getInterfaces()) {
+				AnnotationMirror found = findAnnotation(((DeclaredType) superInterface).asElement(), annotationName, visited);
+				if (found != null) {
+					return found;
+				}
+			}
+			if (type.getSuperclass() instanceof DeclaredType && isInherited(annotationName)) {
+				return findAnnotation(((DeclaredType) type.getSuperclass()).asElement(), annotationName, visited);
+			}
+		}
+		return null;
+	}
+
+	private boolean isInherited(String annotationName) {
+		TypeElement annotationType = processingEnv.getElementUtils().getTypeElement(annotationName);
+		return annotationType != null && annotationType.getAnnotationMirrors().stream()
+				.anyMatch(annotationMirror -> nameOf(annotationMirror).equals("java.lang.annotation.Inherited"));
+	}
+
+	private static String nameOf(AnnotationMirror annotationMirror) {
+		return ((TypeElement) annotationMirror.getAnnotationType().asElement()).getQualifiedName().toString();
+	}
+
+	private Object valueOf(AnnotationMirror annotationMirror, String attribute) {
+		Map<? extends ExecutableElement, ? extends AnnotationValue> values = processingEnv.getElementUtils()
+				.getElementValuesWithDefaults(annotationMirror);
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : values.entrySet()) {
+			if (value.getKey().getSimpleName().contentEquals(attribute)) {
+				return value.getValue().getValue();
+			}
+		}
+		return null;
+	}
+
+	// same as Class#getName() for each parameter, joined like MethodSource does
+	private String parameterTypes(ExecutableElement method) {
+		return method.getParameters().stream()
+				.map(VariableElement::asType)
+				.map(this::className)
+				.collect(Collectors.joining(", "));
+	}
+
+	private String className(TypeMirror type) {
+		TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+		switch (erasure.getKind()) {
+			case ARRAY:
+				return "[" + descriptor(((ArrayType) erasure).getComponentType());
+			case DECLARED:
+				return processingEnv.getElementUtils().getBinaryName((TypeElement) ((DeclaredType) erasure).asElement()).toString();
+			default:
+				return erasure.getKind().name().toLowerCase(Locale.ROOT);
+		}
+	}
+
+	private String descriptor(TypeMirror type) {
+		TypeMirror erasure = processingEnv.getTypeUtils().erasure(type);
+		switch (erasure.getKind()) {
+			case BOOLEAN:
+				return "Z";
+			case BYTE:
+				return "B";
+			case CHAR:
+				return "C";
+			case SHORT:
+				return "S";
+			case INT:
+				return "I";
+			case LONG:
+				return "J";
+			case FLOAT:
+				return "F";
+			case DOUBLE:
+				return "D";
+			case ARRAY:
+				return "[" + descriptor(((ArrayType) erasure).getComponentType());
+			default:
+				return "L" + className(erasure) + ";";
+		}
+	}
+
+	private void writeIndex() {
+		try {
+			FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", RESOURCE_NAME);
+			try (Writer writer = new OutputStreamWriter(resource.openOutputStream(), StandardCharsets.UTF_8)) {
+				for (Map.Entry<String, String> entry : this.entries.entrySet()) {
+					writer.write(toPropertyLine(entry.getKey(), entry.getValue()));
+				}
+			}
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+					"Could not write Xray test index " + RESOURCE_NAME + ": " + e.getMessage());
+		}
+	}
+
+	// let Properties do the escaping, but leave out the timestamp comment it always writes
+	private static String toPropertyLine(String key, String value) throws IOException {
+		Properties properties = new Properties();
+		properties.setProperty(key, value);
+		StringWriter line = new StringWriter();
+		properties.store(line, null);
+		String stored = line.toString();
+		return stored.substring(stored.indexOf('\n') + 1);
+	}
+
+}
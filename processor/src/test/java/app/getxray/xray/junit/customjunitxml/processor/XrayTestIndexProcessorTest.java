@@ -0,0 +1,138 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml.processor;
+
+import app.getxray.xray.junit.customjunitxml.annotations.XrayTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.commons.annotation.Testable;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class XrayTestIndexProcessorTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void shouldIndexAnnotatedTestMethods() throws Exception {
+        Properties index = compile("com.example.SampleTest",
+                "package com.example;",
+                "import app.getxray.xray.junit.customjunitxml.annotations.Requirement;",
+                "import app.getxray.xray.junit.customjunitxml.annotations.XrayTest;",
+                "public class SampleTest {",
+                "    @XrayTest(key = \"CALC-1\", summary = \"some summary\")",
+                "    @Requirement({\"REQ-1, part 2\", \"REQ-2\"})",
+                "    void annotated(int number, String[] values) {}",
+                "    void notAnnotated() {}",
+                "    public static class Nested {",
+                "        @XrayTest(id = \"42\") void nestedTest() {}",
+                "    }",
+                "}");
+
+        String method = "com.example.SampleTest#annotated(int, [Ljava.lang.String;)";
+        assertThat(index.getProperty("com.example.SampleTest#")).isEmpty();
+        assertThat(index.getProperty(method)).isEmpty();
+        assertThat(index.getProperty(method + ".xrayTest")).isEqualTo("true");
+        assertThat(index.getProperty(method + ".key")).isEqualTo("CALC-1");
+        assertThat(index.getProperty(method + ".summary")).isEqualTo("some summary");
+        assertThat(index.getProperty(method + ".requirement")).isEqualTo("true");
+        assertThat(index.getProperty(method + ".requirements.0")).isEqualTo("REQ-1, part 2");
+        assertThat(index.getProperty(method + ".requirements.1")).isEqualTo("REQ-2");
+        assertThat(index.getProperty(method + ".id")).isNull();
+        assertThat(index.getProperty("com.example.SampleTest#notAnnotated()")).isEmpty();
+        assertThat(index.getProperty("com.example.SampleTest#notAnnotated().xrayTest")).isNull();
+        assertThat(index.getProperty("com.example.SampleTest$Nested#nestedTest().id")).isEqualTo("42");
+    }
+
+    @Test
+    void shouldIndexAnnotationsComposedIntoOthers() throws Exception {
+        Properties index = compile("com.example.ComposedTest",
+                "package com.example;",
+                "import java.lang.annotation.Retention;",
+                "import java.lang.annotation.RetentionPolicy;",
+                "import app.getxray.xray.junit.customjunitxml.annotations.Requirement;",
+                "import app.getxray.xray.junit.customjunitxml.annotations.XrayTest;",
+                "public class ComposedTest {",
+                "    @Retention(RetentionPolicy.RUNTIME)",
+                "    @XrayTest(key = \"CALC-2\")",
+                "    @interface Calc2 {}",
+                "    @Retention(RetentionPolicy.RUNTIME)",
+                "    @Requirement(\"REQ-3\")",
+                "    @Calc2",
+                "    @interface Req3Calc2 {}",
+                "    @Req3Calc2 void composed() {}",
+                "}");
+
+        String method = "com.example.ComposedTest#composed()";
+        assertThat(index.getProperty(method + ".xrayTest")).isEqualTo("true");
+        assertThat(index.getProperty(method + ".key")).isEqualTo("CALC-2");
+        assertThat(index.getProperty(method + ".requirements.0")).isEqualTo("REQ-3");
+    }
+
+    @Test
+    void shouldIndexTestsWithoutXrayAnnotations() throws Exception {
+        Properties index = compile("com.example.JupiterTest",
+                "package com.example;",
+                "import org.junit.jupiter.api.DisplayName;",
+                "import org.junit.jupiter.api.DisplayNameGeneration;",
+                "import org.junit.jupiter.api.DisplayNameGenerator;",
+                "import org.junit.jupiter.api.Test;",
+                "import org.junit.jupiter.api.TestFactory;",
+                "@DisplayNameGeneration(DisplayNameGenerator.ReplaceUnderscores.class)",
+                "public class JupiterTest {",
+                "    @Test void plain() {}",
+                "    @Test @DisplayName(\"custom name\") void named() {}",
+                "    @TestFactory java.util.List<Object> factory() { return null; }",
+                "}");
+
+        assertThat(index.getProperty("com.example.JupiterTest#")).isEqualTo("displayNameGeneration");
+        assertThat(index.getProperty("com.example.JupiterTest#plain()")).isEmpty();
+        assertThat(index.getProperty("com.example.JupiterTest#named().displayName")).isEqualTo("custom name");
+        assertThat(index.getProperty("com.example.JupiterTest#factory().testFactory")).isEqualTo("true");
+    }
+
+    private Properties compile(String className, String... lines) throws Exception {
+        Path source = tempDirectory.resolve("src/" + className.replace('.', '/') + ".java");
+        Files.createDirectories(source.getParent());
+        Files.write(source, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+        Path classes = tempDirectory.resolve("classes");
+        Files.createDirectories(classes);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        int result = compiler.run(null, null, null,
+                "-classpath", locationOf(XrayTest.class) + File.pathSeparator + locationOf(Test.class)
+                        + File.pathSeparator + locationOf(Testable.class),
+                "-processor", XrayTestIndexProcessor.class.getName(),
+                "-d", classes.toString(),
+                source.toString());
+        assertThat(result).isZero();
+
+        Properties index = new Properties();
+        try (Reader reader = Files.newBufferedReader(classes.resolve(XrayTestIndexProcessor.RESOURCE_NAME))) {
+            index.load(reader);
+        }
+        return index;
+    }
+
+    private static String locationOf(Class<?> type) throws Exception {
+        return Path.of(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+    }
+}
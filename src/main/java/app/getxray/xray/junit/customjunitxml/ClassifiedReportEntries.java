@@ -0,0 +1,214 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+import static org.junit.platform.launcher.LauncherConstants.STDERR_REPORT_ENTRY_KEY;
+import static org.junit.platform.launcher.LauncherConstants.STDOUT_REPORT_ENTRY_KEY;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.platform.engine.reporting.ReportEntry;
+
+/**
+ * The report entries published by a test, sorted by what they are used for as
+ * they are added, so that writers never scan the entries, nor match the prefix
+ * of their keys, again.
+ *
+ * <p>
+ * Entries may be added from several threads while a report is being written:
+ * each kind of value is held in an immutable snapshot, replaced whenever a
+ * value is added, so that readers need no lock and always see a consistent
+ * list (as with a {@code CopyOnWriteArrayList}, but without allocating anything
+ * for kinds of values a test never publishes).
+ */
+final class ClassifiedReportEntries {
+
+	static final ClassifiedReportEntries EMPTY = new ClassifiedReportEntries();
+
+	private int count;
+	private volatile int size;
+	private volatile List<String> stdout = emptyList();
+	private volatile List<String> stderr = emptyList();
+	private volatile List<String> comments = emptyList();
+	private volatile List<String> evidence = emptyList();
+	private volatile Map<String, String> customFields = emptyMap();
+	private volatile Map<String, String> resourceUsage = emptyMap();
+	private volatile List<OtherEntry> otherEntries = emptyList();
+
+	synchronized void add(ReportEntry entry) {
+		Map<String, String> others = null;
+		for (Map.Entry<String, String> keyValuePair : entry.getKeyValuePairs().entrySet()) {
+			String key = keyValuePair.getKey();
+			String value = keyValuePair.getValue();
+			if (STDOUT_REPORT_ENTRY_KEY.equals(key)) {
+				this.stdout = appended(this.stdout, value);
+			} else if (STDERR_REPORT_ENTRY_KEY.equals(key)) {
+				this.stderr = appended(this.stderr, value);
+			} else if (key.startsWith(XrayTestReporter.XRAY_PREFIX)) {
+				if (XrayTestReporter.TESTRUN_COMMENT.equals(key)) {
+					this.comments = appended(this.comments, value);
+				} else if (XrayTestReporter.TESTRUN_EVIDENCE.equals(key)) {
+					this.evidence = appended(this.evidence, value);
+				} else if (key.startsWith(XrayTestReporter.TESTRUN_CUSTOMFIELD_PREFIX)) {
+					this.customFields = put(this.customFields,
+							key.substring(XrayTestReporter.TESTRUN_CUSTOMFIELD_PREFIX.length()), value);
+				} else if (key.startsWith(XrayTestReporter.RESOURCE_USAGE_PREFIX)) {
+					// e.g., resource_usage:cpu_time_nanos
+					this.resourceUsage = put(this.resourceUsage,
+							key.substring(XrayTestReporter.XRAY_PREFIX.length()), value);
+				}
+				// other xray: keys aren't reported
+			} else {
+				if (others == null) {
+					others = new LinkedHashMap<>();
+				}
+				others.put(key, value);
+			}
+		}
+		this.count++;
+		if (others != null) {
+			this.otherEntries = appended(this.otherEntries,
+					new OtherEntry(this.count, entry.getTimestamp(), unmodifiableMap(others)));
+		}
+		this.size = this.count;
+	}
+
+	// the values reported through XrayTestReporter directly, which count as an
+	// entry each, as they would have been published as one
+
+	synchronized void addComment(String comment) {
+		this.comments = appended(this.comments, comment);
+		this.size = ++this.count;
+	}
+
+	synchronized void setCustomField(String field, String value) {
+		this.customFields = put(this.customFields, field, value);
+		this.size = ++this.count;
+	}
+
+	synchronized void addEvidence(String filepath) {
+		this.evidence = appended(this.evidence, filepath);
+		this.size = ++this.count;
+	}
+
+	/**
+	 * @return the number of entries added so far
+	 */
+	int size() {
+		return this.size;
+	}
+
+	boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * @return the output captured from {@code System.out}
+	 */
+	List<String> getStdout() {
+		return this.stdout;
+	}
+
+	/**
+	 * @return the output captured from {@code System.err}
+	 */
+	List<String> getStderr() {
+		return this.stderr;
+	}
+
+	/**
+	 * @return the testrun comments, as published
+	 */
+	List<String> getComments() {
+		return this.comments;
+	}
+
+	/**
+	 * @return the paths of the testrun evidence files
+	 */
+	List<String> getEvidence() {
+		return this.evidence;
+	}
+
+	/**
+	 * @return the testrun custom fields, by field; the last value published for a
+	 *         field wins
+	 */
+	Map<String, String> getCustomFields() {
+		return this.customFields;
+	}
+
+	/**
+	 * @return the resource usage of the test, by testcase property
+	 */
+	Map<String, String> getResourceUsage() {
+		return this.resourceUsage;
+	}
+
+	/**
+	 * @return the entries with other keys, without the keys sorted above
+	 */
+	List<OtherEntry> getOtherEntries() {
+		return this.otherEntries;
+	}
+
+	private static <T> List<T> appended(List<T> list, T element) {
+		List<T> copy = new ArrayList<>(list.size() + 1);
+		copy.addAll(list);
+		copy.add(element);
+		return unmodifiableList(copy);
+	}
+
+	private static Map<String, String> put(Map<String, String> map, String key, String value) {
+		Map<String, String> copy = new LinkedHashMap<>(map);
+		copy.put(key, value);
+		return unmodifiableMap(copy);
+	}
+
+	/**
+	 * A report entry with keys that are none of the above, which is reported as
+	 * is; its number is its position among all the entries of the test.
+	 */
+	static final class OtherEntry {
+
+		private final int number;
+		private final LocalDateTime timestamp;
+		private final Map<String, String> keyValuePairs;
+
+		OtherEntry(int number, LocalDateTime timestamp, Map<String, String> keyValuePairs) {
+			this.number = number;
+			this.timestamp = timestamp;
+			this.keyValuePairs = keyValuePairs;
+		}
+
+		int getNumber() {
+			return this.number;
+		}
+
+		LocalDateTime getTimestamp() {
+			return this.timestamp;
+		}
+
+		Map<String, String> getKeyValuePairs() {
+			return this.keyValuePairs;
+		}
+
+	}
+
+}
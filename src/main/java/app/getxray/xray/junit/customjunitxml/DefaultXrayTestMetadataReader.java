@@ -27,52 +27,76 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class DefaultXrayTestMetadataReader implements XrayTestMetadataReader {
 
+    private volatile XrayTestIndex index;
+    // subclasses overriding how annotations are found get every lookup routed through their overrides
+    private final boolean annotationLookupOverridden = overridesAnnotationLookup(getClass());
+
     @Override
     public Optional<String> getId(TestIdentifier testIdentifier) {
-        return getTestMethodAnnotation(testIdentifier, XrayTest.class)
+        XrayTestIndex.Entry indexed = getIndexedEntry(testIdentifier);
+        if (indexed != null) {
+            return indexed.getId();
+        }
+        return getXrayTest(testIdentifier)
                 .map(XrayTest::id)
                 .filter(s -> !s.isEmpty());
     }
 
     @Override
     public Optional<String> getKey(TestIdentifier testIdentifier) {
-        return getTestMethodAnnotation(testIdentifier, XrayTest.class)
+        XrayTestIndex.Entry indexed = getIndexedEntry(testIdentifier);
+        if (indexed != null) {
+            return indexed.getKey();
+        }
+        return getXrayTest(testIdentifier)
                 .map(XrayTest::key)
                 .filter(s -> !s.isEmpty());
     }
 
-    private Optional<Method> getTestMethod(final MethodSource source) {
-        try {
-            final Class<?> aClass = Class.forName(source.getClassName());
-            return Stream.of(aClass.getDeclaredMethods()).filter(method -> MethodSource.from(method).equals(source))
-                    .findAny();
-        } catch (ClassNotFoundException | NoClassDefFoundError e) {
+    @Override
+    public Optional<String> getSummary(TestIdentifier testIdentifier) {
+        XrayTestIndex.Entry indexed = getIndexedEntry(testIdentifier);
+        if (indexed != null) {
+            if (indexed.getSummary().isPresent()) {
+                return indexed.getSummary();
+            }
+            if (indexed.getDisplayName().isPresent()) {
+                return indexed.getDisplayName();
+            }
+            if (indexed.isTestFactory() || indexed.hasDisplayNameGeneration()) {
+                return Optional.of(testIdentifier.getDisplayName());
+            }
             return Optional.empty();
         }
-    }
 
-    @Override
-    public Optional<String> getSummary(TestIdentifier testIdentifier) {
-        Optional<String> testSummary = getTestMethodAnnotation(testIdentifier, XrayTest.class)
+        Optional<String> testSummary = getXrayTest(testIdentifier)
                 .map(XrayTest::summary)
                 .filter(s -> !s.isEmpty());
         if (testSummary.isPresent()) {
             return testSummary;
         }
 
-        Optional<DisplayName> displayName = getTestMethodAnnotation(testIdentifier, DisplayName.class);
+        Optional<DisplayName> displayName = this.annotationLookupOverridden
+                ? getTestMethodAnnotation(testIdentifier, DisplayName.class)
+                : TestMethodMetadata.of(testIdentifier).getDisplayName();
         if (displayName.isPresent()) {
             return Optional.of(displayName.get().value());
         }
 
-
-        Optional<TestFactory> dynamicTest = getTestMethodAnnotation(testIdentifier, TestFactory.class);
-        Optional<DisplayNameGeneration> displayNameGenerator = getTestClassAnnotation(testIdentifier, DisplayNameGeneration.class);
-        if (dynamicTest.isPresent() || displayNameGenerator.isPresent()) {
+        boolean dynamicTest;
+        boolean displayNameGenerator;
+        if (this.annotationLookupOverridden) {
+            dynamicTest = getTestMethodAnnotation(testIdentifier, TestFactory.class).isPresent();
+            displayNameGenerator = getTestClassAnnotation(testIdentifier, DisplayNameGeneration.class).isPresent();
+        } else {
+            TestMethodMetadata metadata = TestMethodMetadata.of(testIdentifier);
+            dynamicTest = metadata.isTestFactory();
+            displayNameGenerator = metadata.hasDisplayNameGeneration();
+        }
+        if (dynamicTest || displayNameGenerator) {
             return Optional.of(testIdentifier.getDisplayName());
         }
 
@@ -81,19 +105,46 @@ public class DefaultXrayTestMetadataReader implements XrayTestMetadataReader {
 
     @Override
     public Optional<String> getDescription(TestIdentifier testIdentifier) {
-        return getTestMethodAnnotation(testIdentifier, XrayTest.class)
+        XrayTestIndex.Entry indexed = getIndexedEntry(testIdentifier);
+        if (indexed != null) {
+            return indexed.getDescription();
+        }
+        return getXrayTest(testIdentifier)
                 .map(XrayTest::description)
                 .filter(s -> !s.isEmpty());
     }
 
     @Override
     public List<String> getRequirements(TestIdentifier testIdentifier) {
-        return getTestMethodAnnotation(testIdentifier, Requirement.class)
+        XrayTestIndex.Entry indexed = getIndexedEntry(testIdentifier);
+        if (indexed != null) {
+            return indexed.getRequirements();
+        }
+        return getRequirement(testIdentifier)
                 .map(Requirement::value)
                 .map(arr -> Collections.unmodifiableList(Arrays.asList(arr)))
                 .orElse(Collections.emptyList());
     }
 
+    @Override
+    public boolean isAnnotated(TestIdentifier testIdentifier) {
+        XrayTestIndex.Entry indexed = getIndexedEntry(testIdentifier);
+        if (indexed != null) {
+            return indexed.hasXrayTest() || indexed.hasRequirement();
+        }
+        return getXrayTest(testIdentifier).isPresent() || getRequirement(testIdentifier).isPresent();
+    }
+
+    private Optional<XrayTest> getXrayTest(TestIdentifier testIdentifier) {
+        return this.annotationLookupOverridden ? getTestMethodAnnotation(testIdentifier, XrayTest.class)
+                : TestMethodMetadata.of(testIdentifier).getXrayTest();
+    }
+
+    private Optional<Requirement> getRequirement(TestIdentifier testIdentifier) {
+        return this.annotationLookupOverridden ? getTestMethodAnnotation(testIdentifier, Requirement.class)
+                : TestMethodMetadata.of(testIdentifier).getRequirement();
+    }
+
     @Override
     public List<String> getTags(TestIdentifier testIdentifier) {
         return testIdentifier.getTags()
@@ -103,14 +154,67 @@ public class DefaultXrayTestMetadataReader implements XrayTestMetadataReader {
                 .collect(Collectors.collectingAndThen(Collectors.toList(), Collections::unmodifiableList));
     }
 
-    protected <A extends Annotation> Optional<A> getTestMethodAnnotation(TestIdentifier testIdentifier, Class<A> aClass) {
+    /**
+     * Looks up the test method in the compile-time index, if any, unless
+     * annotations are to be found by the overrides of a subclass.
+     *
+     * @return the indexed entry, or null if the test has to be resolved through reflection
+     */
+    private XrayTestIndex.Entry getIndexedEntry(TestIdentifier testIdentifier) {
+        if (this.annotationLookupOverridden) {
+            return null;
+        }
+        XrayTestIndex testIndex = this.index;
+        if (testIndex == null) {
+            testIndex = XrayTestIndex.load(Thread.currentThread().getContextClassLoader());
+            this.index = testIndex;
+        }
+        if (testIndex.isEmpty()) {
+            return null;
+        }
         return testIdentifier.getSource()
                 .filter(a -> a instanceof MethodSource)
                 .map(MethodSource.class::cast)
-                .flatMap(this::getTestMethod)
+                .map(testIndex::lookup)
+                .orElse(null);
+    }
+
+    protected <A extends Annotation> Optional<A> getTestMethodAnnotation(TestIdentifier testIdentifier, Class<A> aClass) {
+        // the index can't give annotations, but tells when these aren't there
+        XrayTestIndex.Entry indexed = getIndexedEntry(testIdentifier);
+        if (indexed != null && !isIndexedAsPresent(indexed, aClass)) {
+            return Optional.empty();
+        }
+        return TestMethodMetadata.of(testIdentifier).getMethod()
                 .flatMap(a -> AnnotationSupport.findAnnotation(a, aClass));
     }
 
+    private static boolean isIndexedAsPresent(XrayTestIndex.Entry indexed, Class<? extends Annotation> aClass) {
+        if (aClass == XrayTest.class) {
+            return indexed.hasXrayTest();
+        } else if (aClass == Requirement.class) {
+            return indexed.hasRequirement();
+        } else if (aClass == DisplayName.class) {
+            return indexed.getDisplayName().isPresent();
+        } else if (aClass == TestFactory.class) {
+            return indexed.isTestFactory();
+        }
+        // not indexed, so maybe there
+        return true;
+    }
+
+    private static boolean overridesAnnotationLookup(Class<?> readerClass) {
+        for (Class<?> c = readerClass; c != DefaultXrayTestMetadataReader.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                if ((method.getName().equals("getTestMethodAnnotation") || method.getName().equals("getTestClassAnnotation"))
+                        && Arrays.equals(method.getParameterTypes(), new Class<?>[] { TestIdentifier.class, Class.class })) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     protected <A extends Annotation> Optional<A> getTestClassAnnotation(TestIdentifier testIdentifier, Class<A> aClass) {
         return testIdentifier.getSource()
                 .filter(a -> a instanceof MethodSource)
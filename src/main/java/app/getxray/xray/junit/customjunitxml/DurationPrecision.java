@@ -0,0 +1,65 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.NumberFormat;
+import java.util.Locale;
+
+/**
+ * How precisely the {@code time} of testcases and testsuites is reported, as
+ * set by {@code report_time_precision}.
+ *
+ * <p>
+ * With {@link #NANOS}, durations are also measured with {@link System#nanoTime()}
+ * instead of being derived from the wall clock, which may be coarser and may
+ * be adjusted while tests run.
+ */
+enum DurationPrecision {
+
+	SECONDS(0), MILLIS(3), NANOS(9);
+
+	private static final Logger logger = LoggerFactory.getLogger(DurationPrecision.class);
+
+	private final int fractionDigits;
+
+	DurationPrecision(int fractionDigits) {
+		this.fractionDigits = fractionDigits;
+	}
+
+	static DurationPrecision from(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return SECONDS;
+		}
+		try {
+			return valueOf(value.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			logger.warn(() -> "Ignoring unknown report_time_precision: " + value);
+			return SECONDS;
+		}
+	}
+
+	/**
+	 * Formats a duration in seconds, truncated to this precision.
+	 *
+	 * @param numberFormat the format of the report being written, which is not
+	 *                     thread-safe; its fraction digits are set here
+	 */
+	String format(long nanos, NumberFormat numberFormat) {
+		numberFormat.setMaximumFractionDigits(this.fractionDigits);
+		return numberFormat.format(BigDecimal.valueOf(nanos, 9).setScale(this.fractionDigits, RoundingMode.DOWN));
+	}
+
+}
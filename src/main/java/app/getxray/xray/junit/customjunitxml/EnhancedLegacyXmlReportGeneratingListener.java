@@ -19,18 +19,44 @@ import org.junit.platform.launcher.TestExecutionListener;
 import org.junit.platform.launcher.TestIdentifier;
 import org.junit.platform.launcher.TestPlan;
 
+import app.getxray.xray.junit.customjunitxml.XmlReportWriter.AggregatedTestResult.Type;
+
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.Clock;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 import java.time.format.DateTimeFormatter;
 
 /**
@@ -51,6 +77,9 @@ import java.time.format.DateTimeFormatter;
 public class EnhancedLegacyXmlReportGeneratingListener implements TestExecutionListener {
 
 	private static final String DEFAULT_REPORTS_DIR = "./target";
+	private static final int DEFAULT_REPORT_WRITER_QUEUE_SIZE = 16;
+	private static final String METRICS_FILENAME = "xray-junit-extensions-metrics";
+	private static final String JOURNAL_FILENAME = "xray-junit-extensions";
 	private static final Logger logger = LoggerFactory.getLogger(EnhancedLegacyXmlReportGeneratingListener.class);
 
 	private Path reportsDir;
@@ -61,9 +90,45 @@ public class EnhancedLegacyXmlReportGeneratingListener implements TestExecutionL
 	boolean addTimestampToReportFilename = false;
 	boolean reportOnlyAnnotatedTests = false;
 	boolean reportsPerClass = false;
+	boolean streamingReport = false;
+	int reportWriterThreads = 0;
+	int reportWriterQueueSize = DEFAULT_REPORT_WRITER_QUEUE_SIZE;
+	boolean reportMetrics = false;
+	boolean reportMetricsJfr = false;
+	String systemProperties = SuiteEnvironment.ALL_PROPERTIES;
+	ReportFormat reportFormat = ReportFormat.XML;
+	String xrayProjectKey = null;
+	ReportCompression reportCompression = ReportCompression.NONE;
+	int reportBufferSize = ReportCompression.DEFAULT_BUFFER_SIZE;
+	int reportShardMaxTestcases = 0;
+	long reportShardMaxBytes = 0;
+	boolean reportJournal = false;
+	DurationPrecision reportTimePrecision = DurationPrecision.SECONDS;
+	boolean reportDurationNanos = false;
+	boolean reportChannelSink = false;
+	boolean reporterDirectChannel = false;
+	boolean evidenceCache = false;
+	boolean evidencePrefetch = false;
+	EvidencePolicy evidencePolicy = EvidencePolicy.NONE;
+	// measures durations with report_time_precision=nanos; none when replaying a journal
+	LongSupplier ticker = System::nanoTime;
+	long hostnameTimeoutMillis = SuiteEnvironment.DEFAULT_HOSTNAME_TIMEOUT_MILLIS;
 	XrayTestMetadataReader testInfoReader = new DefaultXrayTestMetadataReader();
 
-	private XmlReportData reportData;
+	// events may be delivered concurrently with parallel execution; XmlReportData is
+	// thread-safe and a root only finishes after all of its descendants did, so all
+	// data of a report is visible by the time it's written
+	private volatile XmlReportData reportData;
+	private final Map<String, XmlReportShards> spools = new ConcurrentHashMap<>();
+	private volatile ThreadPoolExecutor reportWriterExecutor;
+	private volatile ReportMetrics metrics = ReportMetrics.NONE;
+	private volatile XrayTestMetadataReader metadataReader;
+	private volatile SuiteEnvironment environment;
+	private volatile XmlReportJournal journal = XmlReportJournal.NONE;
+	// looking up the implementation is costly, and a factory can be shared once configured
+	private final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+	private volatile ReportBufferPool bufferPool;
+	private volatile EvidenceCache encodedEvidence = EvidenceCache.NONE;
 
 	public EnhancedLegacyXmlReportGeneratingListener(Path reportsDir, PrintWriter out, Clock clock) {
 		this(reportsDir, null, out, clock);
@@ -92,8 +157,36 @@ public class EnhancedLegacyXmlReportGeneratingListener implements TestExecutionL
 				this.addTimestampToReportFilename = "true".equals(properties.getProperty("add_timestamp_to_report_filename"));
 				this.reportOnlyAnnotatedTests = "true".equals(properties.getProperty("report_only_annotated_tests", "false"));
 				this.reportsPerClass = "true".equals(properties.getProperty("reports_per_class", "false"));
-				if (!properties.getProperty("test_metadata_reader").isEmpty()) {
-					this.testInfoReader = (XrayTestMetadataReader) Class.forName(properties.getProperty("test_metadata_reader")).getConstructor().newInstance();
+				this.streamingReport = "true".equals(properties.getProperty("streaming_report", "false"));
+				this.reportWriterThreads = getIntProperty(properties, "report_writer_threads", 0);
+				this.reportWriterQueueSize = getIntProperty(properties, "report_writer_queue_size", DEFAULT_REPORT_WRITER_QUEUE_SIZE);
+				this.reportMetrics = "true".equals(properties.getProperty("report_metrics", "false"));
+				this.reportMetricsJfr = "true".equals(properties.getProperty("report_metrics_jfr", "false"));
+				this.systemProperties = properties.getProperty("system_properties", SuiteEnvironment.ALL_PROPERTIES);
+				this.reportFormat = ReportFormat.from(properties.getProperty("report_format"));
+				this.reportCompression = ReportCompression.from(properties.getProperty("report_compression"));
+				this.reportBufferSize = Math.max(512, getIntProperty(properties, "report_buffer_size", ReportCompression.DEFAULT_BUFFER_SIZE));
+				this.reportShardMaxTestcases = Math.max(0, getIntProperty(properties, "report_shard_max_testcases", 0));
+				this.reportShardMaxBytes = Math.max(0, getLongProperty(properties, "report_shard_max_bytes", 0));
+				this.reportJournal = "true".equals(properties.getProperty("report_journal", "false"));
+				this.reportTimePrecision = DurationPrecision.from(properties.getProperty("report_time_precision"));
+				this.reportDurationNanos = "true".equals(properties.getProperty("report_duration_nanos", "false"));
+				this.reportChannelSink = "true".equals(properties.getProperty("report_channel_sink", "false"));
+				this.reporterDirectChannel = "true".equals(properties.getProperty("reporter_direct_channel", "false"));
+				this.evidenceCache = "true".equals(properties.getProperty("evidence_cache", "false"));
+				this.evidencePrefetch = "true".equals(properties.getProperty("evidence_prefetch", "false"));
+				this.evidencePolicy = new EvidencePolicy(Math.max(0, getLongProperty(properties, "evidence_max_bytes", 0)),
+						Math.max(0, getLongProperty(properties, "evidence_max_bytes_per_test", 0)),
+						EvidenceOverflow.from(properties.getProperty("evidence_overflow")),
+						properties.getProperty("evidence_include", ""), properties.getProperty("evidence_exclude", ""));
+				String customXrayProjectKey = properties.getProperty("xray_project_key");
+				if (customXrayProjectKey != null && !customXrayProjectKey.trim().isEmpty()) {
+					this.xrayProjectKey = customXrayProjectKey.trim();
+				}
+				this.hostnameTimeoutMillis = getIntProperty(properties, "hostname_timeout_millis", (int) SuiteEnvironment.DEFAULT_HOSTNAME_TIMEOUT_MILLIS);
+				String customTestMetadataReader = properties.getProperty("test_metadata_reader");
+				if (customTestMetadataReader != null && !customTestMetadataReader.isEmpty()) {
+					this.testInfoReader = (XrayTestMetadataReader) Class.forName(customTestMetadataReader).getConstructor().newInstance();
 				}
 			} else {
 				if (reportsDir == null) {
@@ -105,6 +198,32 @@ public class EnhancedLegacyXmlReportGeneratingListener implements TestExecutionL
 		}
 	}
 
+	private static int getIntProperty(Properties properties, String name, int defaultValue) {
+		String value = properties.getProperty(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			logger.warn(() -> "Ignoring invalid value of " + name + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	private static long getLongProperty(Properties properties, String name, long defaultValue) {
+		String value = properties.getProperty(name);
+		if (value == null || value.trim().isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			logger.warn(() -> "Ignoring invalid value of " + name + ": " + value);
+			return defaultValue;
+		}
+	}
+
 	// service discovered automatically at runtime by JUnit
 	public EnhancedLegacyXmlReportGeneratingListener() {
 		this(FileSystems.getDefault().getPath(DEFAULT_REPORTS_DIR), new PrintWriter(System.out, true),
@@ -118,25 +237,79 @@ public class EnhancedLegacyXmlReportGeneratingListener implements TestExecutionL
 
 	@Override
 	public void testPlanExecutionStarted(TestPlan testPlan) {
-		this.reportData = new XmlReportData(testPlan, clock);
 		try {
 			Files.createDirectories(this.reportsDir);
 		} catch (IOException e) {
 			printException("Could not create reports directory: " + this.reportsDir, e);
 			logger.error(e, () -> "Could not create reports directory: " + this.reportsDir);
 		}
+		this.journal = this.reportJournal ? openJournalSafely(testPlan) : XmlReportJournal.NONE;
+		// prefetched evidence is spooled by the cache, which is there before any test adds some
+		this.encodedEvidence = this.evidenceCache || this.evidencePrefetch ? createEvidenceCacheSafely()
+				: EvidenceCache.NONE;
+		this.reportData = new XmlReportData(testPlan, clock, this.journal,
+				this.reportTimePrecision == DurationPrecision.NANOS ? this.ticker : null,
+				this.evidencePrefetch ? this::prefetchEvidence : file -> {
+				}, this.reportMetrics);
+		if (this.reporterDirectChannel) {
+			XrayTestReporterChannel.open(this.reportData);
+		}
+		this.environment = new SuiteEnvironment(this.systemProperties, this.hostnameTimeoutMillis);
+		if (this.reportChannelSink) {
+			// direct buffers spare a copy when written to a file channel, but not to a compressor
+			this.bufferPool = new ReportBufferPool(this.reportBufferSize,
+					this.reportCompression == ReportCompression.NONE, Math.max(1, this.reportWriterThreads) + 1);
+		}
+		if (this.reportMetrics || this.reportMetricsJfr) {
+			this.metrics = new ReportMetrics(this.reportMetrics, this.reportMetricsJfr);
+		} else {
+			this.metrics = ReportMetrics.NONE;
+		}
+		this.metadataReader = this.metrics.isEnabled() ? new TimedXrayTestMetadataReader(this.testInfoReader, this.metrics)
+				: this.testInfoReader;
+		if (this.reportWriterThreads > 0) {
+			this.reportWriterExecutor = newReportWriterExecutor();
+		}
 		// note: it's possible to get parent for the testidentifier from the testPlan
 	}
 
 	@Override
 	public void testPlanExecutionFinished(TestPlan testPlan) {
+		if (this.reportWriterExecutor != null) {
+			awaitPendingReports(this.reportWriterExecutor);
+			this.reportWriterExecutor = null;
+		}
+		if (this.metrics.isEnabled()) {
+			writeMetricsSafely(this.metrics, this.reportData);
+		}
+		this.spools.values().forEach(XmlReportShards::close);
+		this.spools.clear();
+		// all reports were written, so there's nothing left to recover
+		deleteJournalSafely(this.journal);
+		this.journal = XmlReportJournal.NONE;
+		XrayTestReporterChannel.close(this.reportData);
+		closeEvidenceCacheSafely(this.encodedEvidence);
+		this.encodedEvidence = EvidenceCache.NONE;
 		this.reportData = null;
 	}
 
+	@Override
+	public void dynamicTestRegistered(TestIdentifier testIdentifier) {
+		this.reportData.markDynamicTestRegistered(testIdentifier);
+	}
+
 	@Override
 	public void executionSkipped(TestIdentifier testIdentifier, String reason) {
 		this.reportData.markSkipped(testIdentifier, reason);
-		writeXmlReportInCaseOfRoot(testIdentifier);
+		if (this.streamingReport && this.reportFormat.includesXml()) {
+			// descendants of a skipped container won't get any event of their own
+			if (isSpoolingUnit(testIdentifier)) {
+				spoolTestcasesOf(testIdentifier);
+			} else if (!testIdentifier.getParentId().isPresent()) {
+				this.reportData.getTestPlan().getChildren(testIdentifier).forEach(this::spoolTestcasesOf);
+			}
+		}
+		writeReportsInCaseOfRoot(testIdentifier);
 	}
 
 	@Override
@@ -152,10 +325,64 @@ public class EnhancedLegacyXmlReportGeneratingListener implements TestExecutionL
 	@Override
 	public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult result) {
 		this.reportData.markFinished(testIdentifier, result);
-		writeXmlReportInCaseOfRoot(testIdentifier);
+		if (this.streamingReport && this.reportFormat.includesXml() && isSpoolingUnit(testIdentifier)) {
+			spoolTestcasesOf(testIdentifier);
+		}
+		writeReportsInCaseOfRoot(testIdentifier);
+	}
+
+	// testcases are spooled once the class (or other container right below the engine) they belong to is done, so
+	// that failures of their containers, e.g., in @AfterAll, are reflected on them, in the order of the test plan
+	private static boolean isSpoolingUnit(TestIdentifier testIdentifier) {
+		return testIdentifier.getParentIdObject().map(parentId -> parentId.getSegments().size() == 1).orElse(false);
 	}
 
-	private void writeXmlReportInCaseOfRoot(TestIdentifier testIdentifier) {
+	private void spoolTestcasesOf(TestIdentifier spoolingUnit) {
+		spoolTestcaseIfIncluded(spoolingUnit);
+		this.reportData.getTestPlan().getDescendants(spoolingUnit).forEach(this::spoolTestcaseIfIncluded);
+	}
+
+	private void spoolTestcaseIfIncluded(TestIdentifier testIdentifier) {
+		TestPlan testPlan = this.reportData.getTestPlan();
+		if (!XmlReportWriter.shouldInclude(testPlan, testIdentifier)) {
+			return;
+		}
+		Optional<TestIdentifier> root = findRoot(testIdentifier);
+		if (!root.isPresent()) {
+			return;
+		}
+		try {
+			XmlReportShards shards = this.spools.computeIfAbsent(root.get().getUniqueId(), id -> newXmlReportShards());
+			shards.append(newXmlReportWriter(), testIdentifier);
+			if (!this.reportFormat.includesJson()) {
+				// the JSON report is written from the data in memory once the root finishes
+				this.reportData.evict(testIdentifier);
+			}
+		} catch (XMLStreamException | IOException e) {
+			printException("Could not spool testcase: " + testIdentifier.getUniqueId(), e);
+			logger.error(e, () -> "Could not spool testcase: " + testIdentifier.getUniqueId());
+		}
+	}
+
+	private Optional<TestIdentifier> findRoot(TestIdentifier testIdentifier) {
+		TestPlan testPlan = this.reportData.getTestPlan();
+		Optional<TestIdentifier> current = testPlan.getParent(testIdentifier);
+		while (current.isPresent()) {
+			if (isRoot(current.get())) {
+				return current;
+			}
+			current = testPlan.getParent(current.get());
+		}
+		return Optional.empty();
+	}
+
+	private XmlReportWriter newXmlReportWriter() {
+		return new XmlReportWriter(this.reportData, this.reportOnlyAnnotatedTests, this.metadataReader, this.metrics,
+				this.environment, this.reportTimePrecision, this.reportDurationNanos, this.xmlOutputFactory,
+				this.encodedEvidence, this.evidencePolicy);
+	}
+
+	private void writeReportsInCaseOfRoot(TestIdentifier testIdentifier) {
 		if (isRoot(testIdentifier)) {
 			String rootName;
 			if (reportsPerClass) {
@@ -163,12 +390,124 @@ public class EnhancedLegacyXmlReportGeneratingListener implements TestExecutionL
 			} else {
 				rootName = UniqueId.parse(testIdentifier.getUniqueId()).getSegments().get(0).getValue();
 			}
-			writeXmlReportSafely(testIdentifier, rootName);
+			// resolved once, so that the reports of all formats share the same name
+			String reportName = getReportName(rootName);
+			List<ReportFormatWriter> writers = newReportFormatWriters();
+			Runnable writeReports = () -> {
+				if (this.reportFormat.includesXml() && isXmlReportSpooled()) {
+					writeXmlReportShardsSafely(testIdentifier, reportName);
+				}
+				for (ReportFormatWriter writer : writers) {
+					Path reportFile = this.reportsDir.resolve(reportName + writer.getFileExtension()
+							+ this.reportCompression.getFileExtension());
+					writeReportSafely(testIdentifier, writer, reportFile);
+				}
+			};
+			if (this.reportWriterExecutor != null) {
+				this.reportWriterExecutor.execute(writeReports);
+			} else {
+				writeReports.run();
+			}
+		}
+	}
+
+	private List<ReportFormatWriter> newReportFormatWriters() {
+		List<ReportFormatWriter> writers = new ArrayList<>();
+		if (this.reportFormat.includesXml() && !isXmlReportSpooled()) {
+			writers.add(newXmlReportWriter());
+		}
+		if (this.reportFormat.includesJson()) {
+			writers.add(new XrayJsonReportWriter(this.reportData, this.reportOnlyAnnotatedTests, this.metadataReader,
+					this.metrics, this.xrayProjectKey, this.encodedEvidence,
+					this.evidencePolicy));
+		}
+		return writers;
+	}
+
+	private boolean isSharded() {
+		return this.reportShardMaxTestcases > 0 || this.reportShardMaxBytes > 0;
+	}
+
+	// whether the XML report is written from spooled testcases, rather than straight from the data in memory
+	private boolean isXmlReportSpooled() {
+		return this.streamingReport || isSharded();
+	}
+
+	private XmlReportShards newXmlReportShards() {
+		return new XmlReportShards(this.reportShardMaxTestcases, this.reportShardMaxBytes, this.xmlOutputFactory);
+	}
+
+	/**
+	 * Writes the XML report of a root from its spooled testcases, either spooled
+	 * as they finished or, without {@code streaming_report}, right now. With
+	 * sharding, each shard is written to {@code <report name>-<n>.xml} and listed
+	 * in {@code <report name>-shards.json}, unless all testcases fit in a single
+	 * one.
+	 */
+	private void writeXmlReportShardsSafely(TestIdentifier root, String reportName) {
+		// the spool is only claimed now, so that it's still cleaned up when the test
+		// plan finishes if this never happens
+		XmlReportShards shards = this.spools.remove(root.getUniqueId());
+		try {
+			if (shards == null) {
+				shards = newXmlReportShards();
+				if (!this.streamingReport) {
+					XmlReportWriter xmlReportWriter = newXmlReportWriter();
+					TestPlan testPlan = this.reportData.getTestPlan();
+					for (TestIdentifier descendant : testPlan.getDescendants(root)) {
+						if (XmlReportWriter.shouldInclude(testPlan, descendant)) {
+							shards.append(xmlReportWriter, descendant);
+						}
+					}
+				}
+			}
+			List<XmlReportSpool> spoolsOfShards = shards.getSpools();
+			List<Path> reportFiles = new ArrayList<>();
+			for (int i = 0; i < spoolsOfShards.size(); i++) {
+				XmlReportWriter xmlReportWriter = newXmlReportWriter();
+				String shardName = spoolsOfShards.size() == 1 ? reportName : reportName + "-" + (i + 1);
+				Path reportFile = this.reportsDir.resolve(shardName + xmlReportWriter.getFileExtension()
+						+ this.reportCompression.getFileExtension());
+				writeReportSafely(root, new SpooledXmlReportWriter(xmlReportWriter, spoolsOfShards.get(i)), reportFile);
+				reportFiles.add(reportFile);
+			}
+			if (isSharded()) {
+				writeShardManifest(root, spoolsOfShards, reportFiles, this.reportsDir.resolve(reportName + "-shards.json"));
+			}
+		} catch (XMLStreamException | IOException e) {
+			printException("Could not write report: " + reportName, e);
+			logger.error(e, () -> "Could not write report: " + reportName);
+		} finally {
+			if (shards != null) {
+				shards.close();
+			}
+		}
+	}
+
+	private void writeShardManifest(TestIdentifier root, List<XmlReportSpool> spoolsOfShards, List<Path> reportFiles,
+			Path manifestFile) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(manifestFile)) {
+			JsonWriter json = new JsonWriter(writer);
+			json.beginObject();
+			json.name("root").value(root.getUniqueId());
+			json.name("shards").beginArray();
+			for (int i = 0; i < spoolsOfShards.size(); i++) {
+				Map<Type, Long> counts = spoolsOfShards.get(i).getCounts();
+				json.beginObject();
+				json.name("file").value(reportFiles.get(i).getFileName().toString());
+				json.name("tests").value(counts.values().stream().mapToLong(Long::longValue).sum());
+				json.name("skipped").value(counts.getOrDefault(Type.SKIPPED, 0L));
+				json.name("failures").value(counts.getOrDefault(Type.FAILURE, 0L));
+				json.name("errors").value(counts.getOrDefault(Type.ERROR, 0L));
+				json.endObject();
+			}
+			json.endArray();
+			json.endObject();
+			json.flush();
 		}
 	}
 
-	private void writeXmlReportSafely(TestIdentifier testIdentifier, String rootName) {
-		Path xmlFile;
+	private String getReportName(String rootName) {
 		String fileName;
 		if ((this.reportFilename != null) && (!"".equals(this.reportFilename))) {
 			fileName = reportFilename;
@@ -179,14 +518,195 @@ public class EnhancedLegacyXmlReportGeneratingListener implements TestExecutionL
 			DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy_MM_dd-HH_mm_ss_SSS");
 			fileName += "-" + LocalDateTime.now(this.clock).format(formatter);
 		}
-		fileName += ".xml";
-		xmlFile = this.reportsDir.resolve(fileName);
+		return fileName;
+	}
 
-		try (Writer fileWriter = Files.newBufferedWriter(xmlFile)) {
-			new XmlReportWriter(this.reportData, this.reportOnlyAnnotatedTests, this.testInfoReader).writeXmlReport(testIdentifier, fileWriter);
+	private void writeReportSafely(TestIdentifier testIdentifier, ReportFormatWriter writer, Path reportFile) {
+		ReportWrittenEvent event = this.metrics.beginReport();
+		long start = System.nanoTime();
+		boolean written = false;
+		try (Writer fileWriter = openReport(reportFile)) {
+			writer.writeReport(testIdentifier, fileWriter);
+			written = true;
 		} catch (XMLStreamException | IOException e) {
-			printException("Could not write XML report: " + xmlFile, e);
-			logger.error(e, () -> "Could not write XML report: " + xmlFile);
+			printException("Could not write report: " + reportFile, e);
+			logger.error(e, () -> "Could not write report: " + reportFile);
+		}
+		if (written && (event != null || this.metrics.isEnabled())) {
+			// the format is named after its extension, without the dot
+			recordReport(event, reportFile, writer.getFileExtension().substring(1), System.nanoTime() - start);
+		}
+	}
+
+	// the compressor is fed through a single buffer, sized by report_buffer_size, so that it
+	// gets large blocks instead of the small writes of the XML and JSON writers
+	private Writer openReport(Path reportFile) throws IOException {
+		if (this.reportChannelSink) {
+			FileChannel channel = FileChannel.open(reportFile, StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+			try {
+				WritableByteChannel sink = this.reportCompression == ReportCompression.NONE ? channel
+						: Channels.newChannel(this.reportCompression.wrap(Channels.newOutputStream(channel),
+								this.reportBufferSize));
+				return new Utf8ChannelWriter(sink, this.bufferPool);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+		}
+		OutputStream out = Files.newOutputStream(reportFile);
+		try {
+			OutputStream compressed = this.reportCompression.wrap(out, this.reportBufferSize);
+			return new BufferedWriter(new OutputStreamWriter(compressed, StandardCharsets.UTF_8), this.reportBufferSize);
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		}
+	}
+
+	private void recordReport(ReportWrittenEvent event, Path reportFile, String format, long nanos) {
+		long bytes;
+		try {
+			bytes = Files.size(reportFile);
+		} catch (IOException e) {
+			bytes = -1;
+		}
+		this.metrics.recordReport(event, reportFile, format, nanos, bytes);
+	}
+
+	// named after the process, so that forked JVMs sharing the reports directory get a journal each
+	private XmlReportJournal openJournalSafely(TestPlan testPlan) {
+		Path journalFile = this.reportsDir.resolve(JOURNAL_FILENAME + "-" + ProcessHandle.current().pid() + ".journal");
+		try {
+			XmlReportJournal opened = XmlReportJournal.open(journalFile);
+			opened.recordTestPlan(testPlan);
+			return opened;
+		} catch (IOException e) {
+			printException("Could not create report journal: " + journalFile, e);
+			logger.error(e, () -> "Could not create report journal: " + journalFile);
+			return XmlReportJournal.NONE;
+		}
+	}
+
+	private EvidenceCache createEvidenceCacheSafely() {
+		try {
+			return EvidenceCache.create(this.evidencePrefetch ? newEvidencePrefetchExecutor() : null);
+		} catch (IOException e) {
+			printException("Could not create evidence cache", e);
+			logger.error(e, () -> "Could not create evidence cache");
+			return EvidenceCache.NONE;
+		}
+	}
+
+	private void prefetchEvidence(String filepath) {
+		try {
+			this.encodedEvidence.prefetch(Paths.get(filepath), this.evidencePolicy);
+		} catch (InvalidPathException e) {
+			// reported as missing evidence, when the report is written
+		}
+	}
+
+	/**
+	 * Evidence is mostly waited for, so it's prefetched on virtual threads where
+	 * there are (Java 21+), and else on as many platform threads as processors.
+	 */
+	private static ExecutorService newEvidencePrefetchExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			AtomicInteger threadNumber = new AtomicInteger();
+			return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+				Thread thread = new Thread(runnable, "xray-evidence-prefetch-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	private void closeEvidenceCacheSafely(EvidenceCache cache) {
+		try {
+			cache.close();
+		} catch (IOException e) {
+			logger.warn(e, () -> "Could not remove evidence cache");
+		}
+	}
+
+	private void deleteJournalSafely(XmlReportJournal journal) {
+		try {
+			journal.delete();
+		} catch (IOException e) {
+			logger.warn(e, () -> "Could not remove report journal: " + journal.getFile());
+		}
+	}
+
+	private void writeMetricsSafely(ReportMetrics metrics, XmlReportData reportData) {
+		String fileName = METRICS_FILENAME;
+		if (this.addTimestampToReportFilename) {
+			DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy_MM_dd-HH_mm_ss_SSS");
+			fileName += "-" + LocalDateTime.now(this.clock).format(formatter);
+		}
+		Path metricsFile = this.reportsDir.resolve(fileName + ".json");
+		try {
+			metrics.writeJson(metricsFile, reportData.getPeakRetainedEntries());
+		} catch (IOException e) {
+			printException("Could not write report metrics: " + metricsFile, e);
+			logger.error(e, () -> "Could not write report metrics: " + metricsFile);
+		}
+	}
+
+	/**
+	 * Writes the XML report of a root, or of one of its shards, from spooled
+	 * testcases.
+	 */
+	private static class SpooledXmlReportWriter implements ReportFormatWriter {
+
+		private final XmlReportWriter xmlReportWriter;
+		private final XmlReportSpool spool;
+
+		SpooledXmlReportWriter(XmlReportWriter xmlReportWriter, XmlReportSpool spool) {
+			this.xmlReportWriter = xmlReportWriter;
+			this.spool = spool;
+		}
+
+		@Override
+		public String getFileExtension() {
+			return this.xmlReportWriter.getFileExtension();
+		}
+
+		@Override
+		public void writeReport(TestIdentifier rootDescriptor, Writer out) throws XMLStreamException, IOException {
+			this.xmlReportWriter.writeXmlReport(rootDescriptor, this.spool, out);
+		}
+	}
+
+	/**
+	 * Reports are written in the background, so that the engine can go on with the
+	 * next test class. Once the queue is full, the engine thread writes the report
+	 * itself, which keeps the number of reports (and of test classes whose data is
+	 * retained) waiting to be written bounded.
+	 */
+	private ThreadPoolExecutor newReportWriterExecutor() {
+		AtomicInteger threadNumber = new AtomicInteger();
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable, "xray-report-writer-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		return new ThreadPoolExecutor(this.reportWriterThreads, this.reportWriterThreads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(Math.max(1, this.reportWriterQueueSize)), threadFactory,
+				new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	private void awaitPendingReports(ExecutorService executor) {
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+				logger.info(() -> "Waiting for pending XML reports to be written");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			printException("Interrupted while waiting for pending XML reports to be written", e);
+			logger.error(e, () -> "Interrupted while waiting for pending XML reports to be written");
 		}
 	}
 
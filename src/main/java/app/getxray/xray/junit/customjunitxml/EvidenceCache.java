@@ -0,0 +1,475 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * Reads and encodes evidence before it's written to a report, and encodes each
+ * evidence file once per run, as set by {@code evidence_cache}.
+ *
+ * <p>
+ * Without {@code evidence_cache}, evidence is opened, and its first chunk read,
+ * before anything is written, so that a file that can't be read at all is left
+ * out; the rest is encoded straight into the report. A file that can't be read
+ * to the end, e.g. one on a failing disk, then fails the report rather than
+ * being written cut short, which would look like a valid attachment.
+ *
+ * <p>
+ * With {@code evidence_cache}, evidence is read and encoded in full to a
+ * temporary file before any of it is written, so that it's left out if it
+ * can't be read to the end. The spooled encodings are kept for the rest of the
+ * run, while the content of each file is hashed with SHA-256; the next
+ * testcases referencing the same file, or another file with the same content,
+ * copy the spooled encoding instead of reading and encoding the file again. A
+ * file is assumed to be unchanged as long as its size and last modification
+ * time are. Neither the JUnit XML nor the JSON format of Xray can refer to an
+ * attachment written elsewhere, so evidence is still written in full for each
+ * testcase.
+ *
+ * <p>
+ * With {@code evidence_prefetch}, files are spooled in the background as soon
+ * as tests add them, so that writing a report mostly copies spooled encodings
+ * instead of waiting for evidence to be read one file at a time.
+ */
+final class EvidenceCache implements Closeable {
+
+	static final EvidenceCache NONE = new EvidenceCache(null, null);
+
+	private static final Logger logger = LoggerFactory.getLogger(EvidenceCache.class);
+
+	// files read at once in the background, which virtual threads wouldn't bound
+	private static final int MAX_CONCURRENT_PREFETCHES = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+	// how long a report waits for a file being prefetched, before reading it itself
+	private static final long PREFETCH_WAIT_SECONDS = 30;
+
+	private final Path spoolDirectory;
+	private final ExecutorService prefetchExecutor;
+	private final Semaphore prefetchPermits = new Semaphore(MAX_CONCURRENT_PREFETCHES);
+	// completed once a file is spooled, or with null if it could not be
+	private final Map<FileVersion, CompletableFuture<Spooled>> byFile = new ConcurrentHashMap<>();
+	private final Map<String, Spooled> byDigest = new ConcurrentHashMap<>();
+
+	private EvidenceCache(Path spoolDirectory, ExecutorService prefetchExecutor) {
+		this.spoolDirectory = spoolDirectory;
+		this.prefetchExecutor = prefetchExecutor;
+	}
+
+	static EvidenceCache create() throws IOException {
+		return create(null);
+	}
+
+	/**
+	 * @param prefetchExecutor runs the spooling of files added by tests, or
+	 *                         {@code null} to only spool files when reports are
+	 *                         written; shut down when the cache is closed
+	 */
+	static EvidenceCache create(ExecutorService prefetchExecutor) throws IOException {
+		return new EvidenceCache(Files.createTempDirectory("xray-junit-extensions-evidence"), prefetchExecutor);
+	}
+
+	/**
+	 * Starts spooling an evidence file in the background, unless the policy
+	 * would leave it out anyway. Failures are left for the report to tell, when
+	 * the file is opened.
+	 */
+	void prefetch(Path file, EvidencePolicy policy) {
+		if (this.prefetchExecutor == null) {
+			return;
+		}
+		try {
+			this.prefetchExecutor.execute(() -> prefetchNow(file, policy));
+		} catch (RejectedExecutionException e) {
+			// closed, all reports were written
+		}
+	}
+
+	private void prefetchNow(Path file, EvidencePolicy policy) {
+		try {
+			this.prefetchPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		try {
+			FileVersion version = FileVersion.of(file);
+			if (!policy.mayAttachWhole(file, version.size)) {
+				return;
+			}
+			CompletableFuture<Spooled> future = new CompletableFuture<>();
+			if (this.byFile.putIfAbsent(version, future) != null) {
+				return;
+			}
+			Spooled spooled = null;
+			try (InputStream in = Files.newInputStream(file)) {
+				spooled = spool(in);
+				// a file still being written may have been read past the version seen
+				if (!version.equals(FileVersion.of(file))) {
+					spooled = null;
+				}
+			} catch (IOException e) {
+				logger.debug(e, () -> "Could not prefetch evidence " + file);
+			} finally {
+				if (spooled == null) {
+					this.byFile.remove(version, future);
+				}
+				future.complete(spooled);
+			}
+		} catch (IOException e) {
+			logger.debug(e, () -> "Could not prefetch evidence " + file);
+		} finally {
+			this.prefetchPermits.release();
+		}
+	}
+
+	/**
+	 * Reads and encodes an evidence file, unless its encoding was spooled before.
+	 * Fails as {@link Files#newInputStream} does, or if the file can't be read,
+	 * before anything is written; with a cache, also if it can't be read to the
+	 * end.
+	 */
+	Evidence open(Path file) throws IOException {
+		if (this.spoolDirectory == null) {
+			return uncached(Files.newInputStream(file));
+		}
+		FileVersion version = FileVersion.of(file);
+		CompletableFuture<Spooled> pending = this.byFile.get(version);
+		// a file being prefetched is waited for, rather than read a second time
+		Spooled spooled = pending == null ? null : awaitPrefetch(pending, file);
+		if (spooled != null) {
+			return new Evidence(spooled, true);
+		}
+		try (InputStream in = Files.newInputStream(file)) {
+			spooled = spool(in);
+		}
+		this.byFile.put(version, CompletableFuture.completedFuture(spooled));
+		return new Evidence(spooled, false);
+	}
+
+	private static Spooled awaitPrefetch(CompletableFuture<Spooled> pending, Path file) {
+		try {
+			return pending.get(PREFETCH_WAIT_SECONDS, TimeUnit.SECONDS);
+		} catch (TimeoutException e) {
+			logger.debug(() -> "Gave up waiting for evidence " + file + " to be prefetched, reading it instead");
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads evidence from a stream, e.g., a part of a file, which is never cached;
+	 * the stream is closed, at the latest with the evidence. Without a cache, only
+	 * the first chunk is read before the evidence is written.
+	 */
+	Evidence uncached(InputStream in) throws IOException {
+		boolean streamed = false;
+		try {
+			byte[] chunk = in.readNBytes(EvidenceEncoder.CHUNK_SIZE);
+			if (chunk.length < EvidenceEncoder.CHUNK_SIZE) {
+				// all of it fits in a chunk, which is encoded in memory
+				return new Evidence(Base64.getEncoder().encode(chunk), chunk.length);
+			}
+			InputStream evidence = new SequenceInputStream(new ByteArrayInputStream(chunk), in);
+			if (this.spoolDirectory == null) {
+				streamed = true;
+				return new Evidence(evidence);
+			}
+			Path spoolFile = Files.createTempFile(this.spoolDirectory, "evidence", ".b64");
+			boolean written = false;
+			try {
+				long bytesRead = encodeToFile(evidence, spoolFile, null);
+				written = true;
+				return new Evidence(new Spooled(spoolFile, bytesRead, EvidenceEncoder.encodedLength(bytesRead)), spoolFile);
+			} finally {
+				if (!written) {
+					Files.deleteIfExists(spoolFile);
+				}
+			}
+		} finally {
+			if (!streamed) {
+				in.close();
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.spoolDirectory == null) {
+			return;
+		}
+		if (this.prefetchExecutor != null) {
+			// anything still being prefetched was never written to a report
+			this.prefetchExecutor.shutdownNow();
+			try {
+				this.prefetchExecutor.awaitTermination(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		this.byFile.clear();
+		this.byDigest.clear();
+		try (Stream<Path> files = Files.walk(this.spoolDirectory)) {
+			for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+				Files.deleteIfExists(file);
+			}
+		}
+	}
+
+	/**
+	 * Evidence ready to be written to a report, either encoded in memory, spooled,
+	 * or still to be read from a stream.
+	 */
+	static final class Evidence implements Closeable {
+
+		private final byte[] encoded;
+		private final Spooled spooled;
+		private final InputStream stream;
+		private final boolean cached;
+		// spooled for this evidence only, and deleted with it
+		private final Path ownSpoolFile;
+		private long bytesRead;
+
+		private Evidence(byte[] encoded, long bytesRead) {
+			this.encoded = encoded;
+			this.spooled = null;
+			this.stream = null;
+			this.cached = false;
+			this.ownSpoolFile = null;
+			this.bytesRead = bytesRead;
+		}
+
+		private Evidence(InputStream stream) {
+			this.encoded = null;
+			this.spooled = null;
+			this.stream = stream;
+			this.cached = false;
+			this.ownSpoolFile = null;
+		}
+
+		private Evidence(Spooled spooled, boolean cached) {
+			this.encoded = null;
+			this.spooled = spooled;
+			this.stream = null;
+			this.cached = cached;
+			this.ownSpoolFile = null;
+			// a cached encoding is copied without reading the file
+			this.bytesRead = cached ? 0 : spooled.bytes;
+		}
+
+		private Evidence(Spooled spooled, Path ownSpoolFile) {
+			this.encoded = null;
+			this.spooled = spooled;
+			this.stream = null;
+			this.cached = false;
+			this.ownSpoolFile = ownSpoolFile;
+			this.bytesRead = spooled.bytes;
+		}
+
+		/**
+		 * Writes the encoding, which may fail for the sink, if the spool can't be
+		 * read back, or if the stream can't be read to the end, once part of it is
+		 * written.
+		 */
+		<E extends Exception> void writeTo(EvidenceEncoder.CharSink<E> sink) throws IOException, E {
+			if (this.stream != null) {
+				this.bytesRead = EvidenceEncoder.encode(this.stream, sink);
+				return;
+			}
+			if (this.encoded != null) {
+				char[] characters = new char[this.encoded.length];
+				for (int i = 0; i < characters.length; i++) {
+					characters[i] = (char) this.encoded[i];
+				}
+				sink.write(characters, 0, characters.length);
+				return;
+			}
+			byte[] encoded = new byte[4 * EvidenceEncoder.CHUNK_SIZE / 3];
+			char[] characters = new char[encoded.length];
+			try (InputStream in = Files.newInputStream(this.spooled.file)) {
+				int read;
+				while ((read = in.readNBytes(encoded, 0, encoded.length)) > 0) {
+					for (int i = 0; i < read; i++) {
+						characters[i] = (char) encoded[i];
+					}
+					sink.write(characters, 0, read);
+				}
+			}
+		}
+
+		/**
+		 * @return whether the encoding was copied from the spool, without reading
+		 *         the file
+		 */
+		boolean isCached() {
+			return this.cached;
+		}
+
+		/**
+		 * @return the number of bytes read, which for a stream is only known once it
+		 *         is written
+		 */
+		long getBytesRead() {
+			return this.bytesRead;
+		}
+
+		long getEncodedLength() {
+			if (this.encoded != null) {
+				return this.encoded.length;
+			}
+			return this.spooled != null ? this.spooled.length : EvidenceEncoder.encodedLength(this.bytesRead);
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (this.stream != null) {
+				this.stream.close();
+			}
+			if (this.ownSpoolFile != null) {
+				Files.deleteIfExists(this.ownSpoolFile);
+			}
+		}
+
+	}
+
+	/**
+	 * Encodes evidence to a spool file, while hashing it.
+	 *
+	 * @return the spool of the evidence, which may be shared with evidence of the
+	 *         same content spooled before
+	 */
+	private Spooled spool(InputStream in) throws IOException {
+		MessageDigest digest = newSha256();
+		Path spoolFile = Files.createTempFile(this.spoolDirectory, "evidence", ".b64");
+		boolean kept = false;
+		try {
+			long bytesRead = encodeToFile(in, spoolFile, digest);
+			Spooled candidate = new Spooled(spoolFile, bytesRead, EvidenceEncoder.encodedLength(bytesRead));
+			// files with the same content, under other names, share the first spool
+			Spooled shared = this.byDigest.putIfAbsent(HexFormat.of().formatHex(digest.digest()), candidate);
+			kept = shared == null;
+			return kept ? candidate : shared;
+		} finally {
+			if (!kept) {
+				Files.deleteIfExists(spoolFile);
+			}
+		}
+	}
+
+	/**
+	 * @param digest hashes what is read, if not {@code null}
+	 * @return the number of bytes read
+	 */
+	private static long encodeToFile(InputStream in, Path spoolFile, MessageDigest digest) throws IOException {
+		try (OutputStream spool = Files.newOutputStream(spoolFile)) {
+			byte[] encoded = new byte[4 * EvidenceEncoder.CHUNK_SIZE / 3];
+			return EvidenceEncoder.encode(digest != null ? new DigestInputStream(in, digest) : in,
+					(characters, offset, length) -> {
+						// Base64 characters are all ASCII
+						for (int i = 0; i < length; i++) {
+							encoded[i] = (byte) characters[offset + i];
+						}
+						spool.write(encoded, 0, length);
+					});
+		}
+	}
+
+	private static MessageDigest newSha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static final class Spooled {
+
+		final Path file;
+		final long bytes;
+		final long length;
+
+		Spooled(Path file, long bytes, long length) {
+			this.file = file;
+			this.bytes = bytes;
+			this.length = length;
+		}
+
+	}
+
+	private static final class FileVersion {
+
+		private final Path file;
+		private final long size;
+		private final FileTime lastModifiedTime;
+
+		FileVersion(Path file, long size, FileTime lastModifiedTime) {
+			this.file = file;
+			this.size = size;
+			this.lastModifiedTime = lastModifiedTime;
+		}
+
+		static FileVersion of(Path file) throws IOException {
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			return new FileVersion(file.toAbsolutePath().normalize(), attributes.size(), attributes.lastModifiedTime());
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof FileVersion)) {
+				return false;
+			}
+			FileVersion that = (FileVersion) other;
+			return this.file.equals(that.file) && this.size == that.size
+					&& this.lastModifiedTime.equals(that.lastModifiedTime);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.file, this.size, this.lastModifiedTime);
+		}
+
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Encodes evidence as Base64 in fixed-size chunks, so that the heap used does
+ * not depend on the size of the evidence.
+ */
+final class EvidenceEncoder {
+
+	// multiple of 3, so that no padding is written but at the very end
+	static final int CHUNK_SIZE = 3 * 16 * 1024;
+
+	/**
+	 * Receives the encoded characters, chunk by chunk; the array is reused
+	 * between calls.
+	 *
+	 * @param <E> what the sink throws besides {@link IOException}, e.g.
+	 *            {@code XMLStreamException} when it writes to a report
+	 */
+	@FunctionalInterface
+	interface CharSink<E extends Exception> {
+		void write(char[] characters, int offset, int length) throws IOException, E;
+	}
+
+	private EvidenceEncoder() {
+	}
+
+	/**
+	 * @return the number of bytes read
+	 */
+	static <E extends Exception> long encode(InputStream in, CharSink<E> sink) throws IOException, E {
+		Base64.Encoder encoder = Base64.getEncoder();
+		byte[] chunk = new byte[CHUNK_SIZE];
+		byte[] encoded = new byte[4 * CHUNK_SIZE / 3];
+		char[] characters = new char[encoded.length];
+		long total = 0;
+		int read;
+		// only full chunks are encoded until the end of the stream, as a chunk whose
+		// size is not a multiple of 3 would be padded in the middle of the output
+		while ((read = in.readNBytes(chunk, 0, chunk.length)) > 0) {
+			int length = encoder.encode(read == chunk.length ? chunk : Arrays.copyOf(chunk, read), encoded);
+			for (int i = 0; i < length; i++) {
+				characters[i] = (char) encoded[i];
+			}
+			sink.write(characters, 0, length);
+			total += read;
+		}
+		return total;
+	}
+
+	static long encodedLength(long bytes) {
+		return 4 * ((bytes + 2) / 3);
+	}
+
+}
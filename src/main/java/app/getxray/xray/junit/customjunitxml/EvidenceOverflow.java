@@ -0,0 +1,54 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+
+import java.util.Locale;
+
+/**
+ * What happens to evidence over the size limits, as set by
+ * {@code evidence_overflow}.
+ */
+enum EvidenceOverflow {
+
+	/**
+	 * Leaves the evidence out.
+	 */
+	SKIP,
+
+	/**
+	 * Keeps the head and the tail of text files, within the limits; other files
+	 * are left out.
+	 */
+	TRUNCATE,
+
+	/**
+	 * Leaves the evidence out, but records its path.
+	 */
+	REFERENCE;
+
+	private static final Logger logger = LoggerFactory.getLogger(EvidenceOverflow.class);
+
+	static EvidenceOverflow from(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return SKIP;
+		}
+		try {
+			return valueOf(value.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			logger.warn(() -> "Ignoring unknown evidence_overflow: " + value);
+			return SKIP;
+		}
+	}
+
+}
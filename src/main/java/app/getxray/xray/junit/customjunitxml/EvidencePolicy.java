@@ -0,0 +1,277 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Which evidence is attached to a testcase, and how much of it, as set by
+ * {@code evidence_max_bytes}, {@code evidence_max_bytes_per_test},
+ * {@code evidence_overflow}, {@code evidence_include} and
+ * {@code evidence_exclude}.
+ *
+ * <p>
+ * Limits are checked against the size of each file before it's encoded, so
+ * evidence over them is never read; only the head and tail of a truncated
+ * file are.
+ */
+final class EvidencePolicy {
+
+	private static final Logger logger = LoggerFactory.getLogger(EvidencePolicy.class);
+
+	static final EvidencePolicy NONE = new EvidencePolicy(0, 0, EvidenceOverflow.SKIP, "", "");
+
+	// files that can be cut without becoming unreadable
+	private static final Set<String> TEXT_EXTENSIONS = Set.of("txt", "log", "out", "err", "csv", "json", "xml",
+			"html", "htm", "yaml", "yml", "properties", "md");
+
+	private final long maxBytes;
+	private final long maxBytesPerTest;
+	private final EvidenceOverflow overflow;
+	private final List<PathMatcher> includes;
+	private final List<PathMatcher> excludes;
+
+	EvidencePolicy(long maxBytes, long maxBytesPerTest, EvidenceOverflow overflow, String includes, String excludes) {
+		this.maxBytes = maxBytes;
+		this.maxBytesPerTest = maxBytesPerTest;
+		this.overflow = overflow;
+		this.includes = globs(includes);
+		this.excludes = globs(excludes);
+	}
+
+	/**
+	 * @return the budget of evidence of one testcase
+	 */
+	Budget newBudget() {
+		return new Budget();
+	}
+
+	/**
+	 * @return whether a file of this size could be attached whole, at least to a
+	 *         testcase without other evidence
+	 */
+	boolean mayAttachWhole(Path file, long size) {
+		return isIncluded(file) && (this.maxBytes <= 0 || size <= this.maxBytes)
+				&& (this.maxBytesPerTest <= 0 || size <= this.maxBytesPerTest);
+	}
+
+	private boolean isIncluded(Path file) {
+		return (this.includes.isEmpty() || matchesAny(this.includes, file)) && !matchesAny(this.excludes, file);
+	}
+
+	private static List<PathMatcher> globs(String patterns) {
+		List<PathMatcher> matchers = new ArrayList<>();
+		if (patterns != null) {
+			for (String pattern : patterns.split(",")) {
+				if (!pattern.trim().isEmpty()) {
+					try {
+						matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + pattern.trim()));
+					} catch (IllegalArgumentException e) {
+						logger.warn(() -> "Ignoring invalid evidence glob: " + pattern);
+					}
+				}
+			}
+		}
+		return matchers;
+	}
+
+	// patterns without a directory, e.g. "*.png", match the name of the file wherever it is
+	private static boolean matchesAny(List<PathMatcher> matchers, Path file) {
+		for (PathMatcher matcher : matchers) {
+			if (matcher.matches(file) || (file.getFileName() != null && matcher.matches(file.getFileName()))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isText(Path file) {
+		String name = file.getFileName() == null ? "" : file.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		return dot >= 0 && TEXT_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+	}
+
+	final class Budget {
+
+		private long remaining = maxBytesPerTest > 0 ? maxBytesPerTest : Long.MAX_VALUE;
+		private final List<Dropped> dropped = new ArrayList<>();
+
+		/**
+		 * Opens an evidence file as far as the policy allows, failing as
+		 * {@link EvidenceCache#open} does.
+		 *
+		 * @return the evidence, whole or truncated, or {@code null} if it is left out,
+		 *         which is then recorded
+		 */
+		EvidenceCache.Evidence open(Path file, EvidenceCache cache) throws IOException {
+			if (!isIncluded(file)) {
+				this.dropped.add(new Dropped(file, "excluded"));
+				return null;
+			}
+			if (maxBytes <= 0 && this.remaining == Long.MAX_VALUE) {
+				return cache.open(file);
+			}
+			long size = Files.size(file);
+			long allowed = maxBytes > 0 ? Math.min(maxBytes, this.remaining) : this.remaining;
+			// only evidence actually attached counts against the budget
+			if (size <= allowed) {
+				EvidenceCache.Evidence evidence = cache.open(file);
+				this.remaining -= size;
+				return evidence;
+			}
+			String limit = maxBytes > 0 && allowed == maxBytes ? "evidence_max_bytes" : "evidence_max_bytes_per_test";
+			long kept = TruncatedInputStream.kept(size, allowed);
+			if (overflow == EvidenceOverflow.TRUNCATE && isText(file) && kept > 0) {
+				TruncatedInputStream truncated = new TruncatedInputStream(file, size, kept);
+				EvidenceCache.Evidence evidence = cache.uncached(truncated);
+				this.remaining -= truncated.length();
+				this.dropped.add(new Dropped(file, "truncated to " + kept + " of " + size + " bytes, over " + limit));
+				return evidence;
+			}
+			String reason = size + " bytes, over " + limit;
+			this.dropped.add(new Dropped(file, overflow == EvidenceOverflow.REFERENCE
+					? reason + ", at " + file.toAbsolutePath()
+					: reason));
+			return null;
+		}
+
+		/**
+		 * @return the evidence left out or truncated so far
+		 */
+		List<Dropped> getDropped() {
+			return Collections.unmodifiableList(this.dropped);
+		}
+
+	}
+
+	static final class Dropped {
+
+		private final String name;
+		private final String description;
+
+		Dropped(Path file, String description) {
+			this.name = file.getFileName() == null ? file.toString() : file.getFileName().toString();
+			this.description = description;
+		}
+
+		String getName() {
+			return this.name;
+		}
+
+		String getDescription() {
+			return this.description;
+		}
+
+	}
+
+	/**
+	 * The head and the tail of a file, around a line telling how much was cut out;
+	 * that line counts against the limit too.
+	 */
+	static final class TruncatedInputStream extends InputStream {
+
+		private final FileChannel channel;
+		private final long headEnd;
+		private final long tailStart;
+		private final long size;
+		private final byte[] marker;
+		private long position;
+		private int markerPosition;
+
+		TruncatedInputStream(Path file, long size, long kept) throws IOException {
+			this.channel = FileChannel.open(file, StandardOpenOption.READ);
+			this.size = size;
+			this.headEnd = kept / 2;
+			this.tailStart = size - (kept - kept / 2);
+			this.marker = marker(this.tailStart - this.headEnd);
+		}
+
+		/**
+		 * @return how many bytes of the file fit in {@code allowed} bytes with the
+		 *         marker, none or less if the marker alone does not
+		 */
+		static long kept(long size, long allowed) {
+			// no marker is longer than the one for the whole file
+			return allowed - marker(size).length;
+		}
+
+		/**
+		 * @return the number of bytes read to the end, or less if the file shrinks
+		 *         meanwhile
+		 */
+		long length() {
+			return this.headEnd + this.marker.length + (this.size - this.tailStart);
+		}
+
+		private static byte[] marker(long truncated) {
+			return ("\n[... " + truncated + " bytes truncated ...]\n").getBytes(StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] one = new byte[1];
+			return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			if (this.position == this.headEnd && this.markerPosition < this.marker.length) {
+				// the marker is read in between, once the head is
+				int count = Math.min(length, this.marker.length - this.markerPosition);
+				System.arraycopy(this.marker, this.markerPosition, bytes, offset, count);
+				this.markerPosition += count;
+				if (this.markerPosition == this.marker.length) {
+					this.position = this.tailStart;
+				}
+				return count;
+			}
+			long end = this.position < this.headEnd ? this.headEnd : this.size;
+			if (this.position >= end) {
+				return -1;
+			}
+			int count = this.channel.read(ByteBuffer.wrap(bytes, offset, (int) Math.min(length, end - this.position)),
+					this.position);
+			if (count < 0) {
+				// the file was cut meanwhile
+				return -1;
+			}
+			this.position += count;
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.channel.close();
+		}
+
+	}
+
+}
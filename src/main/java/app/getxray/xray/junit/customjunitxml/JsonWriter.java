@@ -0,0 +1,154 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.BitSet;
+
+/**
+ * Minimal streaming JSON generator, so that reports can be written without
+ * building them in memory first, nor depending on a JSON library.
+ *
+ * <p>
+ * It only keeps track of the nesting, to place the separators; it's up to the
+ * caller to produce a well-formed document, e.g. by calling {@link #name(String)}
+ * before every value of an object.
+ */
+class JsonWriter {
+
+	private final Writer out;
+	// whether the container at each depth already has a member, i.e., needs a comma before the next one
+	private final BitSet hasMembers = new BitSet();
+	private int depth;
+	private boolean afterName;
+
+	JsonWriter(Writer out) {
+		this.out = out;
+	}
+
+	JsonWriter beginObject() throws IOException {
+		beforeValue();
+		this.out.write('{');
+		this.depth++;
+		this.hasMembers.clear(this.depth);
+		return this;
+	}
+
+	JsonWriter endObject() throws IOException {
+		this.depth--;
+		this.out.write('}');
+		return this;
+	}
+
+	JsonWriter beginArray() throws IOException {
+		beforeValue();
+		this.out.write('[');
+		this.depth++;
+		this.hasMembers.clear(this.depth);
+		return this;
+	}
+
+	JsonWriter endArray() throws IOException {
+		this.depth--;
+		this.out.write(']');
+		return this;
+	}
+
+	JsonWriter name(String name) throws IOException {
+		beforeValue();
+		writeString(name);
+		this.out.write(':');
+		this.afterName = true;
+		return this;
+	}
+
+	JsonWriter value(String value) throws IOException {
+		beforeValue();
+		writeString(value);
+		return this;
+	}
+
+	JsonWriter value(long value) throws IOException {
+		beforeValue();
+		this.out.write(Long.toString(value));
+		return this;
+	}
+
+	/**
+	 * Writes evidence as a Base64 encoded string, chunk by chunk.
+	 */
+	JsonWriter base64Value(EvidenceCache.Evidence evidence) throws IOException {
+		beforeValue();
+		this.out.write('"');
+		// Base64 characters never need to be escaped
+		evidence.writeTo(this.out::write);
+		this.out.write('"');
+		return this;
+	}
+
+	void flush() throws IOException {
+		this.out.flush();
+	}
+
+	private void beforeValue() throws IOException {
+		if (this.afterName) {
+			this.afterName = false;
+			return;
+		}
+		if (this.depth > 0) {
+			if (this.hasMembers.get(this.depth)) {
+				this.out.write(',');
+			}
+			this.hasMembers.set(this.depth);
+		}
+	}
+
+	private void writeString(String value) throws IOException {
+		this.out.write('"');
+		int length = value.length();
+		int copiedUpTo = 0;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			String escaped;
+			switch (c) {
+				case '"':
+					escaped = "\\\"";
+					break;
+				case '\\':
+					escaped = "\\\\";
+					break;
+				case '\n':
+					escaped = "\\n";
+					break;
+				case '\r':
+					escaped = "\\r";
+					break;
+				case '\t':
+					escaped = "\\t";
+					break;
+				default:
+					if (c >= 0x20 && c != '\u2028' && c != '\u2029') {
+						continue;
+					}
+					// control characters, and line separators that some parsers choke on
+					escaped = String.format("\\u%04x", (int) c);
+					break;
+			}
+			this.out.write(value, copiedUpTo, i - copiedUpTo);
+			this.out.write(escaped);
+			copiedUpTo = i + 1;
+		}
+		this.out.write(value, copiedUpTo, length - copiedUpTo);
+		this.out.write('"');
+	}
+
+}
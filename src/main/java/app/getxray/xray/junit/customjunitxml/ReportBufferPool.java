@@ -0,0 +1,52 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Byte buffers that reports are encoded into, recycled from one report to the
+ * next, so that writing a report per class doesn't allocate (and, for direct
+ * buffers, reserve native memory for) a large buffer per class.
+ *
+ * <p>
+ * Buffers are allocated on demand; at most {@code maxIdle} of them are kept
+ * once released, which is as many as reports may be written at once.
+ */
+class ReportBufferPool {
+
+	private final int bufferSize;
+	private final boolean direct;
+	private final BlockingQueue<ByteBuffer> idle;
+
+	ReportBufferPool(int bufferSize, boolean direct, int maxIdle) {
+		this.bufferSize = bufferSize;
+		this.direct = direct;
+		this.idle = new ArrayBlockingQueue<>(Math.max(1, maxIdle));
+	}
+
+	ByteBuffer acquire() {
+		ByteBuffer buffer = this.idle.poll();
+		if (buffer != null) {
+			return buffer;
+		}
+		return this.direct ? ByteBuffer.allocateDirect(this.bufferSize) : ByteBuffer.allocate(this.bufferSize);
+	}
+
+	void release(ByteBuffer buffer) {
+		buffer.clear();
+		// dropped if enough buffers are idle already
+		this.idle.offer(buffer);
+	}
+
+}
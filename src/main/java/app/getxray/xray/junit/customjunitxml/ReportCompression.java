@@ -0,0 +1,104 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * How report files are compressed while they're written, as set by
+ * {@code report_compression}.
+ *
+ * <p>
+ * Zstandard has no implementation in the JDK; it's only available when the
+ * pure-Java {@code io.airlift:aircompressor} library is on the classpath, which
+ * is looked up reflectively so that it remains an optional dependency.
+ */
+enum ReportCompression {
+
+	NONE(""), GZIP(".gz"), ZSTD(".zst");
+
+	static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private static final String ZSTD_OUTPUT_STREAM = "io.airlift.compress.zstd.ZstdOutputStream";
+	private static final Logger logger = LoggerFactory.getLogger(ReportCompression.class);
+
+	private final String fileExtension;
+
+	ReportCompression(String fileExtension) {
+		this.fileExtension = fileExtension;
+	}
+
+	static ReportCompression from(String value) {
+		return from(value, ReportCompression.class.getClassLoader());
+	}
+
+	/**
+	 * @param classLoader where {@code io.airlift:aircompressor} is looked up
+	 */
+	static ReportCompression from(String value, ClassLoader classLoader) {
+		if (value == null || value.trim().isEmpty()) {
+			return NONE;
+		}
+		ReportCompression compression;
+		try {
+			compression = valueOf(value.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			logger.warn(() -> "Ignoring unknown report_compression: " + value);
+			return NONE;
+		}
+		if (compression == ZSTD && zstdOutputStream(classLoader) == null) {
+			logger.warn(() -> "zstd compression needs io.airlift:aircompressor on the classpath; using gzip instead");
+			return GZIP;
+		}
+		return compression;
+	}
+
+	/**
+	 * @return the suffix appended to the name of compressed reports, e.g. {@code .gz}
+	 */
+	String getFileExtension() {
+		return this.fileExtension;
+	}
+
+	OutputStream wrap(OutputStream out, int bufferSize) throws IOException {
+		switch (this) {
+			case GZIP:
+				return new GZIPOutputStream(out, bufferSize);
+			case ZSTD:
+				try {
+					return zstdOutputStream(ReportCompression.class.getClassLoader()).newInstance(out);
+				} catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+					throw new IOException("Could not create zstd output stream", e);
+				}
+			default:
+				return out;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Constructor<? extends OutputStream> zstdOutputStream(ClassLoader classLoader) {
+		try {
+			Class<?> type = Class.forName(ZSTD_OUTPUT_STREAM, false, classLoader);
+			return (Constructor<? extends OutputStream>) type.getConstructor(OutputStream.class);
+		} catch (ClassNotFoundException | NoSuchMethodException | LinkageError e) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+
+import java.util.Locale;
+
+/**
+ * The formats the listener writes reports in, as set by {@code report_format};
+ * see {@link ReportFormatWriter} for why they can't be extended.
+ */
+enum ReportFormat {
+
+	XML, JSON, BOTH;
+
+	private static final Logger logger = LoggerFactory.getLogger(ReportFormat.class);
+
+	static ReportFormat from(String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return XML;
+		}
+		try {
+			return valueOf(value.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			logger.warn(() -> "Ignoring unknown report_format: " + value);
+			return XML;
+		}
+	}
+
+	boolean includesXml() {
+		return this != JSON;
+	}
+
+	boolean includesJson() {
+		return this != XML;
+	}
+
+}
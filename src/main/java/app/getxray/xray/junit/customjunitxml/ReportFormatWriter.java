@@ -0,0 +1,43 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.platform.launcher.TestIdentifier;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * {@code ReportFormatWriter} writes the report of a root from the data
+ * recorded in {@link XmlReportData}, in a given format.
+ *
+ * <p>
+ * The listener asks every enabled format to write its own file, named after
+ * the root, for each root that finishes; see {@code report_format}.
+ *
+ * <p>
+ * This is internal on purpose, as is the closed set of {@link ReportFormat}s:
+ * every writer, e.g. {@link XrayJsonReportWriter}, reads {@link XmlReportData}
+ * directly, whose shape follows how the listener streams, journals and shards
+ * results. Letting formats be plugged in from outside would freeze it as API,
+ * so new formats are added here instead.
+ */
+interface ReportFormatWriter {
+
+	/**
+	 * @return the extension of the report files, including the leading dot
+	 */
+	String getFileExtension();
+
+	void writeReport(TestIdentifier rootDescriptor, Writer out) throws XMLStreamException, IOException;
+
+}
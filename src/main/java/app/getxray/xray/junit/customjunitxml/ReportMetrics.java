@@ -0,0 +1,156 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@code ReportMetrics} collects how much time and I/O the report generation
+ * costs during a test plan execution, so that its overhead can be tracked
+ * across releases.
+ *
+ * <p>
+ * It's opt-in: unless enabled, {@link #NONE} is used, whose recording methods
+ * do nothing. A summary is written as JSON once the test plan finishes and,
+ * optionally, a {@link ReportWrittenEvent} is committed per report for
+ * JDK Flight Recorder.
+ */
+class ReportMetrics {
+
+	static final ReportMetrics NONE = new ReportMetrics(false, false);
+
+	private final boolean enabled;
+	private final boolean jfrEvents;
+
+	private final Queue<ReportTiming> reports = new ConcurrentLinkedQueue<>();
+	private final LongAdder metadataCalls = new LongAdder();
+	private final LongAdder metadataNanos = new LongAdder();
+	private final LongAccumulator metadataMaxNanos = new LongAccumulator(Math::max, 0);
+	private final LongAdder evidenceFiles = new LongAdder();
+	private final LongAdder evidenceBytesRead = new LongAdder();
+	private final LongAdder evidenceBytesEncoded = new LongAdder();
+	private final LongAdder evidenceCacheHits = new LongAdder();
+
+	ReportMetrics(boolean enabled, boolean jfrEvents) {
+		this.enabled = enabled;
+		this.jfrEvents = jfrEvents;
+	}
+
+	boolean isEnabled() {
+		return this.enabled;
+	}
+
+	/**
+	 * @return a started event if JFR events are enabled and being recorded, null otherwise
+	 */
+	ReportWrittenEvent beginReport() {
+		if (!this.jfrEvents) {
+			return null;
+		}
+		ReportWrittenEvent event = new ReportWrittenEvent();
+		if (!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	void recordReport(ReportWrittenEvent event, Path file, String format, long nanos, long bytes) {
+		if (event != null) {
+			event.end();
+			event.file = file.toString();
+			event.format = format;
+			event.bytes = bytes;
+			event.commit();
+		}
+		if (this.enabled) {
+			this.reports.add(new ReportTiming(file.getFileName().toString(), format, nanos, bytes));
+		}
+	}
+
+	void recordMetadataResolution(long nanos) {
+		if (this.enabled) {
+			this.metadataCalls.increment();
+			this.metadataNanos.add(nanos);
+			this.metadataMaxNanos.accumulate(nanos);
+		}
+	}
+
+	void recordEvidence(long bytesRead, long bytesEncoded) {
+		if (this.enabled) {
+			this.evidenceFiles.increment();
+			this.evidenceBytesRead.add(bytesRead);
+			this.evidenceBytesEncoded.add(bytesEncoded);
+		}
+	}
+
+	void recordEvidence(EvidenceCache.Evidence evidence) {
+		if (this.enabled && evidence.isCached()) {
+			this.evidenceCacheHits.increment();
+		}
+		recordEvidence(evidence.getBytesRead(), evidence.getEncodedLength());
+	}
+
+	void writeJson(Path file, long peakRetainedEntries) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			JsonWriter json = new JsonWriter(writer);
+			json.beginObject();
+			json.name("reports").beginArray();
+			for (ReportTiming report : this.reports) {
+				json.beginObject()
+						.name("file").value(report.file)
+						.name("format").value(report.format)
+						.name("serializationNanos").value(report.nanos)
+						.name("bytes").value(report.bytes)
+						.endObject();
+			}
+			json.endArray();
+			json.name("metadataResolution").beginObject()
+					.name("calls").value(this.metadataCalls.sum())
+					.name("totalNanos").value(this.metadataNanos.sum())
+					.name("maxNanos").value(this.metadataMaxNanos.get())
+					.endObject();
+			json.name("evidence").beginObject()
+					.name("files").value(this.evidenceFiles.sum())
+					.name("bytesRead").value(this.evidenceBytesRead.sum())
+					.name("bytesEncoded").value(this.evidenceBytesEncoded.sum())
+					.name("cacheHits").value(this.evidenceCacheHits.sum())
+					.endObject();
+			json.name("peakRetainedEntries").value(peakRetainedEntries);
+			json.endObject();
+			writer.write('\n');
+		}
+	}
+
+	private static final class ReportTiming {
+
+		private final String file;
+		private final String format;
+		private final long nanos;
+		private final long bytes;
+
+		ReportTiming(String file, String format, long nanos, long bytes) {
+			this.file = file;
+			this.format = format;
+			this.nanos = nanos;
+			this.bytes = bytes;
+		}
+	}
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event committed for every written report, XML or JSON,
+ * when {@code report_metrics_jfr} is enabled; its duration is the
+ * serialization time of the report.
+ */
+@Name("app.getxray.xray.junit.ReportWritten")
+@Label("Xray Report Written")
+@Category({ "Xray", "JUnit" })
+@Description("Serialization of a report by xray-junit-extensions")
+class ReportWrittenEvent extends jdk.jfr.Event {
+
+	@Label("File")
+	String file;
+
+	@Label("Format")
+	String format;
+
+	@Label("Size")
+	@DataAmount
+	long bytes;
+
+}
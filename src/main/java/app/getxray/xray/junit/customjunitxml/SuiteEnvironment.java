@@ -0,0 +1,178 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@code SuiteEnvironment} holds the parts of a {@code <testsuite>} element
+ * that describe the environment rather than the tests: the hostname and the
+ * system properties. Both are the same for every report of a test plan, so they
+ * are resolved once per run, instead of once per report.
+ *
+ * <p>
+ * The hostname is resolved in the background as soon as the instance is
+ * created, as it may need a slow DNS lookup; reports written before it is known
+ * wait for it, but only until the configured timeout has elapsed since the
+ * resolution started. The {@code <properties>} block is rendered once, the
+ * first time it's needed, and then copied verbatim into every report.
+ */
+class SuiteEnvironment {
+
+	static final String ALL_PROPERTIES = "all";
+	static final String NO_PROPERTIES = "none";
+	static final long DEFAULT_HOSTNAME_TIMEOUT_MILLIS = 5000;
+
+	private static final String UNKNOWN_HOST = "<unknown host>";
+
+	private final List<String> propertyFilter;
+	private final boolean allProperties;
+	private final FutureTask<String> hostname;
+	private final long hostnameDeadline;
+	private volatile String propertiesBlock;
+
+	/**
+	 * @param systemProperties {@value #ALL_PROPERTIES}, {@value #NO_PROPERTIES}, or a
+	 *                         comma-separated list of property names to include;
+	 *                         names ending with {@code *} match as prefixes
+	 * @param hostnameTimeoutMillis how long reports may wait for the hostname to be resolved
+	 */
+	SuiteEnvironment(String systemProperties, long hostnameTimeoutMillis) {
+		String filter = systemProperties == null ? ALL_PROPERTIES : systemProperties.trim();
+		this.allProperties = filter.isEmpty() || ALL_PROPERTIES.equals(filter);
+		this.propertyFilter = new ArrayList<>();
+		if (!this.allProperties && !NO_PROPERTIES.equals(filter)) {
+			for (String name : filter.split(",")) {
+				if (!name.trim().isEmpty()) {
+					this.propertyFilter.add(name.trim());
+				}
+			}
+		}
+		this.hostname = new FutureTask<>(() -> InetAddress.getLocalHost().getHostName());
+		this.hostnameDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(hostnameTimeoutMillis);
+		Thread resolver = new Thread(this.hostname, "xray-hostname-resolver");
+		resolver.setDaemon(true);
+		resolver.start();
+	}
+
+	/**
+	 * @return the environment with all system properties, shared by every writer
+	 *         that isn't given one, and only resolved once one asks for it
+	 */
+	static SuiteEnvironment withDefaults() {
+		return Defaults.INSTANCE;
+	}
+
+	String getHostname() {
+		try {
+			long remaining = Math.max(0, this.hostnameDeadline - System.nanoTime());
+			String resolved = this.hostname.get(remaining, TimeUnit.NANOSECONDS);
+			return resolved == null ? UNKNOWN_HOST : resolved;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return UNKNOWN_HOST;
+		} catch (ExecutionException | TimeoutException e) {
+			return UNKNOWN_HOST;
+		}
+	}
+
+	/**
+	 * Writes the {@code <properties>} block, if any, right after the
+	 * {@code <testsuite>} start tag, which must have been closed already.
+	 *
+	 * @param writer the XML writer of the report
+	 * @param out    the writer underneath it, where the pre-rendered block is copied to
+	 */
+	void writeSystemProperties(XMLStreamWriter writer, Writer out) throws XMLStreamException {
+		String block = getPropertiesBlock();
+		if (block.isEmpty()) {
+			return;
+		}
+		writer.flush();
+		try {
+			out.write(block);
+		} catch (IOException e) {
+			throw new XMLStreamException(e);
+		}
+	}
+
+	private String getPropertiesBlock() throws XMLStreamException {
+		String block = this.propertiesBlock;
+		if (block == null) {
+			synchronized (this) {
+				block = this.propertiesBlock;
+				if (block == null) {
+					block = renderPropertiesBlock();
+					this.propertiesBlock = block;
+				}
+			}
+		}
+		return block;
+	}
+
+	private String renderPropertiesBlock() throws XMLStreamException {
+		if (!this.allProperties && this.propertyFilter.isEmpty()) {
+			return "";
+		}
+		StringWriter block = new StringWriter();
+		XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(block);
+		writer.writeStartElement("properties");
+		writer.writeCharacters("\n");
+		Properties systemProperties = System.getProperties();
+		for (String propertyName : new TreeSet<>(systemProperties.stringPropertyNames())) {
+			if (!isIncluded(propertyName)) {
+				continue;
+			}
+			writer.writeEmptyElement("property");
+			writer.writeAttribute("name", XmlReportWriter.escapeIllegalChars(propertyName));
+			writer.writeAttribute("value", XmlReportWriter.escapeIllegalChars(systemProperties.getProperty(propertyName)));
+			writer.writeCharacters("\n");
+		}
+		writer.writeEndElement();
+		writer.writeCharacters("\n");
+		writer.flush();
+		writer.close();
+		return block.toString();
+	}
+
+	private boolean isIncluded(String propertyName) {
+		if (this.allProperties) {
+			return true;
+		}
+		for (String name : this.propertyFilter) {
+			if (name.endsWith("*") ? propertyName.startsWith(name.substring(0, name.length() - 1)) : propertyName.equals(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static final class Defaults {
+
+		static final SuiteEnvironment INSTANCE = new SuiteEnvironment(ALL_PROPERTIES, DEFAULT_HOSTNAME_TIMEOUT_MILLIS);
+
+	}
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import app.getxray.xray.junit.customjunitxml.annotations.Requirement;
+import app.getxray.xray.junit.customjunitxml.annotations.XrayTest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.DisplayNameGeneration;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.platform.commons.JUnitException;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.TestIdentifier;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable view of the test method behind a {@link TestIdentifier} and of the
+ * annotations relevant for Xray, resolved once per test method.
+ * <p>
+ * Lookups are backed by a per-class index of the declared methods, which is
+ * tied to the lifecycle of the {@link Class} itself (and thus of its class
+ * loader), so the cache never outgrows the set of loaded test classes.
+ * Both the report writer and any {@link XrayTestMetadataReader} may use it
+ * instead of scanning the declared methods of the test class on every call.
+ * </p>
+ */
+public final class TestMethodMetadata {
+
+    private static final TestMethodMetadata NONE = new TestMethodMetadata(null, false);
+
+    private static final ClassValue<ClassIndex> CLASS_INDEXES = new ClassValue<ClassIndex>() {
+        @Override
+        protected ClassIndex computeValue(Class<?> type) {
+            return new ClassIndex(type);
+        }
+    };
+
+    private final Method method;
+    private final XrayTest xrayTest;
+    private final Requirement requirement;
+    private final DisplayName displayName;
+    private final boolean testFactory;
+    private final boolean displayNameGeneration;
+
+    private TestMethodMetadata(Method method, boolean displayNameGeneration) {
+        this.method = method;
+        this.xrayTest = findAnnotation(method, XrayTest.class);
+        this.requirement = findAnnotation(method, Requirement.class);
+        this.displayName = findAnnotation(method, DisplayName.class);
+        this.testFactory = findAnnotation(method, TestFactory.class) != null;
+        this.displayNameGeneration = displayNameGeneration;
+    }
+
+    /**
+     * @param testIdentifier test identifier
+     * @return the metadata of the test method behind the identifier; empty metadata if its source is not a method
+     */
+    public static TestMethodMetadata of(TestIdentifier testIdentifier) {
+        return testIdentifier.getSource()
+                .filter(source -> source instanceof MethodSource)
+                .map(MethodSource.class::cast)
+                .map(TestMethodMetadata::of)
+                .orElse(NONE);
+    }
+
+    /**
+     * @param source method source
+     * @return the metadata of the method declared in the source's class; empty metadata if it can't be found
+     */
+    public static TestMethodMetadata of(MethodSource source) {
+        Class<?> testClass;
+        try {
+            testClass = source.getJavaClass();
+        } catch (JUnitException | LinkageError e) {
+            return NONE;
+        }
+        return CLASS_INDEXES.get(testClass).get(source);
+    }
+
+    public Optional<Method> getMethod() {
+        return Optional.ofNullable(this.method);
+    }
+
+    public Optional<XrayTest> getXrayTest() {
+        return Optional.ofNullable(this.xrayTest);
+    }
+
+    public Optional<Requirement> getRequirement() {
+        return Optional.ofNullable(this.requirement);
+    }
+
+    public Optional<DisplayName> getDisplayName() {
+        return Optional.ofNullable(this.displayName);
+    }
+
+    public boolean isTestFactory() {
+        return this.testFactory;
+    }
+
+    /**
+     * @return true if the test class is annotated with {@link DisplayNameGeneration}
+     */
+    public boolean hasDisplayNameGeneration() {
+        return this.displayNameGeneration;
+    }
+
+    private static <A extends Annotation> A findAnnotation(Method method, Class<A> annotationType) {
+        return method == null ? null : AnnotationSupport.findAnnotation(method, annotationType).orElse(null);
+    }
+
+    private static final class ClassIndex {
+
+        // keyed by MethodSource, whose equality is what identifies a test method
+        private final Map<MethodSource, Method> methods = new HashMap<>();
+        private final Map<MethodSource, TestMethodMetadata> metadata = new ConcurrentHashMap<>();
+        private final boolean displayNameGeneration;
+        private final TestMethodMetadata unknownMethod;
+
+        ClassIndex(Class<?> type) {
+            for (Method method : type.getDeclaredMethods()) {
+                this.methods.put(MethodSource.from(method), method);
+            }
+            this.displayNameGeneration = AnnotationSupport.findAnnotation(type, DisplayNameGeneration.class).isPresent();
+            this.unknownMethod = new TestMethodMetadata(null, this.displayNameGeneration);
+        }
+
+        TestMethodMetadata get(MethodSource source) {
+            Method method = this.methods.get(source);
+            if (method == null) {
+                return this.unknownMethod;
+            }
+            return this.metadata.computeIfAbsent(source, key -> new TestMethodMetadata(method, this.displayNameGeneration));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Decorates the configured {@link XrayTestMetadataReader}, recording the time
+ * spent on every call in the {@link ReportMetrics}. Only used when metrics are
+ * enabled.
+ */
+class TimedXrayTestMetadataReader implements XrayTestMetadataReader {
+
+	private final XrayTestMetadataReader delegate;
+	private final ReportMetrics metrics;
+
+	TimedXrayTestMetadataReader(XrayTestMetadataReader delegate, ReportMetrics metrics) {
+		this.delegate = delegate;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public String getName(TestIdentifier testIdentifier) {
+		return timed(() -> this.delegate.getName(testIdentifier));
+	}
+
+	@Override
+	public String getClassName(TestIdentifier testIdentifier, TestPlan testPlan) {
+		return timed(() -> this.delegate.getClassName(testIdentifier, testPlan));
+	}
+
+	@Override
+	public Optional<String> getId(TestIdentifier testIdentifier) {
+		return timed(() -> this.delegate.getId(testIdentifier));
+	}
+
+	@Override
+	public Optional<String> getKey(TestIdentifier testIdentifier) {
+		return timed(() -> this.delegate.getKey(testIdentifier));
+	}
+
+	@Override
+	public Optional<String> getSummary(TestIdentifier testIdentifier) {
+		return timed(() -> this.delegate.getSummary(testIdentifier));
+	}
+
+	@Override
+	public Optional<String> getDescription(TestIdentifier testIdentifier) {
+		return timed(() -> this.delegate.getDescription(testIdentifier));
+	}
+
+	@Override
+	public List<String> getRequirements(TestIdentifier testIdentifier) {
+		return timed(() -> this.delegate.getRequirements(testIdentifier));
+	}
+
+	@Override
+	public boolean isAnnotated(TestIdentifier testIdentifier) {
+		return timed(() -> this.delegate.isAnnotated(testIdentifier));
+	}
+
+	@Override
+	public List<String> getTags(TestIdentifier testIdentifier) {
+		return timed(() -> this.delegate.getTags(testIdentifier));
+	}
+
+	private <T> T timed(Supplier<T> call) {
+		long start = System.nanoTime();
+		try {
+			return call.get();
+		} finally {
+			this.metrics.recordMetadataResolution(System.nanoTime() - start);
+		}
+	}
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@code Utf8ChannelWriter} encodes characters to UTF-8 straight into a pooled
+ * byte buffer, which is written to a channel whenever it's full, instead of
+ * going through the char buffer of a {@code BufferedWriter} and the byte buffer
+ * of an {@code OutputStreamWriter}. With a direct buffer and a
+ * {@code FileChannel}, the bytes aren't copied again on their way to the file.
+ *
+ * <p>
+ * As with {@code OutputStreamWriter}, malformed characters (i.e., unpaired
+ * surrogates) are replaced. Not thread-safe.
+ */
+final class Utf8ChannelWriter extends Writer {
+
+	private final WritableByteChannel channel;
+	private final ReportBufferPool pool;
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private ByteBuffer buffer;
+	// the high surrogate ending the last write, to be encoded with what follows it
+	private char pendingHighSurrogate;
+	private boolean hasPendingHighSurrogate;
+
+	Utf8ChannelWriter(WritableByteChannel channel, ReportBufferPool pool) {
+		this.channel = channel;
+		this.pool = pool;
+		this.buffer = pool.acquire();
+	}
+
+	@Override
+	public void write(char[] chars, int offset, int length) throws IOException {
+		encode(CharBuffer.wrap(chars, offset, length), false);
+	}
+
+	@Override
+	public void write(String string, int offset, int length) throws IOException {
+		encode(CharBuffer.wrap(string, offset, offset + length), false);
+	}
+
+	@Override
+	public Writer append(CharSequence chars) throws IOException {
+		encode(CharBuffer.wrap(chars == null ? "null" : chars), false);
+		return this;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		drain();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (this.buffer == null) {
+			return;
+		}
+		try {
+			encode(CharBuffer.allocate(0), true);
+			while (this.encoder.flush(this.buffer).isOverflow()) {
+				drain();
+			}
+			drain();
+		} finally {
+			try {
+				this.channel.close();
+			} finally {
+				this.pool.release(this.buffer);
+				this.buffer = null;
+			}
+		}
+	}
+
+	private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+		ensureOpen();
+		while (this.hasPendingHighSurrogate && (chars.hasRemaining() || endOfInput)) {
+			this.hasPendingHighSurrogate = false;
+			CharBuffer pair = chars.hasRemaining()
+					? CharBuffer.wrap(new char[] { this.pendingHighSurrogate, chars.get() })
+					: CharBuffer.wrap(new char[] { this.pendingHighSurrogate });
+			encodeAvailable(pair, endOfInput && !chars.hasRemaining());
+		}
+		encodeAvailable(chars, endOfInput);
+	}
+
+	private void encodeAvailable(CharBuffer chars, boolean endOfInput) throws IOException {
+		while (true) {
+			CoderResult result = this.encoder.encode(chars, this.buffer, endOfInput);
+			if (result.isOverflow()) {
+				drain();
+			} else if (result.isUnderflow()) {
+				break;
+			} else {
+				result.throwException();
+			}
+		}
+		if (chars.hasRemaining()) {
+			// only a high surrogate can be left over, waiting for its low surrogate
+			this.pendingHighSurrogate = chars.get();
+			this.hasPendingHighSurrogate = true;
+		}
+	}
+
+	private void drain() throws IOException {
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	private void ensureOpen() throws IOException {
+		if (this.buffer == null) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+}
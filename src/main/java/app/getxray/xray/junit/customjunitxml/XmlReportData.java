@@ -11,20 +11,23 @@
 package app.getxray.xray.junit.customjunitxml;
 
 import static java.util.Collections.emptyList;
-import static java.util.stream.Collectors.toList;
+import static java.util.Collections.unmodifiableList;
 import static org.junit.platform.engine.TestExecutionResult.Status.ABORTED;
+import static org.junit.platform.engine.TestExecutionResult.Status.SUCCESSFUL;
 
 import java.time.Clock;
-import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
-import java.util.function.Predicate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
 
 import org.junit.platform.commons.util.ExceptionUtils;
 import org.junit.platform.engine.TestExecutionResult;
@@ -35,18 +38,76 @@ import org.junit.platform.launcher.TestPlan;
 
 class XmlReportData {
 
-	private final Map<TestIdentifier, TestExecutionResult> finishedTests = new ConcurrentHashMap<>();
-	private final Map<TestIdentifier, String> skippedTests = new ConcurrentHashMap<>();
-	private final Map<TestIdentifier, Instant> startInstants = new ConcurrentHashMap<>();
-	private final Map<TestIdentifier, Instant> endInstants = new ConcurrentHashMap<>();
-	private final Map<TestIdentifier, List<ReportEntry>> reportEntries = new ConcurrentHashMap<>();
+	private static final int CHUNK_SIZE = 1024;
+	private static final long NO_INSTANT = Long.MIN_VALUE;
+	private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+	private static final byte STARTED = 1;
+	private static final byte FINISHED = 2;
+	private static final byte SKIPPED = 4;
+	private static final int NO_INDEX = -1;
+
+	// each test gets a dense index, whose slot holds everything recorded for it but
+	// its report entries; slots are allocated by chunks, so that tests registered
+	// dynamically can be added without copying (or locking) what is already recorded
+	private final Map<TestIdentifier, Integer> indices = new ConcurrentHashMap<>();
+	private final AtomicInteger nextIndex = new AtomicInteger();
+	private volatile Slots[] chunks = new Slots[0];
+	private final Map<TestIdentifier, ClassifiedReportEntries> reportEntries = new ConcurrentHashMap<>();
+	// by unique id, for values reported through the XrayTestReporter channel
+	private final Map<String, TestIdentifier> runningTests = new ConcurrentHashMap<>();
 
 	private final TestPlan testPlan;
 	private final Clock clock;
+	private final XmlReportJournal journal;
+	private final LongSupplier ticker;
+	private final Consumer<String> evidenceListener;
+	// counted only for report_metrics, as every report entry would contend on them
+	private final boolean countRetainedEntries;
+	private final AtomicLong retainedEntries = new AtomicLong();
+	private final AtomicLong peakRetainedEntries = new AtomicLong();
 
 	XmlReportData(TestPlan testPlan, Clock clock) {
+		this(testPlan, clock, XmlReportJournal.NONE);
+	}
+
+	XmlReportData(TestPlan testPlan, Clock clock, XmlReportJournal journal) {
+		this(testPlan, clock, journal, null);
+	}
+
+	/**
+	 * @param ticker monotonic time source, in nanoseconds, used to measure the
+	 *               duration of tests, or {@code null} to derive durations from
+	 *               the instants given by the {@code clock}
+	 */
+	XmlReportData(TestPlan testPlan, Clock clock, XmlReportJournal journal, LongSupplier ticker) {
+		this(testPlan, clock, journal, ticker, file -> {
+		}, false);
+	}
+
+	/**
+	 * @param evidenceListener told the path of each evidence file as soon as a
+	 *                         test adds it, e.g. to start reading it ahead of the
+	 *                         report
+	 * @param countRetainedEntries whether to count the report entries held at
+	 *                         once, for {@link #getPeakRetainedEntries()}
+	 */
+	XmlReportData(TestPlan testPlan, Clock clock, XmlReportJournal journal, LongSupplier ticker,
+			Consumer<String> evidenceListener, boolean countRetainedEntries) {
 		this.testPlan = testPlan;
 		this.clock = clock;
+		this.journal = journal;
+		this.ticker = ticker;
+		this.evidenceListener = evidenceListener;
+		this.countRetainedEntries = countRetainedEntries;
+		// a single pass over the tree, so that ancestors are then followed by index
+		Deque<TestIdentifier> pending = new ArrayDeque<>(testPlan.getRoots());
+		while (!pending.isEmpty()) {
+			TestIdentifier testIdentifier = pending.poll();
+			int parentIndex = testPlan.getParent(testIdentifier).map(this.indices::get).orElse(NO_INDEX);
+			this.indices.put(testIdentifier, register(parentIndex));
+			pending.addAll(testPlan.getChildren(testIdentifier));
+		}
 	}
 
 	TestPlan getTestPlan() {
@@ -57,94 +118,333 @@ class XmlReportData {
 		return this.clock;
 	}
 
+	void markDynamicTestRegistered(TestIdentifier testIdentifier) {
+		this.journal.recordTestIdentifier(testIdentifier);
+	}
+
 	void markSkipped(TestIdentifier testIdentifier, String reason) {
-		this.skippedTests.put(testIdentifier, reason == null ? "" : reason);
+		Instant instant = this.clock.instant();
+		int index = indexOf(testIdentifier);
+		Slots slots = slotsOf(index);
+		slots.skipReasons[index % CHUNK_SIZE] = reason == null ? "" : reason;
+		slots.mark(index, SKIPPED);
+		this.journal.recordSkipped(testIdentifier, instant, reason);
 	}
 
 	void markStarted(TestIdentifier testIdentifier) {
-		this.startInstants.put(testIdentifier, this.clock.instant());
+		Instant startInstant = this.clock.instant();
+		int index = indexOf(testIdentifier);
+		Slots slots = slotsOf(index);
+		slots.startNanos[index % CHUNK_SIZE] = toEpochNanos(startInstant);
+		if (this.ticker != null) {
+			slots.startTicks[index % CHUNK_SIZE] = this.ticker.getAsLong();
+		}
+		slots.mark(index, STARTED);
+		this.runningTests.put(testIdentifier.getUniqueId(), testIdentifier);
+		this.journal.recordStarted(testIdentifier, startInstant);
 	}
 
 	void markFinished(TestIdentifier testIdentifier, TestExecutionResult result) {
-		this.endInstants.put(testIdentifier, this.clock.instant());
+		long endTicks = this.ticker == null ? 0 : this.ticker.getAsLong();
+		Instant endInstant = this.clock.instant();
+		int index = indexOf(testIdentifier);
+		Slots slots = slotsOf(index);
+		slots.endTicks[index % CHUNK_SIZE] = endTicks;
+		slots.endNanos[index % CHUNK_SIZE] = toEpochNanos(endInstant);
+		this.runningTests.remove(testIdentifier.getUniqueId());
+		this.journal.recordFinished(testIdentifier, endInstant, result);
 		if (result.getStatus() == ABORTED) {
 			String reason = result.getThrowable().map(ExceptionUtils::readStackTrace).orElse("");
-			this.skippedTests.put(testIdentifier, reason);
+			slots.skipReasons[index % CHUNK_SIZE] = reason;
+			slots.mark(index, SKIPPED);
 		} else {
-			this.finishedTests.put(testIdentifier, result);
+			slots.results[index % CHUNK_SIZE] = result;
+			slots.mark(index, FINISHED);
 		}
 	}
 
 	void addReportEntry(TestIdentifier testIdentifier, ReportEntry entry) {
-		List<ReportEntry> entries = this.reportEntries.computeIfAbsent(testIdentifier, key -> new ArrayList<>());
-		entries.add(entry);
+		// tests may publish entries from several threads (e.g., with parallel execution
+		// or from threads of their own), while a report is being written concurrently;
+		// entries are sorted once, here, rather than each time a report is written
+		entriesOf(testIdentifier).add(entry);
+		String evidence = entry.getKeyValuePairs().get(XrayTestReporter.TESTRUN_EVIDENCE);
+		if (evidence != null) {
+			this.evidenceListener.accept(evidence);
+		}
+		this.journal.recordReportEntry(testIdentifier, this.clock.instant(), entry);
+		countRetainedEntry();
+	}
+
+	void addComment(TestIdentifier testIdentifier, String comment) {
+		entriesOf(testIdentifier).addComment(comment);
+		recordReportValue(testIdentifier, XrayTestReporter.TESTRUN_COMMENT, comment);
+	}
+
+	void setTestRunCustomField(TestIdentifier testIdentifier, String field, String value) {
+		entriesOf(testIdentifier).setCustomField(field, value);
+		recordReportValue(testIdentifier, XrayTestReporter.TESTRUN_CUSTOMFIELD_PREFIX + field, value);
+	}
+
+	void addTestRunEvidence(TestIdentifier testIdentifier, String filepath) {
+		entriesOf(testIdentifier).addEvidence(filepath);
+		this.evidenceListener.accept(filepath);
+		recordReportValue(testIdentifier, XrayTestReporter.TESTRUN_EVIDENCE, filepath);
+	}
+
+	/**
+	 * @return the test or container with this unique id, if it has started but
+	 *         not finished yet; {@code null} otherwise
+	 */
+	TestIdentifier getRunningTest(String uniqueId) {
+		return this.runningTests.get(uniqueId);
+	}
+
+	private ClassifiedReportEntries entriesOf(TestIdentifier testIdentifier) {
+		return this.reportEntries.computeIfAbsent(testIdentifier, key -> new ClassifiedReportEntries());
+	}
+
+	private void recordReportValue(TestIdentifier testIdentifier, String key, String value) {
+		if (this.journal.isEnabled()) {
+			// journaled as the report entry it stands for, so recovery needs no other record
+			this.journal.recordReportEntry(testIdentifier, this.clock.instant(), key, value);
+		}
+		countRetainedEntry();
+	}
+
+	private void countRetainedEntry() {
+		if (this.countRetainedEntries) {
+			this.peakRetainedEntries.accumulateAndGet(this.retainedEntries.incrementAndGet(), Math::max);
+		}
+	}
+
+	/**
+	 * Drops everything recorded for a test that has already been written to a
+	 * report. Tests with children are kept, as their descendants still look up
+	 * the results and skip reasons of their ancestors.
+	 */
+	void evict(TestIdentifier testIdentifier) {
+		if (!this.testPlan.getChildren(testIdentifier).isEmpty()) {
+			return;
+		}
+		Integer index = this.indices.get(testIdentifier);
+		if (index != null) {
+			slotsOf(index).clear(index);
+		}
+		ClassifiedReportEntries entries = this.reportEntries.remove(testIdentifier);
+		if (entries != null && this.countRetainedEntries) {
+			this.retainedEntries.addAndGet(-entries.size());
+		}
+	}
+
+	/**
+	 * @return the highest number of report entries held at once, across all tests,
+	 *         or 0 unless they are counted
+	 */
+	long getPeakRetainedEntries() {
+		return this.peakRetainedEntries.get();
 	}
 
 	boolean wasSkipped(TestIdentifier testIdentifier) {
-		return findSkippedAncestor(testIdentifier).isPresent();
+		return resolve(indexOf(testIdentifier)).skipOrigin != NO_INDEX;
 	}
 
-	double getDurationInSeconds(TestIdentifier testIdentifier) {
-		Instant startInstant = getStartInstant(testIdentifier);
-		Instant endInstant = getEndInstant(testIdentifier);
-		return TimeUnit.MILLISECONDS.toSeconds(Duration.between(startInstant, endInstant).toMillis());
+	long getDurationInNanos(TestIdentifier testIdentifier) {
+		Integer index = this.indices.get(testIdentifier);
+		if (this.ticker != null && index != null) {
+			Slots slots = slotsOf(index);
+			int slot = index % CHUNK_SIZE;
+			if ((slots.marks[slot] & STARTED) != 0 && slots.endNanos[slot] != NO_INSTANT) {
+				return slots.endTicks[slot] - slots.startTicks[slot];
+			}
+		}
+		long startNanos = getStartNanos(testIdentifier);
+		return getEndNanos(testIdentifier, startNanos) - startNanos;
 	}
 
 	Instant getStartInstant(TestIdentifier testIdentifier) {
-		return this.startInstants.getOrDefault(testIdentifier, Instant.EPOCH);
+		return toInstant(getStartNanos(testIdentifier));
 	}
 
 	Instant getEndInstant(TestIdentifier testIdentifier) {
-		return this.endInstants.getOrDefault(testIdentifier, getStartInstant(testIdentifier));
+		return toInstant(getEndNanos(testIdentifier, getStartNanos(testIdentifier)));
 	}
 
 	String getSkipReason(TestIdentifier testIdentifier) {
-		return findSkippedAncestor(testIdentifier)
-				.map(skippedTestIdentifier -> {
-					String reason = this.skippedTests.get(skippedTestIdentifier);
-					if (!testIdentifier.equals(skippedTestIdentifier)) {
-						reason = "parent was skipped: '" + reason + "'";
-					}
-
-					return reason;
-				})
-				.orElse(null);
+		int index = indexOf(testIdentifier);
+		int skipOrigin = resolve(index).skipOrigin;
+		if (skipOrigin == NO_INDEX) {
+			return null;
+		}
+		String reason = slotsOf(skipOrigin).skipReasons[skipOrigin % CHUNK_SIZE];
+		return skipOrigin == index ? reason : "parent was skipped: '" + reason + "'";
 	}
 
+	/**
+	 * @return the results that did not succeed, of the test and its ancestors
+	 */
 	List<TestExecutionResult> getResults(TestIdentifier testIdentifier) {
-		return getAncestors(testIdentifier).stream()
-				.map(this.finishedTests::get)
-				.filter(Objects::nonNull)
-				.collect(toList());
+		return resolve(indexOf(testIdentifier)).unsuccessfulResults;
 	}
 
-	List<ReportEntry> getReportEntries(TestIdentifier testIdentifier) {
-		return this.reportEntries.getOrDefault(testIdentifier, emptyList());
+	ClassifiedReportEntries getReportEntries(TestIdentifier testIdentifier) {
+		return this.reportEntries.getOrDefault(testIdentifier, ClassifiedReportEntries.EMPTY);
 	}
 
-	private Optional<TestIdentifier> findSkippedAncestor(TestIdentifier testIdentifier) {
-		return findAncestor(testIdentifier, this.skippedTests::containsKey);
+	/**
+	 * Resolves what a test inherits from its ancestors. Once a test and all of its
+	 * ancestors are done, this can no longer change, so it is kept in the slot of
+	 * the test; as most tests only pass on what they inherited, they share the
+	 * same resolution, so the tree is only resolved once and without copies.
+	 */
+	private Resolution resolve(int index) {
+		Slots slots = slotsOf(index);
+		int slot = index % CHUNK_SIZE;
+		Resolution resolution = slots.resolutions[slot];
+		if (resolution != null) {
+			return resolution;
+		}
+		int parentIndex = slots.parents[slot];
+		Resolution inherited = parentIndex == NO_INDEX ? Resolution.NONE : resolve(parentIndex);
+		boolean skipped = (slots.marks[slot] & SKIPPED) != 0;
+		resolution = inherited.with(index, skipped, slots.results[slot]);
+		boolean done = skipped || (slots.marks[slot] & FINISHED) != 0;
+		if (done && (parentIndex == NO_INDEX || slotsOf(parentIndex).resolutions[parentIndex % CHUNK_SIZE] != null)) {
+			slots.resolutions[slot] = resolution;
+		}
+		return resolution;
 	}
 
-	private Optional<TestIdentifier> findAncestor(TestIdentifier testIdentifier, Predicate<TestIdentifier> predicate) {
-		Optional<TestIdentifier> current = Optional.of(testIdentifier);
-		while (current.isPresent()) {
-			if (predicate.test(current.get())) {
-				return current;
-			}
-			current = this.testPlan.getParent(current.get());
+	private int indexOf(TestIdentifier testIdentifier) {
+		Integer index = this.indices.get(testIdentifier);
+		if (index == null) {
+			// not part of the test plan when execution started, e.g., a dynamic test
+			int parentIndex = this.testPlan.getParent(testIdentifier).map(this::indexOf).orElse(NO_INDEX);
+			index = this.indices.computeIfAbsent(testIdentifier, key -> register(parentIndex));
+		}
+		return index;
+	}
+
+	/**
+	 * @return a new index, whose slot is allocated before it is visible to other
+	 *         threads
+	 */
+	private int register(int parentIndex) {
+		int index = this.nextIndex.getAndIncrement();
+		ensureChunks(index + 1);
+		slotsOf(index).parents[index % CHUNK_SIZE] = parentIndex;
+		return index;
+	}
+
+	private Slots slotsOf(int index) {
+		return this.chunks[index / CHUNK_SIZE];
+	}
+
+	private synchronized void ensureChunks(int size) {
+		Slots[] current = this.chunks;
+		int required = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		if (required <= current.length) {
+			return;
 		}
-		return Optional.empty();
+		Slots[] grown = Arrays.copyOf(current, Math.max(required, current.length * 2));
+		for (int i = current.length; i < grown.length; i++) {
+			grown[i] = new Slots();
+		}
+		this.chunks = grown;
 	}
 
-	private List<TestIdentifier> getAncestors(TestIdentifier testIdentifier) {
-		TestIdentifier current = testIdentifier;
-		List<TestIdentifier> ancestors = new ArrayList<>();
-		while (current != null) {
-			ancestors.add(current);
-			current = this.testPlan.getParent(current).orElse(null);
+	private long getStartNanos(TestIdentifier testIdentifier) {
+		Integer index = this.indices.get(testIdentifier);
+		if (index == null || (slotsOf(index).marks[index % CHUNK_SIZE] & STARTED) == 0) {
+			return 0;
 		}
-		return ancestors;
+		return slotsOf(index).startNanos[index % CHUNK_SIZE];
+	}
+
+	private long getEndNanos(TestIdentifier testIdentifier, long startNanos) {
+		Integer index = this.indices.get(testIdentifier);
+		if (index == null) {
+			return startNanos;
+		}
+		long endNanos = slotsOf(index).endNanos[index % CHUNK_SIZE];
+		return endNanos == NO_INSTANT ? startNanos : endNanos;
+	}
+
+	private static long toEpochNanos(Instant instant) {
+		return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), NANOS_PER_SECOND), instant.getNano());
+	}
+
+	private static Instant toInstant(long epochNanos) {
+		return Instant.ofEpochSecond(Math.floorDiv(epochNanos, NANOS_PER_SECOND), Math.floorMod(epochNanos, NANOS_PER_SECOND));
+	}
+
+	/**
+	 * What is recorded for {@value #CHUNK_SIZE} consecutive test indices. Every
+	 * test is only ever written by the thread that runs it.
+	 */
+	private static final class Slots {
+
+		final long[] startNanos = new long[CHUNK_SIZE];
+		final long[] endNanos = new long[CHUNK_SIZE];
+		final long[] startTicks = new long[CHUNK_SIZE];
+		final long[] endTicks = new long[CHUNK_SIZE];
+		final byte[] marks = new byte[CHUNK_SIZE];
+		final TestExecutionResult[] results = new TestExecutionResult[CHUNK_SIZE];
+		final String[] skipReasons = new String[CHUNK_SIZE];
+		final int[] parents = new int[CHUNK_SIZE];
+		final Resolution[] resolutions = new Resolution[CHUNK_SIZE];
+
+		Slots() {
+			Arrays.fill(this.endNanos, NO_INSTANT);
+		}
+
+		void mark(int index, byte mark) {
+			this.marks[index % CHUNK_SIZE] |= mark;
+		}
+
+		void clear(int index) {
+			int slot = index % CHUNK_SIZE;
+			this.startNanos[slot] = 0;
+			this.endNanos[slot] = NO_INSTANT;
+			this.marks[slot] = 0;
+			this.results[slot] = null;
+			this.skipReasons[slot] = null;
+			this.resolutions[slot] = null;
+		}
+
+	}
+
+	/**
+	 * The closest test that was skipped, among a test and its ancestors, and the
+	 * results of those that did not succeed.
+	 */
+	private static final class Resolution {
+
+		static final Resolution NONE = new Resolution(NO_INDEX, emptyList());
+
+		final int skipOrigin;
+		final List<TestExecutionResult> unsuccessfulResults;
+
+		private Resolution(int skipOrigin, List<TestExecutionResult> unsuccessfulResults) {
+			this.skipOrigin = skipOrigin;
+			this.unsuccessfulResults = unsuccessfulResults;
+		}
+
+		Resolution with(int index, boolean skipped, TestExecutionResult result) {
+			boolean unsuccessful = result != null && result.getStatus() != SUCCESSFUL;
+			if (!skipped && !unsuccessful) {
+				return this;
+			}
+			List<TestExecutionResult> unsuccessfulResults = this.unsuccessfulResults;
+			if (unsuccessful) {
+				unsuccessfulResults = new ArrayList<>(this.unsuccessfulResults.size() + 1);
+				unsuccessfulResults.add(result);
+				unsuccessfulResults.addAll(this.unsuccessfulResults);
+				unsuccessfulResults = unmodifiableList(unsuccessfulResults);
+			}
+			return new Resolution(skipped ? index : this.skipOrigin, unsuccessfulResults);
+		}
+
 	}
 
 }
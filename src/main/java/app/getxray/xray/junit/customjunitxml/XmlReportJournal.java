@@ -0,0 +1,428 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+import org.junit.platform.commons.util.ExceptionUtils;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.TestTag;
+import org.junit.platform.engine.reporting.ReportEntry;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * {@code XmlReportJournal} is an append-only log of everything recorded in
+ * {@link XmlReportData}, so that the reports of a run whose JVM died before
+ * writing them can still be recovered, with {@link XmlReportJournalRecovery}.
+ *
+ * <p>
+ * Records are appended to a memory-mapped file, so they survive the death of
+ * the process as soon as they're appended, without a system call per record.
+ * The length of each record is written last, so a record cut short is never
+ * read back. Mapped regions are only forced to the disk once every
+ * {@value #GROUP_COMMIT_RECORDS} records, when a region is full and when the
+ * journal is closed, so that the cost of a sync is shared by many tests.
+ *
+ * <p>
+ * It's opt-in: unless enabled, {@link #NONE} is used, which records nothing.
+ */
+class XmlReportJournal implements Closeable {
+
+	static final XmlReportJournal NONE = new XmlReportJournal(null, null);
+
+	static final int MAGIC = 0x58524a31; // XRJ1
+	static final byte TEST_IDENTIFIER = 1;
+	static final byte STARTED = 2;
+	static final byte FINISHED = 3;
+	static final byte SKIPPED = 4;
+	static final byte REPORT_ENTRY = 5;
+
+	private static final int REGION_SIZE = 1 << 20;
+	private static final int GROUP_COMMIT_RECORDS = 1024;
+	// always left at the end of a region, for the marker that skips to the next one
+	private static final int MARKER_SIZE = Integer.BYTES;
+	private static final Logger logger = LoggerFactory.getLogger(XmlReportJournal.class);
+
+	private final Path file;
+	private final FileChannel channel;
+	private MappedByteBuffer region;
+	private long regionStart;
+	private int unsyncedRecords;
+	private boolean closed;
+
+	private XmlReportJournal(Path file, FileChannel channel) {
+		this.file = file;
+		this.channel = channel;
+	}
+
+	static XmlReportJournal open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		XmlReportJournal journal = new XmlReportJournal(file, channel);
+		journal.mapRegion(0, REGION_SIZE);
+		journal.region.putInt(MAGIC);
+		return journal;
+	}
+
+	boolean isEnabled() {
+		return this.channel != null;
+	}
+
+	Path getFile() {
+		return this.file;
+	}
+
+	void recordTestPlan(TestPlan testPlan) {
+		if (!isEnabled()) {
+			return;
+		}
+		for (TestIdentifier root : testPlan.getRoots()) {
+			recordTestIdentifier(root);
+			testPlan.getDescendants(root).forEach(this::recordTestIdentifier);
+		}
+	}
+
+	void recordTestIdentifier(TestIdentifier testIdentifier) {
+		if (!isEnabled()) {
+			return;
+		}
+		append(TEST_IDENTIFIER, testIdentifier, Instant.EPOCH, out -> {
+			writeString(out, testIdentifier.getParentId().orElse(null));
+			writeString(out, testIdentifier.getDisplayName());
+			writeString(out, testIdentifier.getLegacyReportingName());
+			writeString(out, testIdentifier.getType().name());
+			Optional<TestSource> source = testIdentifier.getSource();
+			if (source.isPresent() && source.get() instanceof MethodSource) {
+				MethodSource methodSource = (MethodSource) source.get();
+				writeString(out, methodSource.getClassName());
+				writeString(out, methodSource.getMethodName());
+				writeString(out, methodSource.getMethodParameterTypes());
+			} else if (source.isPresent() && source.get() instanceof ClassSource) {
+				writeString(out, ((ClassSource) source.get()).getClassName());
+				writeString(out, null);
+				writeString(out, null);
+			} else {
+				writeString(out, null);
+				writeString(out, null);
+				writeString(out, null);
+			}
+			out.writeInt(testIdentifier.getTags().size());
+			for (TestTag tag : testIdentifier.getTags()) {
+				writeString(out, tag.getName());
+			}
+		});
+	}
+
+	void recordStarted(TestIdentifier testIdentifier, Instant instant) {
+		if (!isEnabled()) {
+			return;
+		}
+		append(STARTED, testIdentifier, instant, out -> {
+		});
+	}
+
+	void recordFinished(TestIdentifier testIdentifier, Instant instant, TestExecutionResult result) {
+		if (!isEnabled()) {
+			return;
+		}
+		append(FINISHED, testIdentifier, instant, out -> {
+			writeString(out, result.getStatus().name());
+			Optional<Throwable> throwable = result.getThrowable();
+			out.writeBoolean(throwable.isPresent());
+			if (throwable.isPresent()) {
+				writeString(out, throwable.get().getClass().getName());
+				writeString(out, throwable.get().getMessage());
+				writeString(out, ExceptionUtils.readStackTrace(throwable.get()));
+				out.writeBoolean(throwable.get() instanceof AssertionError);
+			}
+		});
+	}
+
+	void recordSkipped(TestIdentifier testIdentifier, Instant instant, String reason) {
+		if (!isEnabled()) {
+			return;
+		}
+		append(SKIPPED, testIdentifier, instant, out -> writeString(out, reason));
+	}
+
+	void recordReportEntry(TestIdentifier testIdentifier, Instant instant, ReportEntry entry) {
+		if (!isEnabled()) {
+			return;
+		}
+		append(REPORT_ENTRY, testIdentifier, instant, out -> {
+			Map<String, String> keyValuePairs = entry.getKeyValuePairs();
+			out.writeInt(keyValuePairs.size());
+			for (Map.Entry<String, String> keyValuePair : keyValuePairs.entrySet()) {
+				writeString(out, keyValuePair.getKey());
+				writeString(out, keyValuePair.getValue());
+			}
+		});
+	}
+
+	void recordReportEntry(TestIdentifier testIdentifier, Instant instant, String key, String value) {
+		if (!isEnabled()) {
+			return;
+		}
+		append(REPORT_ENTRY, testIdentifier, instant, out -> {
+			out.writeInt(1);
+			writeString(out, key);
+			writeString(out, value);
+		});
+	}
+
+	private void append(byte type, TestIdentifier testIdentifier, Instant instant, RecordContent content) {
+		byte[] record;
+		try {
+			// serialized before taking the lock, which is then only held for the copy
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(type);
+			writeString(out, testIdentifier.getUniqueId());
+			out.writeLong(instant.getEpochSecond());
+			out.writeInt(instant.getNano());
+			content.writeTo(out);
+			record = bytes.toByteArray();
+		} catch (IOException e) {
+			logger.warn(e, () -> "Could not serialize journal record of " + testIdentifier.getUniqueId());
+			return;
+		}
+
+		MappedByteBuffer regionToSync = null;
+		synchronized (this) {
+			if (this.closed) {
+				return;
+			}
+			try {
+				ensureCapacity(Integer.BYTES + record.length);
+				int position = this.region.position();
+				this.region.position(position + Integer.BYTES);
+				this.region.put(record);
+				this.region.putInt(position, record.length);
+				if (++this.unsyncedRecords >= GROUP_COMMIT_RECORDS) {
+					this.unsyncedRecords = 0;
+					regionToSync = this.region;
+				}
+			} catch (IOException e) {
+				logger.warn(e, () -> "Could not append to journal " + this.file + "; no further records will be written");
+				this.closed = true;
+			}
+		}
+		if (regionToSync != null) {
+			regionToSync.force();
+		}
+	}
+
+	private void ensureCapacity(int size) throws IOException {
+		if (this.region.remaining() - MARKER_SIZE >= size) {
+			return;
+		}
+		// a negative length tells the reader how many bytes are left unused in this region
+		int unused = this.region.remaining() - MARKER_SIZE;
+		this.region.putInt(-(unused + 1));
+		this.region.force();
+		this.unsyncedRecords = 0;
+		mapRegion(this.regionStart + this.region.capacity(), Math.max(REGION_SIZE, size + MARKER_SIZE));
+	}
+
+	private void mapRegion(long start, int size) throws IOException {
+		this.region = this.channel.map(FileChannel.MapMode.READ_WRITE, start, size);
+		this.regionStart = start;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (!isEnabled() || !this.channel.isOpen()) {
+			return;
+		}
+		this.closed = true;
+		try {
+			this.region.force();
+		} finally {
+			this.channel.close();
+		}
+	}
+
+	/**
+	 * Closes the journal and removes it, once its reports were written.
+	 */
+	void delete() throws IOException {
+		if (!isEnabled()) {
+			return;
+		}
+		close();
+		Files.deleteIfExists(this.file);
+	}
+
+	static void read(Path file, RecordHandler handler) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a report journal: " + file);
+			}
+			while (true) {
+				int length;
+				try {
+					length = in.readInt();
+				} catch (EOFException e) {
+					return;
+				}
+				if (length == 0) {
+					// the unused tail of the last region
+					return;
+				}
+				if (length < 0) {
+					in.skipNBytes(-length - 1L);
+					continue;
+				}
+				byte[] record = new byte[length];
+				in.readFully(record);
+				handler.handle(Record.parse(record));
+			}
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@FunctionalInterface
+	private interface RecordContent {
+
+		void writeTo(DataOutputStream out) throws IOException;
+	}
+
+	@FunctionalInterface
+	interface RecordHandler {
+
+		void handle(Record record) throws IOException;
+	}
+
+	/**
+	 * A record read back from a journal; only the fields of its type are set.
+	 */
+	static final class Record {
+
+		byte type;
+		String uniqueId;
+		Instant instant;
+
+		// TEST_IDENTIFIER
+		String parentId;
+		String displayName;
+		String legacyReportingName;
+		String testType;
+		String className;
+		String methodName;
+		String methodParameterTypes;
+		List<String> tags = Collections.emptyList();
+
+		// FINISHED
+		String status;
+		String throwableClassName;
+		String throwableMessage;
+		String stackTrace;
+		boolean assertionError;
+
+		// SKIPPED
+		String reason;
+
+		// REPORT_ENTRY
+		Map<String, String> keyValuePairs = Collections.emptyMap();
+
+		private static Record parse(byte[] bytes) throws IOException {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+			Record record = new Record();
+			record.type = in.readByte();
+			record.uniqueId = readString(in);
+			record.instant = Instant.ofEpochSecond(in.readLong(), in.readInt());
+			switch (record.type) {
+				case TEST_IDENTIFIER:
+					record.parentId = readString(in);
+					record.displayName = readString(in);
+					record.legacyReportingName = readString(in);
+					record.testType = readString(in);
+					record.className = readString(in);
+					record.methodName = readString(in);
+					record.methodParameterTypes = readString(in);
+					int tagCount = in.readInt();
+					record.tags = new ArrayList<>(tagCount);
+					for (int i = 0; i < tagCount; i++) {
+						record.tags.add(readString(in));
+					}
+					break;
+				case FINISHED:
+					record.status = readString(in);
+					if (in.readBoolean()) {
+						record.throwableClassName = readString(in);
+						record.throwableMessage = readString(in);
+						record.stackTrace = readString(in);
+						record.assertionError = in.readBoolean();
+					}
+					break;
+				case SKIPPED:
+					record.reason = readString(in);
+					break;
+				case REPORT_ENTRY:
+					int entryCount = in.readInt();
+					record.keyValuePairs = new LinkedHashMap<>();
+					for (int i = 0; i < entryCount; i++) {
+						record.keyValuePairs.put(readString(in), readString(in));
+					}
+					break;
+				default:
+					break;
+			}
+			return record;
+		}
+	}
+
+}
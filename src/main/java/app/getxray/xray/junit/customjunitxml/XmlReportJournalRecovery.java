@@ -0,0 +1,448 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.platform.engine.ConfigurationParameters;
+import org.junit.platform.engine.OutputDirectoryCreator;
+import org.junit.platform.engine.TestDescriptor;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.TestTag;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.reporting.ReportEntry;
+import org.junit.platform.engine.support.descriptor.AbstractTestDescriptor;
+import org.junit.platform.engine.support.descriptor.ClassSource;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * {@code XmlReportJournalRecovery} writes the reports of a run whose JVM died
+ * before writing them, from the journal it left behind with
+ * {@code report_journal} enabled.
+ *
+ * <p>
+ * The journal is replayed through {@link EnhancedLegacyXmlReportGeneratingListener},
+ * with the same configuration, so the reports are written exactly as they would
+ * have been, using the recorded times. Events are sent to the listener directly,
+ * rather than through a launcher, as no engine may take the id of the engines
+ * that ran, e.g. {@code junit-jupiter}, which names the reports. Tests
+ * that were still running when the JVM died are reported as errors, and those
+ * that never started as skipped.
+ *
+ * <p>
+ * Xray annotations are read from the test classes, so recovery should run with
+ * the test classpath:
+ *
+ * <pre>
+ * java -cp &lt;test classpath&gt; app.getxray.xray.junit.customjunitxml.XmlReportJournalRecovery &lt;journal&gt; [&lt;properties file&gt;]
+ * </pre>
+ */
+public final class XmlReportJournalRecovery {
+
+	static final String NOT_FINISHED_MESSAGE = "The test run ended before this test finished";
+	static final String NOT_STARTED_REASON = "The test run ended before this test started";
+
+	private XmlReportJournalRecovery() {
+	}
+
+	public static void main(String[] args) {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: XmlReportJournalRecovery <journal> [<properties file>]");
+			System.exit(2);
+		}
+		Path journalFile = Paths.get(args[0]);
+		Path propertiesFile = args.length > 1 ? Paths.get(args[1]) : null;
+		try {
+			recover(journalFile, journalFile.toAbsolutePath().getParent(), propertiesFile,
+					new PrintWriter(System.out, true));
+			System.out.println("Recovered reports from " + journalFile);
+		} catch (IOException e) {
+			System.err.println("Could not recover reports from " + journalFile + ": " + e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * @param journalFile    the journal of the dead run
+	 * @param reportsDir     where the reports are written, unless set by the
+	 *                       {@code report_directory} property
+	 * @param propertiesFile the configuration of the dead run, or {@code null} to
+	 *                       look for {@code xray-junit-extensions.properties} in the
+	 *                       classpath
+	 */
+	static void recover(Path journalFile, Path reportsDir, Path propertiesFile, PrintWriter out) throws IOException {
+		Map<String, ReplayDescriptor> descriptors = new LinkedHashMap<>();
+		List<ReplayDescriptor> roots = new ArrayList<>();
+		XmlReportJournal.read(journalFile, record -> {
+			if (record.type == XmlReportJournal.TEST_IDENTIFIER && !descriptors.containsKey(record.uniqueId)) {
+				ReplayDescriptor descriptor = new ReplayDescriptor(record);
+				descriptors.put(record.uniqueId, descriptor);
+				ReplayDescriptor parent = record.parentId == null ? null : descriptors.get(record.parentId);
+				if (parent != null) {
+					parent.addChild(descriptor);
+				} else {
+					roots.add(descriptor);
+				}
+			}
+		});
+
+		ReplayClock clock = new ReplayClock();
+		TestPlan testPlan = TestPlan.from(descriptors.values().stream().anyMatch(ReplayDescriptor::isTest),
+				new ArrayList<>(roots), ReplayConfiguration.INSTANCE, new ReplayOutputDirectoryCreator(reportsDir));
+		Replay replay = new Replay(journalFile, descriptors, testPlan, clock);
+
+		EnhancedLegacyXmlReportGeneratingListener listener = new EnhancedLegacyXmlReportGeneratingListener(reportsDir,
+				propertiesFile, out, clock);
+		listener.reportJournal = false;
+		// the journaled instants are all that's left of the durations
+		listener.ticker = null;
+		// nothing runs, so nothing reports but the journal
+		listener.reporterDirectChannel = false;
+		listener.testPlanExecutionStarted(testPlan);
+		try {
+			replay.replay(roots, listener);
+		} finally {
+			listener.testPlanExecutionFinished(testPlan);
+		}
+		if (replay.failure != null) {
+			throw replay.failure;
+		}
+	}
+
+	/**
+	 * Replays the events of the journal in a single pass, in the order in which
+	 * they were recorded, keeping track of each engine apart; the tests each
+	 * engine left unfinished are then closed, in the order in which the engines
+	 * ran.
+	 */
+	private static final class Replay {
+
+		private final Path journalFile;
+		private final Map<String, ReplayDescriptor> descriptors;
+		private final TestPlan testPlan;
+		private final ReplayClock clock;
+		private IOException failure;
+
+		Replay(Path journalFile, Map<String, ReplayDescriptor> descriptors, TestPlan testPlan, ReplayClock clock) {
+			this.journalFile = journalFile;
+			this.descriptors = descriptors;
+			this.testPlan = testPlan;
+			this.clock = clock;
+		}
+
+		void replay(List<ReplayDescriptor> roots, TestExecutionListener listener) {
+			Map<String, EngineState> engines = new HashMap<>();
+			try {
+				XmlReportJournal.read(this.journalFile, record -> {
+					ReplayDescriptor descriptor = this.descriptors.get(record.uniqueId);
+					if (descriptor == null || record.type == XmlReportJournal.TEST_IDENTIFIER) {
+						return;
+					}
+					EngineState engine = engines.computeIfAbsent(engineIdOf(descriptor), id -> new EngineState());
+					this.clock.instant = record.instant;
+					switch (record.type) {
+						case XmlReportJournal.STARTED:
+							engine.running.add(descriptor);
+							listener.executionStarted(identify(descriptor));
+							break;
+						case XmlReportJournal.FINISHED:
+							engine.running.remove(descriptor);
+							engine.done.add(descriptor);
+							listener.executionFinished(identify(descriptor), toResult(record));
+							break;
+						case XmlReportJournal.SKIPPED:
+							engine.done.add(descriptor);
+							listener.executionSkipped(identify(descriptor), record.reason);
+							break;
+						case XmlReportJournal.REPORT_ENTRY:
+							listener.reportingEntryPublished(identify(descriptor), ReportEntry.from(record.keyValuePairs));
+							break;
+						default:
+							break;
+					}
+				});
+			} catch (IOException e) {
+				this.failure = e;
+			}
+
+			for (ReplayDescriptor root : roots) {
+				closeUnfinished(root, engines.getOrDefault(engineIdOf(root), new EngineState()), listener);
+			}
+		}
+
+		private void closeUnfinished(ReplayDescriptor root, EngineState engine, TestExecutionListener listener) {
+			if (!engine.done.contains(root) && !engine.running.contains(root)) {
+				listener.executionSkipped(identify(root), NOT_STARTED_REASON);
+				return;
+			}
+			List<ReplayDescriptor> unfinished = new ArrayList<>(engine.running);
+			for (int i = unfinished.size() - 1; i >= 0; i--) {
+				ReplayDescriptor descriptor = unfinished.get(i);
+				for (TestDescriptor child : descriptor.getChildren()) {
+					if (!engine.done.contains(child) && !engine.running.contains(child)) {
+						listener.executionSkipped(identify(child), NOT_STARTED_REASON);
+					}
+				}
+				engine.done.add(descriptor);
+				listener.executionFinished(identify(descriptor), descriptor.isTest()
+						? TestExecutionResult.failed(new RecoveredException(IllegalStateException.class.getName(),
+								NOT_FINISHED_MESSAGE, null))
+						: TestExecutionResult.successful());
+			}
+		}
+
+		private static String engineIdOf(TestDescriptor descriptor) {
+			return descriptor.getUniqueId().getEngineId().orElse("");
+		}
+
+		private TestIdentifier identify(TestDescriptor descriptor) {
+			return this.testPlan.getTestIdentifier(descriptor.getUniqueId());
+		}
+
+		private static TestExecutionResult toResult(XmlReportJournal.Record record) {
+			Throwable throwable = null;
+			if (record.throwableClassName != null) {
+				throwable = record.assertionError
+						? new RecoveredAssertionError(record.throwableClassName, record.throwableMessage, record.stackTrace)
+						: new RecoveredException(record.throwableClassName, record.throwableMessage, record.stackTrace);
+			}
+			switch (TestExecutionResult.Status.valueOf(record.status)) {
+				case ABORTED:
+					return TestExecutionResult.aborted(throwable);
+				case FAILED:
+					return TestExecutionResult.failed(throwable);
+				default:
+					return TestExecutionResult.successful();
+			}
+		}
+	}
+
+	/**
+	 * What an engine ran of its tests and containers.
+	 */
+	private static final class EngineState {
+
+		// started, but not finished (nor skipped) yet, in the order they started
+		final Set<ReplayDescriptor> running = new LinkedHashSet<>();
+		final Set<ReplayDescriptor> done = new HashSet<>();
+	}
+
+	private static final class ReplayConfiguration implements ConfigurationParameters {
+
+		static final ReplayConfiguration INSTANCE = new ReplayConfiguration();
+
+		@Override
+		public Optional<String> get(String key) {
+			return Optional.empty();
+		}
+
+		@Override
+		public Optional<Boolean> getBoolean(String key) {
+			return Optional.empty();
+		}
+
+		@Override
+		public Set<String> keySet() {
+			return Collections.emptySet();
+		}
+	}
+
+	private static final class ReplayOutputDirectoryCreator implements OutputDirectoryCreator {
+
+		private final Path rootDirectory;
+
+		ReplayOutputDirectoryCreator(Path rootDirectory) {
+			this.rootDirectory = rootDirectory;
+		}
+
+		@Override
+		public Path getRootDirectory() {
+			return this.rootDirectory;
+		}
+
+		// nothing runs, so nothing writes output files
+		@Override
+		public Path createOutputDirectory(TestDescriptor testDescriptor) {
+			return this.rootDirectory;
+		}
+	}
+
+	private static final class ReplayDescriptor extends AbstractTestDescriptor {
+
+		private final Type type;
+		private final String legacyReportingName;
+		private final Set<TestTag> tags = new LinkedHashSet<>();
+
+		ReplayDescriptor(XmlReportJournal.Record record) {
+			super(UniqueId.parse(record.uniqueId), record.displayName, toSource(record));
+			this.type = Type.valueOf(record.testType);
+			this.legacyReportingName = record.legacyReportingName;
+			for (String tag : record.tags) {
+				if (TestTag.isValid(tag)) {
+					this.tags.add(TestTag.create(tag));
+				}
+			}
+		}
+
+		private static TestSource toSource(XmlReportJournal.Record record) {
+			if (record.className == null) {
+				return null;
+			}
+			if (record.methodName == null) {
+				return ClassSource.from(record.className);
+			}
+			return MethodSource.from(record.className, record.methodName, record.methodParameterTypes);
+		}
+
+		@Override
+		public Type getType() {
+			return this.type;
+		}
+
+		@Override
+		public String getLegacyReportingName() {
+			return this.legacyReportingName;
+		}
+
+		@Override
+		public Set<TestTag> getTags() {
+			return this.tags;
+		}
+	}
+
+	/**
+	 * Clock of the listener during the replay, set to the recorded time of each
+	 * event before it's replayed.
+	 */
+	private static final class ReplayClock extends Clock {
+
+		private volatile Instant instant = Instant.EPOCH;
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneId.systemDefault();
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return Clock.fixed(this.instant, zone);
+		}
+
+		@Override
+		public Instant instant() {
+			return this.instant;
+		}
+	}
+
+	/**
+	 * A throwable recorded in the journal, which reports the type, message and
+	 * stack trace of the original one.
+	 */
+	interface RecoveredThrowable {
+
+		String getOriginalClassName();
+	}
+
+	static final class RecoveredAssertionError extends AssertionError implements RecoveredThrowable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String originalClassName;
+		private final String stackTrace;
+
+		RecoveredAssertionError(String originalClassName, String message, String stackTrace) {
+			super(message);
+			this.originalClassName = originalClassName;
+			this.stackTrace = stackTrace;
+		}
+
+		@Override
+		public String getOriginalClassName() {
+			return this.originalClassName;
+		}
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+
+		@Override
+		public void printStackTrace(PrintWriter s) {
+			s.print(this.stackTrace != null ? this.stackTrace : toString());
+		}
+
+		@Override
+		public void printStackTrace(PrintStream s) {
+			s.print(this.stackTrace != null ? this.stackTrace : toString());
+		}
+
+		@Override
+		public String toString() {
+			return getMessage() != null ? this.originalClassName + ": " + getMessage() : this.originalClassName;
+		}
+	}
+
+	static final class RecoveredException extends Exception implements RecoveredThrowable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String originalClassName;
+		private final String stackTrace;
+
+		RecoveredException(String originalClassName, String message, String stackTrace) {
+			super(message, null, false, false);
+			this.originalClassName = originalClassName;
+			this.stackTrace = stackTrace;
+		}
+
+		@Override
+		public String getOriginalClassName() {
+			return this.originalClassName;
+		}
+
+		@Override
+		public void printStackTrace(PrintWriter s) {
+			s.print(this.stackTrace != null ? this.stackTrace : toString());
+		}
+
+		@Override
+		public void printStackTrace(PrintStream s) {
+			s.print(this.stackTrace != null ? this.stackTrace : toString());
+		}
+
+		@Override
+		public String toString() {
+			return getMessage() != null ? this.originalClassName + ": " + getMessage() : this.originalClassName;
+		}
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+import org.junit.platform.launcher.TestIdentifier;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@code XmlReportShards} spools the testcases of a single report root,
+ * rolling over to a new {@link XmlReportSpool} once the current one reaches
+ * the maximum number of testcases or bytes, if any. Each spool becomes a
+ * separate report, i.e. a shard.
+ *
+ * <p>
+ * Limits are checked before each testcase is appended, so a shard may exceed
+ * the size limit by at most one testcase, and always has at least one.
+ */
+class XmlReportShards implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(XmlReportShards.class);
+
+	private final int maxTestcases;
+	private final long maxBytes;
+	private final XMLOutputFactory xmlOutputFactory;
+	private final List<XmlReportSpool> spools = new ArrayList<>();
+
+	/**
+	 * @param maxTestcases     maximum number of testcases per shard, or 0 for no limit
+	 * @param maxBytes         maximum size of the testcases of a shard, or 0 for no limit
+	 * @param xmlOutputFactory factory of the XML writers of the spools
+	 */
+	XmlReportShards(int maxTestcases, long maxBytes, XMLOutputFactory xmlOutputFactory) {
+		this.maxTestcases = maxTestcases;
+		this.maxBytes = maxBytes;
+		this.xmlOutputFactory = xmlOutputFactory;
+	}
+
+	synchronized void append(XmlReportWriter reportWriter, TestIdentifier testIdentifier)
+			throws XMLStreamException, IOException {
+		current().append(reportWriter, testIdentifier);
+	}
+
+	/**
+	 * @return the spool of each shard, in order; there is always at least one, so
+	 *         that a root without testcases still gets an (empty) report
+	 */
+	synchronized List<XmlReportSpool> getSpools() throws XMLStreamException, IOException {
+		if (this.spools.isEmpty()) {
+			this.spools.add(new XmlReportSpool(this.xmlOutputFactory));
+		}
+		return Collections.unmodifiableList(new ArrayList<>(this.spools));
+	}
+
+	private XmlReportSpool current() throws XMLStreamException, IOException {
+		XmlReportSpool current = this.spools.isEmpty() ? null : this.spools.get(this.spools.size() - 1);
+		if (current == null || isFull(current)) {
+			current = new XmlReportSpool(this.xmlOutputFactory);
+			this.spools.add(current);
+		}
+		return current;
+	}
+
+	private boolean isFull(XmlReportSpool spool) {
+		return (this.maxTestcases > 0 && spool.getTestcaseCount() >= this.maxTestcases)
+				|| (this.maxBytes > 0 && spool.getSize() >= this.maxBytes);
+	}
+
+	@Override
+	public synchronized void close() {
+		for (XmlReportSpool spool : this.spools) {
+			try {
+				spool.close();
+			} catch (IOException e) {
+				logger.warn(e, () -> "Could not remove report spool file");
+			}
+		}
+		this.spools.clear();
+	}
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.platform.launcher.TestIdentifier;
+
+import app.getxray.xray.junit.customjunitxml.XmlReportWriter.AggregatedTestResult.Type;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.Closeable;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.NumberFormat;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * {@code XmlReportSpool} holds the {@code <testcase>} elements of a single
+ * report root, serialized to a temporary file as soon as each test class
+ * finishes.
+ *
+ * <p>
+ * Only the counts needed for the {@code <testsuite>} element are kept in
+ * memory; the spooled content is copied into the final report once the root
+ * finishes. The number of testcases and their size, in UTF-8 bytes, are tracked
+ * so that reports can be sharded by either.
+ */
+class XmlReportSpool implements Closeable {
+
+	private final Path spoolFile;
+	private final Writer spoolWriter;
+	private final Utf8CountingWriter countingWriter;
+	private final XMLStreamWriter xmlWriter;
+	// NumberFormat is not thread-safe; all appends are serialized through this spool
+	private final NumberFormat numberFormat = NumberFormat.getInstance(Locale.US);
+	private final Map<Type, Long> counts = new EnumMap<>(Type.class);
+	private long testcaseCount;
+
+	XmlReportSpool(XMLOutputFactory xmlOutputFactory) throws IOException, XMLStreamException {
+		this.spoolFile = Files.createTempFile("xray-junit-", ".spool");
+		this.spoolWriter = Files.newBufferedWriter(this.spoolFile);
+		this.countingWriter = new Utf8CountingWriter(this.spoolWriter);
+		this.xmlWriter = xmlOutputFactory.createXMLStreamWriter(this.countingWriter);
+	}
+
+	synchronized void append(XmlReportWriter reportWriter, TestIdentifier testIdentifier) throws XMLStreamException {
+		Type type = reportWriter.writeTestcase(testIdentifier, this.numberFormat, this.xmlWriter);
+		this.counts.merge(type, 1L, Long::sum);
+		this.testcaseCount++;
+	}
+
+	synchronized long getTestcaseCount() {
+		return this.testcaseCount;
+	}
+
+	/**
+	 * @return the size of the spooled testcases once encoded; it's counted as they
+	 *         are written, so it doesn't require flushing the spool
+	 */
+	synchronized long getSize() {
+		return this.countingWriter.bytes;
+	}
+
+	synchronized Map<Type, Long> getCounts() {
+		return new EnumMap<>(this.counts);
+	}
+
+	synchronized void transferTo(Writer out) throws IOException, XMLStreamException {
+		this.xmlWriter.flush();
+		this.spoolWriter.flush();
+		try (Reader reader = Files.newBufferedReader(this.spoolFile)) {
+			reader.transferTo(out);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			this.xmlWriter.close();
+		} catch (XMLStreamException e) {
+			// the underlying writer is closed below anyway
+		} finally {
+			this.spoolWriter.close();
+			Files.deleteIfExists(this.spoolFile);
+		}
+	}
+
+	private static final class Utf8CountingWriter extends FilterWriter {
+
+		private long bytes;
+
+		Utf8CountingWriter(Writer out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int c) throws IOException {
+			this.bytes += utf8Length((char) c);
+			this.out.write(c);
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			for (int i = off; i < off + len; i++) {
+				this.bytes += utf8Length(cbuf[i]);
+			}
+			this.out.write(cbuf, off, len);
+		}
+
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			for (int i = off; i < off + len; i++) {
+				this.bytes += utf8Length(str.charAt(i));
+			}
+			this.out.write(str, off, len);
+		}
+
+		// a surrogate pair takes 4 bytes, i.e. 2 per surrogate
+		private static int utf8Length(char c) {
+			if (c < 0x80) {
+				return 1;
+			} else if (c < 0x800 || Character.isSurrogate(c)) {
+				return 2;
+			}
+			return 3;
+		}
+	}
+
+}
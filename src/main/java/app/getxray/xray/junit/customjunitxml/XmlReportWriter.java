@@ -12,27 +12,18 @@ package app.getxray.xray.junit.customjunitxml;
 
 import org.junit.platform.commons.logging.Logger;
 import org.junit.platform.commons.logging.LoggerFactory;
-import org.junit.platform.commons.support.AnnotationSupport;
 import org.junit.platform.engine.TestExecutionResult;
-import org.junit.platform.engine.TestSource;
-import org.junit.platform.engine.reporting.ReportEntry;
-import org.junit.platform.engine.support.descriptor.MethodSource;
 import org.junit.platform.launcher.TestIdentifier;
 import org.junit.platform.launcher.TestPlan;
 
 import app.getxray.xray.junit.customjunitxml.XmlReportWriter.AggregatedTestResult.Type;
-import app.getxray.xray.junit.customjunitxml.annotations.Requirement;
-import app.getxray.xray.junit.customjunitxml.annotations.XrayTest;
 
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
-import java.io.File;
+import java.io.IOException;
 import java.io.Writer;
-import java.lang.reflect.Method;
-import java.net.InetAddress;
-import java.net.UnknownHostException;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.NumberFormat;
 import java.time.LocalDateTime;
@@ -40,21 +31,12 @@ import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Base64;
-import java.util.Collection;
 import java.util.EnumSet;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
-import java.util.Properties;
-import java.util.TreeSet;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static app.getxray.xray.junit.customjunitxml.XmlReportWriter.AggregatedTestResult.Type.ERROR;
 import static app.getxray.xray.junit.customjunitxml.XmlReportWriter.AggregatedTestResult.Type.FAILURE;
@@ -73,8 +55,6 @@ import static java.util.stream.Collectors.toMap;
 import static org.junit.platform.commons.util.ExceptionUtils.readStackTrace;
 import static org.junit.platform.commons.util.StringUtils.isNotBlank;
 import static org.junit.platform.engine.TestExecutionResult.Status.FAILED;
-import static org.junit.platform.launcher.LauncherConstants.STDERR_REPORT_ENTRY_KEY;
-import static org.junit.platform.launcher.LauncherConstants.STDOUT_REPORT_ENTRY_KEY;
 
 /**
  * {@code XmlReportWriter} writes an XML report whose format is compatible with
@@ -83,28 +63,70 @@ import static org.junit.platform.launcher.LauncherConstants.STDOUT_REPORT_ENTRY_
  *
  * @since 1.4
  */
-class XmlReportWriter {
-
-	// Using zero-width assertions in the split pattern simplifies the splitting
-	// process: All split parts
-	// (including the first and last one) can be used directly, without having to
-	// re-add separator characters.
-	private static final Pattern CDATA_SPLIT_PATTERN = Pattern.compile("(?<=]])(?=>)");
+class XmlReportWriter implements ReportFormatWriter {
 
     private static final Logger logger = LoggerFactory.getLogger(EnhancedLegacyXmlReportGeneratingListener.class);
 
     private final XmlReportData reportData;
 	private final boolean reportOnlyAnnotatedTests;
 	private final XrayTestMetadataReader xrayTestMetadataReader;
+	private final ReportMetrics metrics;
+	private final SuiteEnvironment environment;
+	private final DurationPrecision durationPrecision;
+	private final boolean reportDurationNanos;
+	private final XMLOutputFactory xmlOutputFactory;
+	private final EvidenceCache evidenceCache;
+	private final EvidencePolicy evidencePolicy;
 
     XmlReportWriter(XmlReportData reportData,
                     boolean reportOnlyAnnotatedTests,
                     XrayTestMetadataReader xrayTestMetadataReader) {
+        this(reportData, reportOnlyAnnotatedTests, xrayTestMetadataReader, ReportMetrics.NONE,
+                SuiteEnvironment.withDefaults());
+    }
+
+    XmlReportWriter(XmlReportData reportData,
+                    boolean reportOnlyAnnotatedTests,
+                    XrayTestMetadataReader xrayTestMetadataReader,
+                    ReportMetrics metrics,
+                    SuiteEnvironment environment) {
+        this(reportData, reportOnlyAnnotatedTests, xrayTestMetadataReader, metrics, environment,
+                DurationPrecision.SECONDS, false, XMLOutputFactory.newInstance(), EvidenceCache.NONE,
+                EvidencePolicy.NONE);
+    }
+
+    XmlReportWriter(XmlReportData reportData,
+                    boolean reportOnlyAnnotatedTests,
+                    XrayTestMetadataReader xrayTestMetadataReader,
+                    ReportMetrics metrics,
+                    SuiteEnvironment environment,
+                    DurationPrecision durationPrecision,
+                    boolean reportDurationNanos,
+                    XMLOutputFactory xmlOutputFactory,
+                    EvidenceCache evidenceCache,
+                    EvidencePolicy evidencePolicy) {
         this.reportData = reportData;
 		this.reportOnlyAnnotatedTests = reportOnlyAnnotatedTests;
         this.xrayTestMetadataReader = xrayTestMetadataReader;
+		this.metrics = metrics;
+		this.environment = environment;
+		this.durationPrecision = durationPrecision;
+		this.reportDurationNanos = reportDurationNanos;
+		this.xmlOutputFactory = xmlOutputFactory;
+		this.evidenceCache = evidenceCache;
+		this.evidencePolicy = evidencePolicy;
     }
 
+	@Override
+	public String getFileExtension() {
+		return ".xml";
+	}
+
+	@Override
+	public void writeReport(TestIdentifier rootDescriptor, Writer out) throws XMLStreamException {
+		writeXmlReport(rootDescriptor, out);
+	}
+
 	void writeXmlReport(TestIdentifier rootDescriptor, Writer out) throws XMLStreamException {
 		TestPlan testPlan = this.reportData.getTestPlan();
 		Map<TestIdentifier, AggregatedTestResult> tests = testPlan.getDescendants(rootDescriptor) //
@@ -114,32 +136,69 @@ class XmlReportWriter {
 		writeXmlReport(rootDescriptor, tests, out);
 	}
 
-	private AggregatedTestResult toAggregatedResult(TestIdentifier testIdentifier) {
-		if (this.reportData.wasSkipped(testIdentifier)) {
-			return AggregatedTestResult.skipped();
-		}
-		return AggregatedTestResult.nonSkipped(this.reportData.getResults(testIdentifier));
+	void writeXmlReport(TestIdentifier rootDescriptor, XmlReportSpool spool, Writer out)
+			throws XMLStreamException, IOException {
+
+		XMLStreamWriter xmlWriter = this.xmlOutputFactory.createXMLStreamWriter(out);
+		xmlWriter.writeStartDocument("UTF-8", "1.0");
+		newLine(xmlWriter);
+
+		NumberFormat numberFormat = NumberFormat.getInstance(Locale.US);
+		xmlWriter.writeStartElement("testsuite");
+		writeSuiteAttributes(rootDescriptor, spool.getCounts(), numberFormat, xmlWriter);
+		newLine(xmlWriter);
+		this.environment.writeSystemProperties(xmlWriter, out);
+
+		// the testcases were already serialized as they finished; once the writer is
+		// flushed we can copy them verbatim, as no start tag is left open at this point
+		xmlWriter.flush();
+		spool.transferTo(out);
+
+		writeOutputElement("system-out", formatNonStandardAttributesAsString(rootDescriptor), xmlWriter);
+		xmlWriter.writeEndElement();
+		newLine(xmlWriter);
+		xmlWriter.writeEndDocument();
+		xmlWriter.flush();
+		xmlWriter.close();
 	}
 
-	private boolean shouldInclude(TestPlan testPlan, TestIdentifier testIdentifier) {
+	/**
+	 * Writes a single {@code <testcase>} element, as soon as its test class has
+	 * finished, so that it can be spooled instead of being kept in memory until the
+	 * root finishes.
+	 *
+	 * @return the aggregated result type, so that the caller may keep the counts
+	 * needed for the {@code <testsuite>} element
+	 */
+	Type writeTestcase(TestIdentifier testIdentifier, NumberFormat numberFormat, XMLStreamWriter writer)
+			throws XMLStreamException {
+		AggregatedTestResult testResult = toAggregatedResult(testIdentifier);
+		writeTestcase(testIdentifier, testResult, numberFormat, writer);
+		return testResult.type;
+	}
+
+	static boolean shouldInclude(TestPlan testPlan, TestIdentifier testIdentifier) {
 		return testIdentifier.isTest() || testPlan.getChildren(testIdentifier).isEmpty();
 	}
 
+	private AggregatedTestResult toAggregatedResult(TestIdentifier testIdentifier) {
+		return AggregatedTestResult.of(this.reportData, testIdentifier);
+	}
+
 	private void writeXmlReport(TestIdentifier testIdentifier, Map<TestIdentifier, AggregatedTestResult> tests,
 			Writer out) throws XMLStreamException {
 
-		XMLOutputFactory factory = XMLOutputFactory.newInstance();
-		XMLStreamWriter xmlWriter = factory.createXMLStreamWriter(out);
+		XMLStreamWriter xmlWriter = this.xmlOutputFactory.createXMLStreamWriter(out);
 		xmlWriter.writeStartDocument("UTF-8", "1.0");
 		newLine(xmlWriter);
-		writeTestsuite(testIdentifier, tests, xmlWriter);
+		writeTestsuite(testIdentifier, tests, xmlWriter, out);
 		xmlWriter.writeEndDocument();
 		xmlWriter.flush();
 		xmlWriter.close();
 	}
 
 	private void writeTestsuite(TestIdentifier testIdentifier, Map<TestIdentifier, AggregatedTestResult> tests,
-			XMLStreamWriter writer) throws XMLStreamException {
+			XMLStreamWriter writer, Writer out) throws XMLStreamException {
 
 		// NumberFormat is not thread-safe. Thus, we instantiate it here and pass it to
 		// writeTestcase instead of using a constant
@@ -147,10 +206,11 @@ class XmlReportWriter {
 
 		writer.writeStartElement("testsuite");
 
-		writeSuiteAttributes(testIdentifier, tests.values(), numberFormat, writer);
+		Map<Type, Long> counts = tests.values().stream().map(it -> it.type).collect(groupingBy(identity(), counting()));
+		writeSuiteAttributes(testIdentifier, counts, numberFormat, writer);
 
 		newLine(writer);
-		writeSystemProperties(writer);
+		this.environment.writeSystemProperties(writer, out);
 
 		for (Entry<TestIdentifier, AggregatedTestResult> entry : tests.entrySet()) {
 			writeTestcase(entry.getKey(), entry.getValue(), numberFormat, writer);
@@ -162,19 +222,18 @@ class XmlReportWriter {
 		newLine(writer);
 	}
 
-	private void writeSuiteAttributes(TestIdentifier testIdentifier, Collection<AggregatedTestResult> testResults,
+	private void writeSuiteAttributes(TestIdentifier testIdentifier, Map<Type, Long> counts,
 			NumberFormat numberFormat, XMLStreamWriter writer) throws XMLStreamException {
 
 		writeAttributeSafely(writer, "name", testIdentifier.getDisplayName());
-		writeTestCounts(testResults, writer);
+		writeTestCounts(counts, writer);
 		writeAttributeSafely(writer, "time", getTime(testIdentifier, numberFormat));
-		writeAttributeSafely(writer, "hostname", getHostname().orElse("<unknown host>"));
+		writeAttributeSafely(writer, "hostname", this.environment.getHostname());
 		writeAttributeSafely(writer, "timestamp", ISO_LOCAL_DATE_TIME.format(getCurrentDateTime()));
 	}
 
-	private void writeTestCounts(Collection<AggregatedTestResult> testResults, XMLStreamWriter writer)
+	private void writeTestCounts(Map<Type, Long> counts, XMLStreamWriter writer)
 			throws XMLStreamException {
-		Map<Type, Long> counts = testResults.stream().map(it -> it.type).collect(groupingBy(identity(), counting()));
 		long total = counts.values().stream().mapToLong(Long::longValue).sum();
 		writeAttributeSafely(writer, "tests", String.valueOf(total));
 		writeAttributeSafely(writer, "skipped", counts.getOrDefault(SKIPPED, 0L).toString());
@@ -182,61 +241,10 @@ class XmlReportWriter {
 		writeAttributeSafely(writer, "errors", counts.getOrDefault(ERROR, 0L).toString());
 	}
 
-	private void writeSystemProperties(XMLStreamWriter writer) throws XMLStreamException {
-		writer.writeStartElement("properties");
-		newLine(writer);
-		Properties systemProperties = System.getProperties();
-		for (String propertyName : new TreeSet<>(systemProperties.stringPropertyNames())) {
-			writer.writeEmptyElement("property");
-			writeAttributeSafely(writer, "name", propertyName);
-			writeAttributeSafely(writer, "value", systemProperties.getProperty(propertyName));
-			newLine(writer);
-		}
-		writer.writeEndElement();
-		newLine(writer);
-	}
-
-	private Optional<Method> getTestMethod(final TestSource source) {
-		if (source instanceof MethodSource) {
-			return getTestMethod((MethodSource) source);
-		}
-		return Optional.empty();
-	}
-
-	private Optional<Method> getTestMethod(final MethodSource source) {
-		try {
-			final Class<?> aClass = Class.forName(source.getClassName());
-			return Stream.of(aClass.getDeclaredMethods()).filter(method -> MethodSource.from(method).equals(source))
-					.findAny();
-		} catch (ClassNotFoundException | NoClassDefFoundError e) {
-			logger.error(e, () -> "Could not get test method from method source " + source);
-		}
-		return Optional.empty();
-	}
-
-	private Map<String, String> getTestRunCustomFields(List<ReportEntry> entries) {
-		HashMap<String, String> testRunCustomFields = new HashMap<>();
-
-		if (!entries.isEmpty()) {
-			for (ReportEntry reportEntry : entries) {
-				Map<String, String> entryTestRunCustomFields = reportEntry.getKeyValuePairs().entrySet()
-																	 .stream()
-																	 .filter(mapItem -> mapItem.getKey().startsWith(XrayTestReporter.TESTRUN_CUSTOMFIELD_PREFIX))
-																	 .collect(Collectors.toMap(map -> (map.getKey()).substring(25), Entry::getValue));
-				testRunCustomFields.putAll(entryTestRunCustomFields);
-			}
-		}
-		return testRunCustomFields;
-	}
-
 	private void writeTestcase(TestIdentifier testIdentifier, AggregatedTestResult testResult,
 			NumberFormat numberFormat, XMLStreamWriter writer) throws XMLStreamException {
 
-		final Optional<TestSource> testSource = testIdentifier.getSource();
-		final Optional<Method> testMethod = testSource.flatMap(this::getTestMethod);
-		Optional<XrayTest> xrayTest = AnnotationSupport.findAnnotation(testMethod, XrayTest.class);
-		Optional<Requirement> requirement = AnnotationSupport.findAnnotation(testMethod, Requirement.class);
-		if (reportOnlyAnnotatedTests && (!requirement.isPresent() && !xrayTest.isPresent())) {
+		if (reportOnlyAnnotatedTests && !xrayTestMetadataReader.isAnnotated(testIdentifier)) {
 			return;
 		}
 
@@ -251,17 +259,15 @@ class XmlReportWriter {
 
 		writeSkippedOrErrorOrFailureElement(testIdentifier, testResult, writer);
 
+		ClassifiedReportEntries entries = this.reportData.getReportEntries(testIdentifier);
 		List<String> systemOutElements = new ArrayList<>();
-		List<String> systemErrElements = new ArrayList<>();
 		systemOutElements.add(formatNonStandardAttributesAsString(testIdentifier));
-		collectReportEntries(testIdentifier, systemOutElements, systemErrElements);
+		collectReportEntries(entries, systemOutElements);
 		writeOutputElements("system-out", systemOutElements, writer);
-		writeOutputElements("system-err", systemErrElements, writer);
+		writeOutputElements("system-err", entries.getStderr(), writer);
 
 		StringBuilder testrunComment = new StringBuilder();
-		List<String> testrunComments = new ArrayList<>();
-		collectReportEntriesFor(testIdentifier, "xray:comment", testrunComments);
-		testrunComments.forEach((comment) -> testrunComment.append(format("{0}\n", comment.trim())));
+		entries.getComments().forEach((comment) -> testrunComment.append(format("{0}\n", comment.trim())));
 
 		writer.writeStartElement("properties");
 		newLine(writer);
@@ -300,13 +306,19 @@ class XmlReportWriter {
 			addProperty(writer, "tags", String.join(",", tags));
 		}
 
+		if (this.reportDurationNanos) {
+			addProperty(writer, "duration_nanos", String.valueOf(this.reportData.getDurationInNanos(testIdentifier)));
+		}
+
 		// TODO: get arguments
 		// Object[] args = argumentsFrom(testIdentifier);
 		// System.out.println("xargs: " + args);
 		// System.out.println("xargs.len: " + args.length);
 
-		List<ReportEntry> entries = this.reportData.getReportEntries(testIdentifier);
-		Map<String, String> testrunCustomFields = getTestRunCustomFields(entries);
+		for (Map.Entry<String, String> usage : entries.getResourceUsage().entrySet()) {
+			addProperty(writer, usage.getKey(), usage.getValue());
+		}
+		Map<String, String> testrunCustomFields = entries.getCustomFields();
 
 		if (!testrunCustomFields.isEmpty()) {
 			writer.writeStartElement("property");
@@ -327,27 +339,26 @@ class XmlReportWriter {
 			writeAttributeSafely(writer, "name", "testrun_evidence");
 			newLine(writer);
 
-			for (ReportEntry reportEntry : entries) {
-				List<String> files = reportEntry.getKeyValuePairs().entrySet().stream()
-												.filter(mapItem -> mapItem.getKey()
-																		  .equals(XrayTestReporter.TESTRUN_EVIDENCE))
-												.map(Entry::getValue).collect(Collectors.toList());
-
-				Base64.Encoder enc = Base64.getEncoder();
-				for (String file : files) {
-					try {
-						byte[] fileContent = Files.readAllBytes(Paths.get(file));
-						byte[] encoded = enc.encode(fileContent);
-						String encodedStr = new String(encoded, "UTF-8");
-						addItem(writer, new File(file).getName(), encodedStr);
-					} catch (Exception e) {
-						logger.error(e, () -> "error encoding evidence " + file);
-					}
-				}
+			EvidencePolicy.Budget budget = this.evidencePolicy.newBudget();
+			for (String file : entries.getEvidence()) {
+				writeEvidenceItem(writer, file, budget);
 			}
 
 			writer.writeEndElement(); // property testrun_evidence
 			newLine(writer);
+
+			if (!budget.getDropped().isEmpty()) {
+				writer.writeStartElement("property");
+				writeAttributeSafely(writer, "name", "testrun_evidence_dropped");
+				newLine(writer);
+
+				for (EvidencePolicy.Dropped dropped : budget.getDropped()) {
+					addItem(writer, dropped.getName(), dropped.getDescription());
+				}
+
+				writer.writeEndElement(); // property testrun_evidence_dropped
+				newLine(writer);
+			}
 		}
 
 		// quick hack: add a dummy property, to overcome a temporary Xray Cloud parsing issue for empty <properties> element
@@ -377,6 +388,50 @@ class XmlReportWriter {
 		newLine(writer);
 	}
 
+	void writeEvidenceItem(XMLStreamWriter writer, String file) throws XMLStreamException {
+		writeEvidenceItem(writer, file, EvidencePolicy.NONE.newBudget());
+	}
+
+	private void writeEvidenceItem(XMLStreamWriter writer, String file, EvidencePolicy.Budget budget)
+			throws XMLStreamException {
+		Path path;
+		EvidenceCache.Evidence evidence;
+		try {
+			path = Paths.get(file);
+			// opened before the item is started, so that a file that can't be read
+			// leaves no trace in the report
+			evidence = budget.open(path, this.evidenceCache);
+		} catch (Exception e) {
+			logger.error(e, () -> "error encoding evidence " + file);
+			return;
+		}
+		if (evidence == null) {
+			return;
+		}
+		try {
+			writer.writeStartElement("item");
+			writeAttributeSafely(writer, "name", path.getFileName().toString());
+			evidence.writeTo(writer::writeCharacters);
+			this.metrics.recordEvidence(evidence);
+			writer.writeEndElement();
+			newLine(writer);
+		} catch (IOException e) {
+			// the encoding could only be written in part, so the report is failed rather
+			// than holding a cut attachment
+			throw new XMLStreamException("Could not write the encoding of evidence " + file, e);
+		} finally {
+			closeEvidence(evidence, file);
+		}
+	}
+
+	private static void closeEvidence(EvidenceCache.Evidence evidence, String file) {
+		try {
+			evidence.close();
+		} catch (IOException e) {
+			logger.warn(e, () -> "Could not remove the spooled encoding of evidence " + file);
+		}
+	}
+
 	private void addItem(XMLStreamWriter writer, String name, String content) throws XMLStreamException {
 		writer.writeStartElement("item");
 		writeAttributeSafely(writer, "name", name);
@@ -431,57 +486,23 @@ class XmlReportWriter {
 		if (throwable.getMessage() != null) {
 			writeAttributeSafely(writer, "message", throwable.getMessage());
 		}
-		writeAttributeSafely(writer, "type", throwable.getClass().getName());
+		// throwables replayed from a journal stand for ones of another type
+		String type = throwable instanceof XmlReportJournalRecovery.RecoveredThrowable
+				? ((XmlReportJournalRecovery.RecoveredThrowable) throwable).getOriginalClassName()
+				: throwable.getClass().getName();
+		writeAttributeSafely(writer, "type", type);
 		writeCDataSafely(writer, readStackTrace(throwable));
 	}
 
-	private void collectReportEntries(TestIdentifier testIdentifier, List<String> systemOutElements,
-			List<String> systemErrElements) {
-		List<ReportEntry> entries = this.reportData.getReportEntries(testIdentifier);
+	private void collectReportEntries(ClassifiedReportEntries entries, List<String> systemOutElements) {
 		if (!entries.isEmpty()) {
-			List<String> systemOutElementsForCapturedOutput = new ArrayList<>();
 			StringBuilder formattedReportEntries = new StringBuilder();
-			for (int i = 0; i < entries.size(); i++) {
-				ReportEntry reportEntry = entries.get(i);
-				Map<String, String> keyValuePairs = new LinkedHashMap<>(reportEntry.getKeyValuePairs());
-				removeIfPresentAndAddAsSeparateElement(keyValuePairs, STDOUT_REPORT_ENTRY_KEY,
-						systemOutElementsForCapturedOutput);
-				removeIfPresentAndAddAsSeparateElement(keyValuePairs, STDERR_REPORT_ENTRY_KEY, systemErrElements);
-				removeXrayKeys(keyValuePairs);
-				if (!keyValuePairs.isEmpty()) {
-					buildReportEntryDescription(reportEntry.getTimestamp(), keyValuePairs, i + 1,
-							formattedReportEntries);
-				}
+			for (ClassifiedReportEntries.OtherEntry entry : entries.getOtherEntries()) {
+				buildReportEntryDescription(entry.getTimestamp(), entry.getKeyValuePairs(), entry.getNumber(),
+						formattedReportEntries);
 			}
 			systemOutElements.add(formattedReportEntries.toString().trim());
-			systemOutElements.addAll(systemOutElementsForCapturedOutput);
-		}
-	}
-
-	private void collectReportEntriesFor(TestIdentifier testIdentifier, String entryName, List<String> elements) {
-		List<ReportEntry> entries = this.reportData.getReportEntries(testIdentifier);
-		if (!entries.isEmpty()) {
-			for (ReportEntry reportEntry : entries) {
-				List<String> tempComments = reportEntry.getKeyValuePairs()
-													   .entrySet()
-													   .stream()
-													   .filter(mapItem -> mapItem.getKey().equals(entryName))
-													   .map(Entry::getValue)
-													   .collect(Collectors.toList());
-				elements.addAll(tempComments);
-			}
-		}
-	}
-
-	private void removeXrayKeys(Map<String, String> keyValuePairs) {
-		keyValuePairs.entrySet().removeIf(entry -> entry.getKey().startsWith(XrayTestReporter.XRAY_PREFIX));
-	}
-
-	private void removeIfPresentAndAddAsSeparateElement(Map<String, String> keyValuePairs, String key,
-			List<String> elements) {
-		String value = keyValuePairs.remove(key);
-		if (value != null) {
-			elements.add(value);
+			systemOutElements.addAll(entries.getStdout());
 		}
 	}
 
@@ -493,7 +514,7 @@ class XmlReportWriter {
 	}
 
 	private String getTime(TestIdentifier testIdentifier, NumberFormat numberFormat) {
-		return numberFormat.format(this.reportData.getDurationInSeconds(testIdentifier));
+		return this.durationPrecision.format(this.reportData.getDurationInNanos(testIdentifier), numberFormat);
 	}
 
 	private String getStartedAt(TestIdentifier testIdentifier, DateTimeFormatter dateFormatter) {
@@ -504,14 +525,6 @@ class XmlReportWriter {
 		return dateFormatter.format(this.reportData.getEndInstant(testIdentifier));
 	}
 
-	private Optional<String> getHostname() {
-		try {
-			return Optional.ofNullable(InetAddress.getLocalHost().getHostName());
-		} catch (UnknownHostException e) {
-			return Optional.empty();
-		}
-	}
-
 	private LocalDateTime getCurrentDateTime() {
 		return LocalDateTime.now(this.reportData.getClock()).withNano(0);
 	}
@@ -536,29 +549,93 @@ class XmlReportWriter {
 		newLine(writer);
 	}
 
-	private void writeAttributeSafely(XMLStreamWriter writer, String name, String value) throws XMLStreamException {
+	static void writeAttributeSafely(XMLStreamWriter writer, String name, String value) throws XMLStreamException {
 		writer.writeAttribute(name, escapeIllegalChars(value));
 	}
 
-	private void writeCDataSafely(XMLStreamWriter writer, String data) throws XMLStreamException {
-		for (String safeDataPart : CDATA_SPLIT_PATTERN.split(escapeIllegalChars(data))) {
-			writer.writeCData(safeDataPart);
+	/**
+	 * Writes the data as CDATA, replacing illegal characters by character
+	 * references and splitting {@code ]]>} across two CDATA sections, in a single
+	 * pass; data that needs neither is written as is, without copying it.
+	 */
+	static void writeCDataSafely(XMLStreamWriter writer, String data) throws XMLStreamException {
+		int length = data.length();
+		// only created once an illegal character is found, and then reused by every section
+		StringBuilder escaped = null;
+		int sectionStart = 0;
+		int copiedUpTo = 0;
+		int i = 0;
+		while (i < length) {
+			char c = data.charAt(i);
+			if (c == ']' && i + 2 < length && data.charAt(i + 1) == ']' && data.charAt(i + 2) == '>') {
+				int sectionEnd = i + 2;
+				writeCDataSection(writer, data, sectionStart, copiedUpTo, sectionEnd, escaped);
+				sectionStart = sectionEnd;
+				copiedUpTo = sectionEnd;
+				i = sectionEnd;
+				continue;
+			}
+			int codePoint = c;
+			int charCount = 1;
+			if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(data.charAt(i + 1))) {
+				codePoint = Character.toCodePoint(c, data.charAt(i + 1));
+				charCount = 2;
+			}
+			if (!isAllowedXmlCharacter(codePoint)) {
+				if (escaped == null) {
+					escaped = new StringBuilder(length + 16);
+				}
+				if (copiedUpTo == sectionStart) {
+					escaped.setLength(0);
+				}
+				escaped.append(data, copiedUpTo, i).append("&#").append(codePoint).append(';');
+				copiedUpTo = i + charCount;
+			}
+			i += charCount;
+		}
+		writeCDataSection(writer, data, sectionStart, copiedUpTo, length, escaped);
+	}
+
+	private static void writeCDataSection(XMLStreamWriter writer, String data, int sectionStart, int copiedUpTo,
+			int sectionEnd, StringBuilder escaped) throws XMLStreamException {
+		if (copiedUpTo > sectionStart) {
+			// part of this section was escaped into the builder already
+			escaped.append(data, copiedUpTo, sectionEnd);
+			writer.writeCData(escaped.toString());
+		} else if (sectionStart == 0 && sectionEnd == data.length()) {
+			writer.writeCData(data);
+		} else {
+			writer.writeCData(data.substring(sectionStart, sectionEnd));
 		}
 	}
 
 	static String escapeIllegalChars(String text) {
-		if (text.codePoints().allMatch(XmlReportWriter::isAllowedXmlCharacter)) {
+		int length = text.length();
+		StringBuilder result = null;
+		int copiedUpTo = 0;
+		int i = 0;
+		while (i < length) {
+			char c = text.charAt(i);
+			int codePoint = c;
+			int charCount = 1;
+			if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+				codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+				charCount = 2;
+			}
+			if (!isAllowedXmlCharacter(codePoint)) {
+				if (result == null) {
+					result = new StringBuilder(length + 16);
+				}
+				// use a Character Reference (cf. https://www.w3.org/TR/xml/#NT-CharRef)
+				result.append(text, copiedUpTo, i).append("&#").append(codePoint).append(';');
+				copiedUpTo = i + charCount;
+			}
+			i += charCount;
+		}
+		if (result == null) {
 			return text;
 		}
-		StringBuilder result = new StringBuilder(text.length() * 2);
-		text.codePoints().forEach(codePoint -> {
-			if (isAllowedXmlCharacter(codePoint)) {
-				result.appendCodePoint(codePoint);
-			} else { // use a Character Reference (cf. https://www.w3.org/TR/xml/#NT-CharRef)
-				result.append("&#").append(codePoint).append(';');
-			}
-		});
-		return result.toString();
+		return result.append(text, copiedUpTo, length).toString();
 	}
 
 	private static boolean isAllowedXmlCharacter(int codePoint) {
@@ -571,7 +648,7 @@ class XmlReportWriter {
 				|| (codePoint >= 0x10000 && codePoint <= 0x10FFFF);
 	}
 
-	private void newLine(XMLStreamWriter xmlWriter) throws XMLStreamException {
+	static void newLine(XMLStreamWriter xmlWriter) throws XMLStreamException {
 		xmlWriter.writeCharacters("\n");
 	}
 
@@ -584,6 +661,13 @@ class XmlReportWriter {
 
 		private static final AggregatedTestResult SKIPPED_RESULT = new AggregatedTestResult(SKIPPED, emptyList());
 
+		static AggregatedTestResult of(XmlReportData reportData, TestIdentifier testIdentifier) {
+			if (reportData.wasSkipped(testIdentifier)) {
+				return skipped();
+			}
+			return nonSkipped(reportData.getResults(testIdentifier));
+		}
+
 		public static AggregatedTestResult skipped() {
 			return SKIPPED_RESULT;
 		}
@@ -604,6 +688,10 @@ class XmlReportWriter {
 			this.executionResults = executionResults;
 		}
 
+		Type getType() {
+			return this.type;
+		}
+
 		public Map<Type, List<Optional<Throwable>>> getThrowablesByType() {
 			return executionResults.stream() //
 					.collect(groupingBy(Type::from, mapping(TestExecutionResult::getThrowable, toList())));
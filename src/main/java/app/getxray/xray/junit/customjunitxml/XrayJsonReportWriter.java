@@ -0,0 +1,259 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+
+import app.getxray.xray.junit.customjunitxml.XmlReportWriter.AggregatedTestResult;
+import app.getxray.xray.junit.customjunitxml.XmlReportWriter.AggregatedTestResult.Type;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * {@code XrayJsonReportWriter} writes a report in Xray's own JSON format for
+ * importing execution results, so that test keys, requirements, testrun
+ * comments, custom fields and evidence are mapped directly, instead of being
+ * encoded as JUnit XML properties that Xray has to parse again.
+ *
+ * <p>
+ * The document is streamed as it's built; evidence is read and encoded chunk
+ * by chunk, straight into the output. Tests without a test key are described
+ * through {@code testInfo}, so that Xray can find or create them; creating
+ * them requires the project key to be configured ({@code xray_project_key}).
+ */
+class XrayJsonReportWriter implements ReportFormatWriter {
+
+	private static final Logger logger = LoggerFactory.getLogger(XrayJsonReportWriter.class);
+
+	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ISO_OFFSET_DATE_TIME
+			.withZone(ZoneOffset.UTC);
+
+	private final XmlReportData reportData;
+	private final boolean reportOnlyAnnotatedTests;
+	private final XrayTestMetadataReader xrayTestMetadataReader;
+	private final ReportMetrics metrics;
+	private final String projectKey;
+	private final EvidenceCache evidenceCache;
+	private final EvidencePolicy evidencePolicy;
+
+	XrayJsonReportWriter(XmlReportData reportData, boolean reportOnlyAnnotatedTests,
+			XrayTestMetadataReader xrayTestMetadataReader, ReportMetrics metrics, String projectKey) {
+		this(reportData, reportOnlyAnnotatedTests, xrayTestMetadataReader, metrics, projectKey, EvidenceCache.NONE,
+				EvidencePolicy.NONE);
+	}
+
+	XrayJsonReportWriter(XmlReportData reportData, boolean reportOnlyAnnotatedTests,
+			XrayTestMetadataReader xrayTestMetadataReader, ReportMetrics metrics, String projectKey,
+			EvidenceCache evidenceCache, EvidencePolicy evidencePolicy) {
+		this.reportData = reportData;
+		this.reportOnlyAnnotatedTests = reportOnlyAnnotatedTests;
+		this.xrayTestMetadataReader = xrayTestMetadataReader;
+		this.metrics = metrics;
+		this.projectKey = projectKey;
+		this.evidenceCache = evidenceCache;
+		this.evidencePolicy = evidencePolicy;
+	}
+
+	@Override
+	public String getFileExtension() {
+		return ".json";
+	}
+
+	@Override
+	public void writeReport(TestIdentifier rootDescriptor, Writer out) throws IOException {
+		TestPlan testPlan = this.reportData.getTestPlan();
+		JsonWriter json = new JsonWriter(out);
+		json.beginObject();
+
+		json.name("info").beginObject();
+		json.name("summary").value("Execution of " + rootDescriptor.getDisplayName());
+		json.name("startDate").value(formatDate(this.reportData.getStartInstant(rootDescriptor)));
+		json.name("finishDate").value(formatDate(this.reportData.getEndInstant(rootDescriptor)));
+		json.endObject();
+
+		json.name("tests").beginArray();
+		for (TestIdentifier testIdentifier : testPlan.getDescendants(rootDescriptor)) {
+			if (XmlReportWriter.shouldInclude(testPlan, testIdentifier) && isReported(testIdentifier)) {
+				writeTest(testIdentifier, json);
+			}
+		}
+		json.endArray();
+
+		json.endObject();
+		json.flush();
+	}
+
+	private boolean isReported(TestIdentifier testIdentifier) {
+		if (!this.reportOnlyAnnotatedTests) {
+			return true;
+		}
+		return this.xrayTestMetadataReader.isAnnotated(testIdentifier);
+	}
+
+	private void writeTest(TestIdentifier testIdentifier, JsonWriter json) throws IOException {
+		AggregatedTestResult testResult = AggregatedTestResult.of(this.reportData, testIdentifier);
+		ClassifiedReportEntries entries = this.reportData.getReportEntries(testIdentifier);
+		List<String> comments = new ArrayList<>();
+		for (String comment : entries.getComments()) {
+			comments.add(comment.trim());
+		}
+		Map<String, String> customFields = entries.getCustomFields();
+		List<String> evidence = entries.getEvidence();
+		comments.addAll(describeResult(testIdentifier, testResult));
+
+		json.beginObject();
+		Optional<String> testKey = this.xrayTestMetadataReader.getKey(testIdentifier);
+		if (testKey.isPresent()) {
+			json.name("testKey").value(testKey.get());
+		} else {
+			writeTestInfo(testIdentifier, json);
+		}
+		json.name("start").value(formatDate(this.reportData.getStartInstant(testIdentifier)));
+		json.name("finish").value(formatDate(this.reportData.getEndInstant(testIdentifier)));
+		json.name("status").value(toStatus(testResult.getType()));
+		if (!comments.isEmpty()) {
+			json.name("comment").value(String.join("\n", comments));
+		}
+		if (!customFields.isEmpty()) {
+			json.name("customFields").beginArray();
+			for (Map.Entry<String, String> customField : customFields.entrySet()) {
+				json.beginObject();
+				json.name("id").value(customField.getKey());
+				json.name("value").value(customField.getValue());
+				json.endObject();
+			}
+			json.endArray();
+		}
+		if (!evidence.isEmpty()) {
+			json.name("evidence").beginArray();
+			// evidence left out is only recorded in the XML report, which has properties for it
+			EvidencePolicy.Budget budget = this.evidencePolicy.newBudget();
+			for (String file : evidence) {
+				writeEvidence(file, budget, json);
+			}
+			json.endArray();
+		}
+		json.endObject();
+	}
+
+	private void writeTestInfo(TestIdentifier testIdentifier, JsonWriter json) throws IOException {
+		TestPlan testPlan = this.reportData.getTestPlan();
+		String name = this.xrayTestMetadataReader.getName(testIdentifier);
+		String className = this.xrayTestMetadataReader.getClassName(testIdentifier, testPlan);
+
+		json.name("testInfo").beginObject();
+		if (this.projectKey != null) {
+			json.name("projectKey").value(this.projectKey);
+		}
+		json.name("summary").value(this.xrayTestMetadataReader.getSummary(testIdentifier).orElse(name));
+		json.name("type").value("Generic");
+		// the same identity that Xray's JUnit XML importer uses for tests without a key
+		json.name("definition").value(className + "." + name);
+		List<String> requirements = this.xrayTestMetadataReader.getRequirements(testIdentifier);
+		if (!requirements.isEmpty()) {
+			json.name("requirementKeys").beginArray();
+			for (String requirement : requirements) {
+				json.value(requirement);
+			}
+			json.endArray();
+		}
+		List<String> tags = this.xrayTestMetadataReader.getTags(testIdentifier);
+		if (!tags.isEmpty()) {
+			json.name("labels").beginArray();
+			for (String tag : tags) {
+				json.value(tag);
+			}
+			json.endArray();
+		}
+		json.endObject();
+	}
+
+	private void writeEvidence(String file, EvidencePolicy.Budget budget, JsonWriter json) throws IOException {
+		Path path;
+		String contentType;
+		EvidenceCache.Evidence evidence;
+		try {
+			path = Paths.get(file);
+			contentType = Files.probeContentType(path);
+			// opened before the object is started, so that a file that can't be read
+			// leaves no trace in the report; one that can't be read to the end fails it
+			evidence = budget.open(path, this.evidenceCache);
+		} catch (Exception e) {
+			logger.error(e, () -> "error encoding evidence " + file);
+			return;
+		}
+		if (evidence == null) {
+			return;
+		}
+		try {
+			json.beginObject();
+			json.name("filename").value(path.getFileName().toString());
+			json.name("contentType").value(contentType == null ? "application/octet-stream" : contentType);
+			json.name("data").base64Value(evidence);
+			this.metrics.recordEvidence(evidence);
+			json.endObject();
+		} finally {
+			try {
+				evidence.close();
+			} catch (IOException e) {
+				logger.warn(e, () -> "Could not remove the spooled encoding of evidence " + file);
+			}
+		}
+	}
+
+	private List<String> describeResult(TestIdentifier testIdentifier, AggregatedTestResult testResult) {
+		List<String> descriptions = new ArrayList<>();
+		if (testResult.getType() == Type.SKIPPED) {
+			String reason = this.reportData.getSkipReason(testIdentifier);
+			if (reason != null && !reason.isEmpty()) {
+				descriptions.add("Skipped: " + reason);
+			}
+			return descriptions;
+		}
+		for (List<Optional<Throwable>> throwables : testResult.getThrowablesByType().values()) {
+			for (Optional<Throwable> throwable : throwables) {
+				throwable.map(Throwable::toString).ifPresent(descriptions::add);
+			}
+		}
+		return descriptions;
+	}
+
+	private static String toStatus(Type type) {
+		switch (type) {
+			case SUCCESS:
+				return "PASSED";
+			case SKIPPED:
+				return "TODO";
+			default:
+				return "FAILED";
+		}
+	}
+
+	private static String formatDate(Instant instant) {
+		return DATE_FORMATTER.format(instant.truncatedTo(ChronoUnit.SECONDS));
+	}
+
+}
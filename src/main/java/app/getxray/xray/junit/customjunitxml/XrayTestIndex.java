@@ -0,0 +1,239 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.platform.commons.logging.Logger;
+import org.junit.platform.commons.logging.LoggerFactory;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * {@code XrayTestIndex} gives O(1) access to the annotations of test methods
+ * recorded at compile time by the {@code xray-junit-extensions-processor}
+ * annotation processor: the values of {@code @XrayTest} and
+ * {@code @Requirement}, the {@code @DisplayName}, whether the method is a
+ * {@code @TestFactory} and whether its class has a
+ * {@code @DisplayNameGeneration}.
+ *
+ * <p>
+ * The index is a properties file, {@value #RESOURCE_NAME}, with one marker line
+ * per indexed class and per method declared in it, keyed by
+ * {@code <class>#<method>(<parameter types>)} as in {@link MethodSource}, and one
+ * line per fact about a method. Methods that are not in the index, e.g. those
+ * inherited from a class that is not, are left for reflection.
+ */
+class XrayTestIndex {
+
+	static final String RESOURCE_NAME = "META-INF/xray-junit-extensions/xray-test-index.properties";
+	static final String CLASS_MARKER = "#";
+
+	private static final Logger logger = LoggerFactory.getLogger(XrayTestIndex.class);
+
+	// whether each indexed class has a @DisplayNameGeneration
+	private final Map<String, Boolean> indexedClasses = new HashMap<>();
+	private final Map<String, Entry> entries = new HashMap<>();
+
+	static XrayTestIndex load(ClassLoader classLoader) {
+		XrayTestIndex index = new XrayTestIndex();
+		if (classLoader == null) {
+			return index;
+		}
+		try {
+			Enumeration<URL> resources = classLoader.getResources(RESOURCE_NAME);
+			while (resources.hasMoreElements()) {
+				URL resource = resources.nextElement();
+				try (Reader reader = new InputStreamReader(resource.openStream(), StandardCharsets.UTF_8)) {
+					Properties properties = new Properties();
+					properties.load(reader);
+					index.add(properties);
+				}
+			}
+		} catch (IOException e) {
+			logger.warn(e, () -> "Could not read Xray test index " + RESOURCE_NAME);
+		}
+		for (Map.Entry<String, Entry> entry : index.entries.entrySet()) {
+			String className = entry.getKey().substring(0, entry.getKey().indexOf('#'));
+			entry.getValue().complete(index.indexedClasses.getOrDefault(className, false));
+		}
+		return index;
+	}
+
+	private void add(Properties properties) {
+		for (String name : properties.stringPropertyNames()) {
+			String value = properties.getProperty(name);
+			if (name.endsWith(CLASS_MARKER)) {
+				this.indexedClasses.put(name.substring(0, name.length() - CLASS_MARKER.length()),
+						Arrays.asList(value.split(",")).contains("displayNameGeneration"));
+				continue;
+			}
+			// parameter types have dots of their own, so attributes are told by what follows them
+			int parametersEnd = name.lastIndexOf(')');
+			if (parametersEnd < 0 || name.indexOf('#') < 0) {
+				continue;
+			}
+			Entry entry = this.entries.computeIfAbsent(name.substring(0, parametersEnd + 1), key -> new Entry());
+			if (name.length() > parametersEnd + 1 && name.charAt(parametersEnd + 1) == '.') {
+				entry.set(name.substring(parametersEnd + 2), value);
+			}
+		}
+	}
+
+	/**
+	 * @param source method source
+	 * @return the indexed entry of the method, which may have no Xray annotations,
+	 *         or {@code null} if the method is not in the index
+	 */
+	Entry lookup(MethodSource source) {
+		if (!this.indexedClasses.containsKey(source.getClassName())) {
+			return null;
+		}
+		String methodKey = source.getClassName() + "#" + source.getMethodName() + "(" + source.getMethodParameterTypes() + ")";
+		return this.entries.get(methodKey);
+	}
+
+	boolean isEmpty() {
+		return this.indexedClasses.isEmpty();
+	}
+
+	static final class Entry {
+
+		private static final String REQUIREMENTS_PREFIX = "requirements.";
+
+		private boolean xrayTest;
+		private String key;
+		private String id;
+		private String summary;
+		private String description;
+		private boolean requirement;
+		private final Map<Integer, String> requirementsByIndex = new TreeMap<>();
+		private List<String> requirements = Collections.emptyList();
+		private String displayName;
+		private boolean testFactory;
+		private boolean displayNameGeneration;
+
+		private void set(String attribute, String value) {
+			switch (attribute) {
+				case "xrayTest":
+					this.xrayTest = true;
+					break;
+				case "key":
+					this.key = value;
+					break;
+				case "id":
+					this.id = value;
+					break;
+				case "summary":
+					this.summary = value;
+					break;
+				case "description":
+					this.description = value;
+					break;
+				case "requirement":
+					this.requirement = true;
+					break;
+				case "displayName":
+					this.displayName = value;
+					break;
+				case "testFactory":
+					this.testFactory = true;
+					break;
+				default:
+					if (attribute.startsWith(REQUIREMENTS_PREFIX)) {
+						try {
+							this.requirementsByIndex.put(Integer.valueOf(attribute.substring(REQUIREMENTS_PREFIX.length())), value);
+						} catch (NumberFormatException e) {
+							// not written by the processor
+						}
+					}
+					break;
+			}
+		}
+
+		private void complete(boolean displayNameGeneration) {
+			this.displayNameGeneration = displayNameGeneration;
+			if (!this.requirementsByIndex.isEmpty()) {
+				this.requirements = Collections.unmodifiableList(new ArrayList<>(this.requirementsByIndex.values()));
+			}
+		}
+
+		/**
+		 * @return whether the method is annotated with {@code @XrayTest}
+		 */
+		boolean hasXrayTest() {
+			return this.xrayTest;
+		}
+
+		/**
+		 * @return whether the method is annotated with {@code @Requirement}
+		 */
+		boolean hasRequirement() {
+			return this.requirement;
+		}
+
+		Optional<String> getKey() {
+			return nonEmpty(this.key);
+		}
+
+		Optional<String> getId() {
+			return nonEmpty(this.id);
+		}
+
+		Optional<String> getSummary() {
+			return nonEmpty(this.summary);
+		}
+
+		Optional<String> getDescription() {
+			return nonEmpty(this.description);
+		}
+
+		List<String> getRequirements() {
+			return this.requirements;
+		}
+
+		/**
+		 * @return the value of the {@code @DisplayName} of the method, even if empty
+		 */
+		Optional<String> getDisplayName() {
+			return Optional.ofNullable(this.displayName);
+		}
+
+		boolean isTestFactory() {
+			return this.testFactory;
+		}
+
+		/**
+		 * @return whether the class of the method has a {@code @DisplayNameGeneration}
+		 */
+		boolean hasDisplayNameGeneration() {
+			return this.displayNameGeneration;
+		}
+
+		private static Optional<String> nonEmpty(String value) {
+			return Optional.ofNullable(value).filter(s -> !s.isEmpty());
+		}
+	}
+
+}
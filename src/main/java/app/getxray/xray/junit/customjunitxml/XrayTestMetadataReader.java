@@ -91,6 +91,19 @@ public interface XrayTestMetadataReader {
      */
     List<String> getRequirements(TestIdentifier testIdentifier);
 
+    /**
+     * Tells whether the test is annotated with {@code @XrayTest} or
+     * {@code @Requirement}, which is what {@code report_only_annotated_tests}
+     * reports.
+     *
+     * @param testIdentifier test identifier
+     * @return true if the test method has any of these annotations
+     */
+    default boolean isAnnotated(TestIdentifier testIdentifier) {
+        TestMethodMetadata metadata = TestMethodMetadata.of(testIdentifier);
+        return metadata.getXrayTest().isPresent() || metadata.getRequirement().isPresent();
+    }
+
     /**
      * @param testIdentifier test identifier
      * @return Unmodifiable list of tags
@@ -16,6 +16,7 @@ public interface XrayTestReporter {
     String TESTRUN_COMMENT = "xray:comment";
     String TESTRUN_EVIDENCE = "xray:evidence";
     String TESTRUN_CUSTOMFIELD_PREFIX = "xray:testrun_customfield:";
+    String RESOURCE_USAGE_PREFIX = "xray:resource_usage:";
 
     void addComment(String comment);
 
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.launcher.TestIdentifier;
+
+/**
+ * Where {@link XrayTestReporter} sends what a test reports.
+ *
+ * <p>
+ * When the test is being run by a listener of this library, in this JVM, that
+ * enables {@code reporter_direct_channel}, values go straight into its report
+ * data, as typed values: no {@link org.junit.platform.engine.reporting.ReportEntry}
+ * (and timestamp) is created, and no key has to be matched again afterwards.
+ * Otherwise, which is the default, values are published as report entries, as
+ * they always were, so that all listeners see them.
+ */
+abstract class XrayTestReporterChannel {
+
+	// report data of the listeners currently running tests, which may be several,
+	// e.g., when a test plan is launched from within a test
+	private static final Set<XmlReportData> openReports = new CopyOnWriteArraySet<>();
+
+	static void open(XmlReportData reportData) {
+		openReports.add(reportData);
+	}
+
+	static void close(XmlReportData reportData) {
+		openReports.remove(reportData);
+	}
+
+	/**
+	 * @return a channel to the listener running the test (or container) of the
+	 *         context, or one publishing report entries if there isn't exactly
+	 *         one such listener
+	 */
+	static XrayTestReporterChannel of(ExtensionContext extensionContext) {
+		String uniqueId = extensionContext.getUniqueId();
+		XrayTestReporterChannel channel = null;
+		for (XmlReportData reportData : openReports) {
+			TestIdentifier testIdentifier = reportData.getRunningTest(uniqueId);
+			if (testIdentifier != null) {
+				if (channel != null) {
+					// report entries only reach the listeners of the launcher running the test
+					return new ReportEntryChannel(extensionContext);
+				}
+				channel = new DirectChannel(reportData, testIdentifier);
+			}
+		}
+		return channel != null ? channel : new ReportEntryChannel(extensionContext);
+	}
+
+	abstract void addComment(String comment);
+
+	abstract void setTestRunCustomField(String field, String value);
+
+	abstract void addTestRunEvidence(String filepath);
+
+	private static final class DirectChannel extends XrayTestReporterChannel {
+
+		private final XmlReportData reportData;
+		private final TestIdentifier testIdentifier;
+
+		DirectChannel(XmlReportData reportData, TestIdentifier testIdentifier) {
+			this.reportData = reportData;
+			this.testIdentifier = testIdentifier;
+		}
+
+		@Override
+		void addComment(String comment) {
+			this.reportData.addComment(this.testIdentifier, comment);
+		}
+
+		@Override
+		void setTestRunCustomField(String field, String value) {
+			this.reportData.setTestRunCustomField(this.testIdentifier, field, value);
+		}
+
+		@Override
+		void addTestRunEvidence(String filepath) {
+			this.reportData.addTestRunEvidence(this.testIdentifier, filepath);
+		}
+
+	}
+
+	private static final class ReportEntryChannel extends XrayTestReporterChannel {
+
+		private final ExtensionContext extensionContext;
+
+		ReportEntryChannel(ExtensionContext extensionContext) {
+			this.extensionContext = extensionContext;
+		}
+
+		@Override
+		void addComment(String comment) {
+			this.extensionContext.publishReportEntry(XrayTestReporter.TESTRUN_COMMENT, comment);
+		}
+
+		@Override
+		void setTestRunCustomField(String field, String value) {
+			this.extensionContext.publishReportEntry(XrayTestReporter.TESTRUN_CUSTOMFIELD_PREFIX + field, value);
+		}
+
+		@Override
+		void addTestRunEvidence(String filepath) {
+			this.extensionContext.publishReportEntry(XrayTestReporter.TESTRUN_EVIDENCE, filepath);
+		}
+
+	}
+
+}
@@ -10,38 +10,60 @@
 
 package app.getxray.xray.junit.customjunitxml;
 
-import java.util.ArrayList;
-
 import org.junit.jupiter.api.extension.ExtensionContext;
 
 public class XrayTestReporterImpl implements XrayTestReporter {
 
     private final ExtensionContext extensionContext;
+    private volatile XrayTestReporterChannel channel;
 
     public XrayTestReporterImpl(ExtensionContext extensionContext) {
         this.extensionContext = extensionContext;
     }
 
     public void addComment(String comment) {
-        this.extensionContext.publishReportEntry(TESTRUN_COMMENT, comment);
+        channel().addComment(comment);
     }
 
     public void setTestRunCustomField(String field, String value) {
-        this.extensionContext.publishReportEntry(TESTRUN_CUSTOMFIELD_PREFIX + field, value);
+        channel().setTestRunCustomField(field, value);
     }
 
     public void setTestRunCustomField(String field, String[] values) {
-        ArrayList<String> arrList = new ArrayList<String>();
-        for (int i=0;i<values.length;i++) {
-            String value = values[i];
-            value = value.replaceAll("\\\\", "\\\\\\\\").replaceAll(";", "\\\\;");
-            arrList.add(value);
-        } 
-        String serializedValue =String.join(";", (String [])(arrList.toArray(new String[0])) );
-        this.extensionContext.publishReportEntry(TESTRUN_CUSTOMFIELD_PREFIX + field, serializedValue);
+        channel().setTestRunCustomField(field, serialize(values));
     }
 
     public void addTestRunEvidence(String filepath) {
-        this.extensionContext.publishReportEntry(TESTRUN_EVIDENCE, filepath);
+        channel().addTestRunEvidence(filepath);
+    }
+
+    // looked up once per reporter, which is bound to the context it was injected in;
+    // not kept in a store, as the stores of test methods see those of their class
+    private XrayTestReporterChannel channel() {
+        XrayTestReporterChannel channel = this.channel;
+        if (channel == null) {
+            channel = XrayTestReporterChannel.of(this.extensionContext);
+            this.channel = channel;
+        }
+        return channel;
+    }
+
+    // values are joined with ";", escaping "\" and ";" with a "\"
+    static String serialize(String[] values) {
+        StringBuilder serializedValue = new StringBuilder();
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                serializedValue.append(';');
+            }
+            String value = values[i];
+            for (int j = 0; j < value.length(); j++) {
+                char c = value.charAt(j);
+                if (c == '\\' || c == ';') {
+                    serializedValue.append('\\');
+                }
+                serializedValue.append(c);
+            }
+        }
+        return serializedValue.toString();
     }
 }
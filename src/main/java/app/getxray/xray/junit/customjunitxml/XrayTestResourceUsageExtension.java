@@ -0,0 +1,116 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.extension.AfterTestExecutionCallback;
+import org.junit.jupiter.api.extension.BeforeTestExecutionCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.ExtensionContext.Namespace;
+
+/**
+ * Optional extension that measures what each test costs: the CPU time and the
+ * bytes allocated by the thread running the test, and the garbage collections
+ * that happened meanwhile. They're published as report entries, which the
+ * listener writes as {@code resource_usage:*} properties of the testcase.
+ *
+ * <p>
+ * CPU time and allocated bytes are only those of the thread that runs the test
+ * method, and are left out if the JVM doesn't support measuring them. Garbage
+ * collections are counted for the whole JVM, so they include those caused by
+ * other tests running in parallel.
+ */
+public class XrayTestResourceUsageExtension implements BeforeTestExecutionCallback, AfterTestExecutionCallback {
+
+    static final String CPU_TIME_NANOS = XrayTestReporter.RESOURCE_USAGE_PREFIX + "cpu_time_nanos";
+    static final String ALLOCATED_BYTES = XrayTestReporter.RESOURCE_USAGE_PREFIX + "allocated_bytes";
+    static final String GC_COUNT = XrayTestReporter.RESOURCE_USAGE_PREFIX + "gc_count";
+    static final String GC_TIME_MILLIS = XrayTestReporter.RESOURCE_USAGE_PREFIX + "gc_time_millis";
+
+    private static final Namespace NAMESPACE = Namespace.create(XrayTestResourceUsageExtension.class);
+    private static final String SAMPLE_KEY = "sample";
+
+    @Override
+    public void beforeTestExecution(ExtensionContext context) {
+        context.getStore(NAMESPACE).put(SAMPLE_KEY, Sample.now());
+    }
+
+    @Override
+    public void afterTestExecution(ExtensionContext context) {
+        Sample after = Sample.now();
+        Sample before = context.getStore(NAMESPACE).remove(SAMPLE_KEY, Sample.class);
+        if (before == null) {
+            return;
+        }
+        Map<String, String> usage = new LinkedHashMap<>();
+        if (before.cpuTimeNanos >= 0 && after.cpuTimeNanos >= 0) {
+            usage.put(CPU_TIME_NANOS, String.valueOf(after.cpuTimeNanos - before.cpuTimeNanos));
+        }
+        if (before.allocatedBytes >= 0 && after.allocatedBytes >= 0) {
+            usage.put(ALLOCATED_BYTES, String.valueOf(after.allocatedBytes - before.allocatedBytes));
+        }
+        usage.put(GC_COUNT, String.valueOf(after.gcCount - before.gcCount));
+        usage.put(GC_TIME_MILLIS, String.valueOf(after.gcTimeMillis - before.gcTimeMillis));
+        context.publishReportEntry(usage);
+    }
+
+    private static final class Sample {
+
+        private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+        private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocations();
+
+        final long cpuTimeNanos;
+        final long allocatedBytes;
+        final long gcCount;
+        final long gcTimeMillis;
+
+        private Sample(long cpuTimeNanos, long allocatedBytes, long gcCount, long gcTimeMillis) {
+            this.cpuTimeNanos = cpuTimeNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcTimeMillis = gcTimeMillis;
+        }
+
+        static Sample now() {
+            long gcCount = 0;
+            long gcTimeMillis = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                // -1 when a collector doesn't tell
+                gcCount += Math.max(0, collector.getCollectionCount());
+                gcTimeMillis += Math.max(0, collector.getCollectionTime());
+            }
+            long allocatedBytes = ALLOCATIONS != null && ALLOCATIONS.isThreadAllocatedMemoryEnabled()
+                    ? ALLOCATIONS.getCurrentThreadAllocatedBytes()
+                    : -1;
+            long cpuTimeNanos = THREADS.isCurrentThreadCpuTimeSupported() && THREADS.isThreadCpuTimeEnabled()
+                    ? THREADS.getCurrentThreadCpuTime()
+                    : -1;
+            return new Sample(cpuTimeNanos, allocatedBytes, gcCount, gcTimeMillis);
+        }
+
+        private static com.sun.management.ThreadMXBean allocations() {
+            try {
+                if (THREADS instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported()) {
+                    return (com.sun.management.ThreadMXBean) THREADS;
+                }
+            } catch (LinkageError e) {
+                // not a JVM that has the com.sun.management extensions
+            }
+            return null;
+        }
+    }
+}
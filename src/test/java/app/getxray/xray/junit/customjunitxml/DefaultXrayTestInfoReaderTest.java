@@ -13,6 +13,7 @@ package app.getxray.xray.junit.customjunitxml;
 import app.getxray.xray.junit.customjunitxml.data.MockedTestClass;
 import app.getxray.xray.junit.customjunitxml.data.MockedTestWithDisplayNameGeneratorClass;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.engine.config.DefaultJupiterConfiguration;
 import org.junit.jupiter.engine.config.JupiterConfiguration;
@@ -27,6 +28,7 @@ import org.junit.platform.launcher.TestPlan;
 import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
 import org.junit.platform.launcher.core.LauncherFactory;
 
+import java.lang.annotation.Annotation;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -448,4 +450,43 @@ class DefaultXrayTestInfoReaderTest {
                             .isEqualTo(XrayEnabledTestExamples.NestedClass.class.getName());
                 });
     }
+
+    @Test
+    void shouldFindAnnotationsThroughTheOverridesOfASubclass() {
+        // GIVEN
+        XrayTestMetadataReader reader = new DefaultXrayTestMetadataReader() {
+            @Override
+            protected <A extends Annotation> Optional<A> getTestMethodAnnotation(TestIdentifier testIdentifier, Class<A> aClass) {
+                // only tests with a display name count
+                return super.getTestMethodAnnotation(testIdentifier, DisplayName.class).isPresent()
+                        ? super.getTestMethodAnnotation(testIdentifier, aClass)
+                        : Optional.empty();
+            }
+        };
+        TestIdentifier annotated = TestIdentifier.from(testWithXraytestAnnotation);
+        TestIdentifier annotatedWithDisplayName = TestIdentifier.from(testWithXraytestAndDisplayNameAnnotation);
+        // THEN
+        assertThat(reader.getKey(annotated)).isEmpty();
+        assertThat(reader.getId(annotated)).isEmpty();
+        assertThat(reader.getSummary(annotated)).isEmpty();
+        assertThat(reader.getDescription(annotated)).isEmpty();
+        assertThat(reader.getRequirements(annotated)).isEmpty();
+        assertThat(reader.isAnnotated(annotated)).isFalse();
+        assertThat(reader.getSummary(annotatedWithDisplayName)).contains("xray summary");
+        assertThat(reader.isAnnotated(annotatedWithDisplayName)).isTrue();
+    }
+
+    @Test
+    void shouldFindClassAnnotationsThroughTheOverridesOfASubclass() {
+        // GIVEN
+        XrayTestMetadataReader reader = new DefaultXrayTestMetadataReader() {
+            @Override
+            protected <A extends Annotation> Optional<A> getTestClassAnnotation(TestIdentifier testIdentifier, Class<A> aClass) {
+                return Optional.empty();
+            }
+        };
+        // THEN
+        assertThat(reader.getSummary(TestIdentifier.from(testWithDisplayNameGenerator))).isEmpty();
+        assertThat(reader.getSummary(TestIdentifier.from(testWithTestFactoryAnnotation))).isPresent();
+    }
 }
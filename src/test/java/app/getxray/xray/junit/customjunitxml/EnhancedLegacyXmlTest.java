@@ -22,12 +22,18 @@ import static org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder.r
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.math.BigDecimal;
 import java.net.URL;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
@@ -37,11 +43,17 @@ import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 import java.util.Properties;
+import java.util.Random;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import javax.xml.XMLConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
@@ -55,6 +67,7 @@ import org.junit.platform.engine.discovery.DiscoverySelectors;
 import org.junit.platform.engine.reporting.ReportEntry;
 import org.junit.platform.launcher.Launcher;
 import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.TestExecutionListener;
 import org.junit.platform.launcher.TestIdentifier;
 import org.junit.platform.launcher.TestPlan;
 import org.junit.platform.launcher.core.LauncherFactory;
@@ -100,6 +113,343 @@ class EnhancedLegacyXmlTest {
                 .hasSize(2);
     }
 
+    @Test
+    void shouldStreamTestcasesToReport() throws Exception {
+        String customProperties = "streaming_report=true\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { BASIC_CLASS, SIMPLE_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        Match testsuite = readValidXmlFile(tempDirectory.resolve(REPORT_NAME));
+        assertThat(testsuite.attr("tests")).isEqualTo("4");
+        assertThat(testsuite.attr("failures")).isEqualTo("0");
+        assertThat(testsuite.children("testcase")).hasSize(4);
+        assertThat(testsuite.children("testcase").matchAttr("name", "someBasicTest")).isNotEmpty();
+        assertThat(testsuite.children("testcase").matchAttr("name", "anotherSimpleTest")).isNotEmpty();
+        assertThat(testsuite.children("properties")).hasSize(1);
+        assertThat(testsuite.children("system-out")).hasSize(1);
+    }
+
+    @Test
+    void shouldStreamTestcasesToReportPerTestClass() throws Exception {
+        String customProperties = "streaming_report=true\nreports_per_class=true\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { BASIC_CLASS, SIMPLE_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        Match testsuite = readValidXmlFile(tempDirectory.resolve("TEST-app.getxray.xray.junit.customjunitxml.BasicTestExample.xml"));
+        assertThat(testsuite.attr("tests")).isEqualTo("2");
+        assertThat(testsuite.children("testcase")).hasSize(2);
+        assertThat(testsuite.children("testcase").matchAttr("name", "someBasicTest")).isNotEmpty();
+
+        testsuite = readValidXmlFile(tempDirectory.resolve("TEST-app.getxray.xray.junit.customjunitxml.SimpleTestExample.xml"));
+        assertThat(testsuite.attr("tests")).isEqualTo("2");
+        assertThat(testsuite.children("testcase")).hasSize(2);
+        assertThat(testsuite.children("testcase").matchAttr("name", "anotherSimpleTest")).isNotEmpty();
+    }
+
+    @Test
+    void shouldStreamFailuresOfContainersAsTheyAreReportedWithoutStreaming() throws Exception {
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, "streaming_report=true\n".getBytes());
+
+        executeTestClasses(new Class[] { FailingAfterAllTestExample.class, BASIC_CLASS }, null, Clock.systemDefaultZone());
+        List<String> expected = summarize(readValidXmlFile(tempDirectory.resolve(REPORT_NAME)));
+        executeTestClasses(new Class[] { FailingAfterAllTestExample.class, BASIC_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        // without streaming, testcases come in no particular order
+        assertThat(summarize(readValidXmlFile(tempDirectory.resolve(REPORT_NAME)))).containsExactlyInAnyOrderElementsOf(expected)
+                .contains("firstTest: 1 error(s), 0 failure(s)", "nestedTest: 1 error(s), 0 failure(s)");
+    }
+
+    @Test
+    void shouldStreamFailuresOfContainersAsTheyAreReportedWithoutStreamingPerTestClass() throws Exception {
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, "reports_per_class=true\n".getBytes());
+        Path streamingPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(streamingPropertiesFile, "reports_per_class=true\nstreaming_report=true\n".getBytes());
+        Path report = tempDirectory.resolve("TEST-app.getxray.xray.junit.customjunitxml.FailingAfterAllTestExample.xml");
+
+        executeTestClasses(new Class[] { FailingAfterAllTestExample.class }, customPropertiesFile, Clock.systemDefaultZone());
+        List<String> expected = summarize(readValidXmlFile(report));
+        executeTestClasses(new Class[] { FailingAfterAllTestExample.class }, streamingPropertiesFile, Clock.systemDefaultZone());
+
+        assertThat(summarize(readValidXmlFile(report))).containsExactlyInAnyOrderElementsOf(expected)
+                .contains("secondTest: 1 error(s), 0 failure(s)");
+    }
+
+    // what a report tells of its testcases, apart from timings
+    private static List<String> summarize(Match testsuite) {
+        List<String> summary = new ArrayList<>();
+        summary.add("tests=" + testsuite.attr("tests") + ", failures=" + testsuite.attr("failures") + ", errors="
+                + testsuite.attr("errors") + ", skipped=" + testsuite.attr("skipped"));
+        for (Match testcase : testsuite.children("testcase").each()) {
+            summary.add(testcase.attr("name") + ": " + testcase.children("error").size() + " error(s), "
+                    + testcase.children("failure").size() + " failure(s)");
+        }
+        return summary;
+    }
+
+    @Test
+    void shouldWriteReportsPerTestClassInBackground() throws Exception {
+        String customProperties = "reports_per_class=true\nreport_writer_threads=2\nreport_writer_queue_size=1\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { BASIC_CLASS, SIMPLE_CLASS, TEST_EXAMPLES_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        Match testsuite = readValidXmlFile(tempDirectory.resolve("TEST-app.getxray.xray.junit.customjunitxml.BasicTestExample.xml"));
+        assertThat(testsuite.children("testcase")).hasSize(2);
+        testsuite = readValidXmlFile(tempDirectory.resolve("TEST-app.getxray.xray.junit.customjunitxml.SimpleTestExample.xml"));
+        assertThat(testsuite.children("testcase")).hasSize(2);
+        testsuite = readValidXmlFile(tempDirectory.resolve("TEST-app.getxray.xray.junit.customjunitxml.XrayEnabledTestExamples.xml"));
+        assertThat(testsuite.children("testcase")).isNotEmpty();
+    }
+
+    @Test
+    void shouldWriteReportMetrics() throws Exception {
+        String customProperties = "report_metrics=true\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { TEST_EXAMPLES_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        readValidXmlFile(tempDirectory.resolve(REPORT_NAME));
+        String metrics = new String(Files.readAllBytes(tempDirectory.resolve("xray-junit-extensions-metrics.json")), "UTF-8");
+        assertThat(metrics).contains("{\"file\":\"" + REPORT_NAME + "\",\"format\":\"xml\",\"serializationNanos\":");
+        assertThat(metrics).contains("\"bytes\":" + Files.size(tempDirectory.resolve(REPORT_NAME)) + "}");
+        assertThat(metrics).contains("\"evidence\":{\"files\":1,\"bytesRead\":2670,\"bytesEncoded\":3560,\"cacheHits\":0}");
+        assertThat(metrics).containsPattern("\"metadataResolution\":\\{\"calls\":[1-9]");
+        assertThat(metrics).containsPattern("\"peakRetainedEntries\":[1-9]");
+    }
+
+    @Test
+    void shouldStoreResourceUsageToTestcaseProperties() throws Exception {
+        executeTestMethod(ResourceUsageTestExample.class, "allocatingTest");
+
+        Match testsuite = readValidXmlFile(tempDirectory.resolve(REPORT_NAME));
+        Match properties = testsuite.child("testcase").child("properties").children("property");
+        assertThat(Long.parseLong(properties.matchAttr("name", "resource_usage:allocated_bytes").attr("value")))
+                .isGreaterThanOrEqualTo(ResourceUsageTestExample.ALLOCATED_BYTES);
+        assertThat(Long.parseLong(properties.matchAttr("name", "resource_usage:cpu_time_nanos").attr("value"))).isNotNegative();
+        assertThat(properties.matchAttr("name", "resource_usage:gc_count")).hasSize(1);
+        assertThat(properties.matchAttr("name", "resource_usage:gc_time_millis")).hasSize(1);
+        // not repeated as a report entry in system-out
+        assertThat(testsuite.child("testcase").child("system-out").text()).doesNotContain("resource_usage");
+    }
+
+    @Test
+    void shouldReportDurationsInNanoseconds() throws Exception {
+        String customProperties = "report_time_precision=nanos\nreport_duration_nanos=true\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { BASIC_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        Match testsuite = readValidXmlFile(tempDirectory.resolve(REPORT_NAME));
+        Match testcase = testsuite.children("testcase").matchAttr("name", "someBasicTest");
+        String nanos = testcase.child("properties").children("property").matchAttr("name", "duration_nanos").attr("value");
+        assertThat(Long.parseLong(nanos)).isPositive();
+        // sub-second durations are no longer truncated to 0
+        assertThat(new BigDecimal(testcase.attr("time"))).isEqualByComparingTo(BigDecimal.valueOf(Long.parseLong(nanos), 9));
+    }
+
+    @Test
+    void shouldIncludeOnlyAllowedSystemProperties() throws Exception {
+        String customProperties = "reports_per_class=true\nsystem_properties=java.version, os.*\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { BASIC_CLASS, SIMPLE_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        for (Class<?> testClass : new Class<?>[] { BASIC_CLASS, SIMPLE_CLASS }) {
+            Match testsuite = readValidXmlFile(tempDirectory.resolve("TEST-" + testClass.getName() + ".xml"));
+            Match properties = testsuite.child("properties").children("property");
+            assertThat(properties.matchAttr("name", "java.version").attr("value")).isEqualTo(System.getProperty("java.version"));
+            assertThat(properties.matchAttr("name", "os.name")).isNotEmpty();
+            assertThat(properties.matchAttr("name", "user.dir")).isEmpty();
+            assertThat(testsuite.attr("hostname")).isNotEmpty();
+        }
+    }
+
+    @Test
+    void shouldOmitSystemProperties() throws Exception {
+        String customProperties = "system_properties=none\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { BASIC_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        Match testsuite = readValidXmlFile(tempDirectory.resolve(REPORT_NAME));
+        assertThat(testsuite.children("properties")).isEmpty();
+        assertThat(testsuite.children("testcase")).hasSize(2);
+    }
+
+    @Test
+    void shouldWriteXrayJsonReportAlongsideXmlReport() throws Exception {
+        String customProperties = "report_format=both\nxray_project_key=CALC\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { TEST_EXAMPLES_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        readValidXmlFile(tempDirectory.resolve(REPORT_NAME));
+        String json = new String(Files.readAllBytes(tempDirectory.resolve("TEST-junit-jupiter.json")), "UTF-8");
+        assertThat(json).startsWith("{\"info\":{\"summary\":\"Execution of JUnit Jupiter\",\"startDate\":\"").endsWith("]}");
+        assertThat(json).contains("{\"testKey\":\"CALC-100\",\"start\":\"");
+        assertThat(json).contains("\"requirementKeys\":[\"CALC-123\",\"CALC-124\"]");
+        assertThat(json).contains("\"testInfo\":{\"projectKey\":\"CALC\",\"summary\":\"annotatedWithMultipleRequirements\",\"type\":\"Generic\",\"definition\":\"" + TEST_EXAMPLES_CLASS.getName() + ".annotatedWithMultipleRequirements\"");
+        assertThat(json).contains("\"comment\":\"hello\\nworld\"");
+        assertThat(json).contains("\"customFields\":[{\"id\":\"cf1\",\"value\":\"field1_value\"},{\"id\":\"cf2\",\"value\":\"field2_value\"}]");
+
+        byte[] evidence = Files.readAllBytes(Paths.get("src/test/java/app/getxray/xray/junit/customjunitxml/xray.png"));
+        assertThat(json).contains("\"evidence\":[{\"filename\":\"xray.png\",\"contentType\":\"image/png\",\"data\":\"" + Base64.getEncoder().encodeToString(evidence) + "\"}]");
+    }
+
+    @Test
+    void shouldEncodeEvidenceOnceWithEvidenceCache() throws Exception {
+        String customProperties = "report_format=both\nevidence_cache=true\nreport_metrics=true\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { TEST_EXAMPLES_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        String contentInBase64 = Base64.getEncoder().encodeToString(
+                Files.readAllBytes(Paths.get("src/test/java/app/getxray/xray/junit/customjunitxml/xray.png")));
+        Match testcase = readValidXmlFile(tempDirectory.resolve(REPORT_NAME)).children("testcase").matchAttr("name", "testWithTestRunEvidence");
+        assertThat(testcase.child("properties").children("property").matchAttr("name", "testrun_evidence").child("item").text()).isEqualTo(contentInBase64);
+        String json = new String(Files.readAllBytes(tempDirectory.resolve("TEST-junit-jupiter.json")), "UTF-8");
+        assertThat(json).contains("\"data\":\"" + contentInBase64 + "\"");
+        // the JSON report reuses the evidence encoded for the XML report
+        String metrics = new String(Files.readAllBytes(tempDirectory.resolve("xray-junit-extensions-metrics.json")), "UTF-8");
+        assertThat(metrics).contains("\"evidence\":{\"files\":2,\"bytesRead\":2670,\"bytesEncoded\":7120,\"cacheHits\":1}");
+        assertThat(metrics).contains("{\"file\":\"TEST-junit-jupiter.json\",\"format\":\"json\",");
+    }
+
+    @Test
+    void shouldWritePrefetchedEvidence() throws Exception {
+        String customProperties = "report_format=both\nevidence_prefetch=true\nreport_metrics=true\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { TEST_EXAMPLES_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        String contentInBase64 = Base64.getEncoder().encodeToString(
+                Files.readAllBytes(Paths.get("src/test/java/app/getxray/xray/junit/customjunitxml/xray.png")));
+        Match testcase = readValidXmlFile(tempDirectory.resolve(REPORT_NAME)).children("testcase").matchAttr("name", "testWithTestRunEvidence");
+        assertThat(testcase.child("properties").children("property").matchAttr("name", "testrun_evidence").child("item").text()).isEqualTo(contentInBase64);
+        String json = new String(Files.readAllBytes(tempDirectory.resolve("TEST-junit-jupiter.json")), "UTF-8");
+        assertThat(json).contains("\"data\":\"" + contentInBase64 + "\"");
+        // whether the XML report found the file prefetched yet depends on timing, but not what it wrote;
+        // EvidenceCacheTest checks that prefetched files are copied
+        String metrics = new String(Files.readAllBytes(tempDirectory.resolve("xray-junit-extensions-metrics.json")), "UTF-8");
+        assertThat(metrics).contains("\"evidence\":{\"files\":2,").contains("\"bytesEncoded\":7120,");
+    }
+
+    @Test
+    void shouldRecordEvidenceOverMaxBytesAsDropped() throws Exception {
+        String customProperties = "evidence_max_bytes=1000\nevidence_overflow=reference\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { TEST_EXAMPLES_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        Match testcase = readValidXmlFile(tempDirectory.resolve(REPORT_NAME)).children("testcase").matchAttr("name", "testWithTestRunEvidence");
+        Match properties = testcase.child("properties").children("property");
+        assertThat(properties.matchAttr("name", "testrun_evidence").children("item")).isEmpty();
+        Match dropped = properties.matchAttr("name", "testrun_evidence_dropped").child("item");
+        assertThat(dropped.attr("name")).isEqualTo("xray.png");
+        assertThat(dropped.text()).isEqualTo("2670 bytes, over evidence_max_bytes, at "
+                + Paths.get("src/test/java/app/getxray/xray/junit/customjunitxml/xray.png").toAbsolutePath());
+    }
+
+    @Test
+    void shouldWriteOnlyXrayJsonReport() throws Exception {
+        String customProperties = "report_format=json\nstreaming_report=true\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { BASIC_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        assertThat(tempDirectory.resolve(REPORT_NAME)).doesNotExist();
+        String json = new String(Files.readAllBytes(tempDirectory.resolve("TEST-junit-jupiter.json")), "UTF-8");
+        assertThat(json).contains("\"definition\":\"" + BASIC_CLASS.getName() + ".someBasicTest\"");
+        assertThat(json).contains("\"definition\":\"" + BASIC_CLASS.getName() + ".anotherBasicTest\"");
+        assertThat(json).doesNotContain("projectKey");
+    }
+
+    @Test
+    void shouldWriteGzipCompressedReport() throws Exception {
+        String customProperties = "report_compression=gzip\nreport_buffer_size=1024\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { BASIC_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        assertThat(tempDirectory.resolve(REPORT_NAME)).doesNotExist();
+        Path reportFile = tempDirectory.resolve(REPORT_NAME + ".gz");
+        Path uncompressedReportFile = tempDirectory.resolve("uncompressed.xml");
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(reportFile))) {
+            Files.copy(in, uncompressedReportFile);
+        }
+        Match testsuite = readValidXmlFile(uncompressedReportFile);
+        assertThat(testsuite.children("testcase")).hasSize(2);
+    }
+
+    @Test
+    void shouldWriteReportsThroughFileChannelWithPooledBuffers() throws Exception {
+        // reports far larger than the buffer, which is recycled from one report to the next
+        String customProperties = "report_channel_sink=true\nreport_buffer_size=512\nreports_per_class=true\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { BASIC_CLASS, TEST_EXAMPLES_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        Match testsuite = readValidXmlFile(tempDirectory.resolve("TEST-app.getxray.xray.junit.customjunitxml.BasicTestExample.xml"));
+        assertThat(testsuite.children("testcase")).hasSize(2);
+        testsuite = readValidXmlFile(tempDirectory.resolve("TEST-app.getxray.xray.junit.customjunitxml.XrayEnabledTestExamples.xml"));
+        assertThat(testsuite.children("testcase")).isNotEmpty();
+        assertThat(Files.size(tempDirectory.resolve("TEST-app.getxray.xray.junit.customjunitxml.XrayEnabledTestExamples.xml")))
+                .isGreaterThan(512);
+    }
+
+    @Test
+    void shouldShardReportByNumberOfTestcases() throws Exception {
+        String customProperties = "report_shard_max_testcases=1\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { BASIC_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        assertThat(tempDirectory.resolve(REPORT_NAME)).doesNotExist();
+        Match firstShard = readValidXmlFile(tempDirectory.resolve("TEST-junit-jupiter-1.xml"));
+        Match secondShard = readValidXmlFile(tempDirectory.resolve("TEST-junit-jupiter-2.xml"));
+        assertThat(firstShard.children("testcase")).hasSize(1);
+        assertThat(firstShard.attr("tests")).isEqualTo("1");
+        assertThat(secondShard.children("testcase")).hasSize(1);
+        assertThat(secondShard.attr("tests")).isEqualTo("1");
+        assertThat(tempDirectory.resolve("TEST-junit-jupiter-3.xml")).doesNotExist();
+
+        String manifest = new String(Files.readAllBytes(tempDirectory.resolve("TEST-junit-jupiter-shards.json")), "UTF-8");
+        assertThat(manifest).contains("\"file\":\"TEST-junit-jupiter-1.xml\"", "\"file\":\"TEST-junit-jupiter-2.xml\"");
+    }
+
+    @Test
+    void shouldNotShardReportBelowLimits() throws Exception {
+        String customProperties = "report_shard_max_testcases=100\nreport_shard_max_bytes=1000000\nstreaming_report=true\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+
+        executeTestClasses(new Class[] { BASIC_CLASS }, customPropertiesFile, Clock.systemDefaultZone());
+
+        Match testsuite = readValidXmlFile(tempDirectory.resolve(REPORT_NAME));
+        assertThat(testsuite.children("testcase")).hasSize(2);
+        assertThat(tempDirectory.resolve("TEST-junit-jupiter-1.xml")).doesNotExist();
+        assertThat(tempDirectory.resolve("TEST-junit-jupiter-shards.json")).exists();
+    }
+
     @Test
     void shouldUseCustomMetadataReader() throws Exception {
         String customProperties = "test_metadata_reader=" + CustomXrayTestMetadataReader.class.getName() + "\n";
@@ -602,6 +952,62 @@ class EnhancedLegacyXmlTest {
 
 
 
+    @Test
+    void shouldPublishValuesOfXrayTestReporterAsReportEntriesByDefault() throws Exception {
+        String testMethodName = "testWithTestRunComments";
+        LauncherDiscoveryRequest discoveryRequest = request()
+                .selectors(selectMethod(TEST_EXAMPLES_CLASS, testMethodName, "app.getxray.xray.junit.customjunitxml.XrayTestReporter"))
+                .build();
+        Launcher launcher = LauncherFactory.create();
+
+        TestExecutionListener otherListener = mock(TestExecutionListener.class);
+        launcher.execute(discoveryRequest,
+                new EnhancedLegacyXmlReportGeneratingListener(tempDirectory, new PrintWriter(System.out)), otherListener);
+
+        verify(otherListener, times(2)).reportingEntryPublished(any(TestIdentifier.class), any(ReportEntry.class));
+        Match testcase = readValidXmlFile(tempDirectory.resolve(REPORT_NAME)).child("testcase");
+        assertThat(testcase.child("properties").children("property").matchAttr("name", "testrun_comment").cdata()).isEqualTo("hello\nworld");
+    }
+
+    @Test
+    void shouldReportValuesOfXrayTestReporterWithoutPublishingReportEntriesWhenDirectChannelIsEnabled() throws Exception {
+        String customProperties = "reporter_direct_channel=true\n";
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, customProperties.getBytes());
+        String testMethodName = "testWithTestRunComments";
+        LauncherDiscoveryRequest discoveryRequest = request()
+                .selectors(selectMethod(TEST_EXAMPLES_CLASS, testMethodName, "app.getxray.xray.junit.customjunitxml.XrayTestReporter"))
+                .build();
+        Launcher launcher = LauncherFactory.create();
+
+        TestExecutionListener otherListener = mock(TestExecutionListener.class);
+        launcher.execute(discoveryRequest, new EnhancedLegacyXmlReportGeneratingListener(tempDirectory, customPropertiesFile,
+                new PrintWriter(System.out), Clock.systemDefaultZone()), otherListener);
+
+        verify(otherListener, never()).reportingEntryPublished(any(TestIdentifier.class), any(ReportEntry.class));
+        Match testcase = readValidXmlFile(tempDirectory.resolve(REPORT_NAME)).child("testcase");
+        assertThat(testcase.child("properties").children("property").matchAttr("name", "testrun_comment").cdata()).isEqualTo("hello\nworld");
+    }
+
+    @Test
+    void shouldPublishTestRunCommentOfTestWhoseClassAlsoReports() throws Exception {
+        executeTestClasses(new Class[] { XrayTestReporterInBeforeAllTestExample.class }, null, Clock.systemDefaultZone());
+
+        Match testcase = readValidXmlFile(tempDirectory.resolve(REPORT_NAME)).child("testcase");
+        assertThat(testcase.child("properties").children("property").matchAttr("name", "testrun_comment").cdata()).isEqualTo("from the test");
+    }
+
+    @Test
+    void shouldStoreTestRunCommentOfTestWhoseClassAlsoReportsWhenDirectChannelIsEnabled() throws Exception {
+        Path customPropertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(customPropertiesFile, "reporter_direct_channel=true\n".getBytes());
+
+        executeTestClasses(new Class[] { XrayTestReporterInBeforeAllTestExample.class }, customPropertiesFile, Clock.systemDefaultZone());
+
+        Match testcase = readValidXmlFile(tempDirectory.resolve(REPORT_NAME)).child("testcase");
+        assertThat(testcase.child("properties").children("property").matchAttr("name", "testrun_comment").cdata()).isEqualTo("from the test");
+    }
+
     @Test
     void shouldStoreTestRunCommentsToTestcaseProperty() throws Exception {
         String testMethodName = "testWithTestRunComments";
@@ -701,7 +1107,39 @@ class EnhancedLegacyXmlTest {
         assertThat(testcase.child("properties").children("property").matchAttr("name", "testrun_evidence").child("item").text()).isEqualTo(contentInBase64);
     }
 
- 
+    @Test
+    void shouldEscapeIllegalCharactersAndSplitCDataEndMarker() throws Exception {
+        String legal = "at Foo.bar(Foo.java:42) \uD83D\uDE00";
+        assertThat(XmlReportWriter.escapeIllegalChars(legal)).isSameAs(legal);
+        assertThat(XmlReportWriter.escapeIllegalChars("a\u0001b\uD800c")).isEqualTo("a&#1;b&#55296;c");
+
+        StringWriter out = new StringWriter();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+        writer.writeStartElement("text");
+        XmlReportWriter.writeCDataSafely(writer, "x]]]>\u001B[0m]]>y");
+        writer.writeEndElement();
+        writer.flush();
+
+        assertThat(out.toString()).isEqualTo("<text><![CDATA[x]]]]]><![CDATA[>&#27;[0m]]]]><![CDATA[>y]]></text>");
+    }
+
+    @Test
+    void shouldEncodeEvidenceLargerThanOneChunk() throws Exception {
+        // not a multiple of 3, so that the last chunk needs padding
+        byte[] content = new byte[2 * EvidenceEncoder.CHUNK_SIZE + 1];
+        new Random(42).nextBytes(content);
+        StringWriter out = new StringWriter();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+        writer.writeStartElement("item");
+
+        EvidenceEncoder.encode(new ByteArrayInputStream(content), writer::writeCharacters);
+        writer.writeEndElement();
+        writer.flush();
+
+        assertThat(out.toString()).isEqualTo("<item>" + Base64.getEncoder().encodeToString(content) + "</item>");
+    }
+
+
     @Test
     void shouldCreateReportEntryForEvidence() throws Exception {
         String testMethodName = "testWithTestRunEvidence";
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EvidenceCacheTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void shouldEncodeEvidenceLargerThanOneChunkAsItIsWritten() throws Exception {
+        byte[] content = randomBytes(2 * EvidenceEncoder.CHUNK_SIZE + 1);
+        CountingInputStream in = new CountingInputStream(content);
+
+        StringBuilder encoded = new StringBuilder();
+        try (EvidenceCache.Evidence evidence = EvidenceCache.NONE.uncached(in)) {
+            // only the first chunk is read before the evidence is written
+            assertThat(in.bytesRead).isEqualTo(EvidenceEncoder.CHUNK_SIZE);
+            evidence.writeTo(encoded::append);
+            assertThat(evidence.getBytesRead()).isEqualTo(content.length);
+            assertThat(evidence.getEncodedLength()).isEqualTo(encoded.length());
+        }
+
+        assertThat(encoded.toString()).isEqualTo(Base64.getEncoder().encodeToString(content));
+        assertThat(in.closed).isTrue();
+    }
+
+    @Test
+    void shouldFailBeforeWritingEvidenceThatCannotBeReadAtAll() throws Exception {
+        FailingInputStream in = new FailingInputStream(new byte[0]);
+
+        assertThatThrownBy(() -> EvidenceCache.NONE.uncached(in)).isInstanceOf(IOException.class);
+        assertThat(in.closed).isTrue();
+    }
+
+    @Test
+    void shouldFailWritingEvidenceThatCannotBeReadToTheEnd() throws Exception {
+        FailingInputStream in = new FailingInputStream(randomBytes(2 * EvidenceEncoder.CHUNK_SIZE));
+
+        try (EvidenceCache.Evidence evidence = EvidenceCache.NONE.uncached(in)) {
+            assertThatThrownBy(() -> evidence.writeTo(new StringBuilder()::append)).isInstanceOf(IOException.class);
+        }
+        assertThat(in.closed).isTrue();
+    }
+
+    @Test
+    void shouldFailBeforeWritingEvidenceThatCannotBeReadToTheEndWithACache() throws Exception {
+        FailingInputStream in = new FailingInputStream(randomBytes(2 * EvidenceEncoder.CHUNK_SIZE));
+
+        try (EvidenceCache cache = EvidenceCache.create()) {
+            assertThatThrownBy(() -> cache.uncached(in)).isInstanceOf(IOException.class);
+        }
+        assertThat(in.closed).isTrue();
+    }
+
+    @Test
+    void shouldLeaveOutEvidenceThatCannotBeRead() throws Exception {
+        // a directory opens as a stream, but fails on its first read
+        Path directory = Files.createDirectory(tempDirectory.resolve("evidence.png"));
+        StringWriter out = new StringWriter();
+        XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+        writer.writeStartElement("property");
+
+        new XmlReportWriter(null, false, new DefaultXrayTestMetadataReader()).writeEvidenceItem(writer, directory.toString());
+        writer.writeEndElement();
+        writer.flush();
+
+        assertThat(out.toString()).isEqualTo("<property></property>");
+    }
+
+    @Test
+    void shouldCopyTheEncodingOfAFileAlreadyWritten() throws Exception {
+        byte[] content = randomBytes(EvidenceEncoder.CHUNK_SIZE + 1);
+        Path file = Files.write(tempDirectory.resolve("evidence.bin"), content);
+        Path copy = Files.write(tempDirectory.resolve("copy.bin"), content);
+
+        try (EvidenceCache cache = EvidenceCache.create()) {
+            try (EvidenceCache.Evidence evidence = cache.open(file)) {
+                assertThat(evidence.isCached()).isFalse();
+                assertThat(evidence.getBytesRead()).isEqualTo(content.length);
+            }
+            try (EvidenceCache.Evidence evidence = cache.open(copy)) {
+                StringBuilder encoded = new StringBuilder();
+                evidence.writeTo(encoded::append);
+                assertThat(evidence.isCached()).isFalse();
+                assertThat(encoded.toString()).isEqualTo(Base64.getEncoder().encodeToString(content));
+            }
+            try (EvidenceCache.Evidence evidence = cache.open(file)) {
+                assertThat(evidence.isCached()).isTrue();
+                assertThat(evidence.getBytesRead()).isZero();
+            }
+        }
+    }
+
+    @Test
+    void shouldCopyTheEncodingOfAPrefetchedFile() throws Exception {
+        byte[] content = randomBytes(EvidenceEncoder.CHUNK_SIZE + 1);
+        Path file = Files.write(tempDirectory.resolve("evidence.bin"), content);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try (EvidenceCache cache = EvidenceCache.create(executor)) {
+            cache.prefetch(file, EvidencePolicy.NONE);
+            // runs after the prefetch, on the same thread
+            executor.submit(() -> { }).get();
+
+            try (EvidenceCache.Evidence evidence = cache.open(file)) {
+                StringBuilder encoded = new StringBuilder();
+                evidence.writeTo(encoded::append);
+                assertThat(evidence.isCached()).isTrue();
+                assertThat(encoded.toString()).isEqualTo(Base64.getEncoder().encodeToString(content));
+            }
+        }
+    }
+
+    @Test
+    void shouldNotPrefetchFilesThePolicyLeavesOut() throws Exception {
+        Path file = Files.write(tempDirectory.resolve("evidence.bin"), randomBytes(100));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try (EvidenceCache cache = EvidenceCache.create(executor)) {
+            cache.prefetch(file, new EvidencePolicy(10, 0, EvidenceOverflow.SKIP, "", ""));
+            executor.submit(() -> { }).get();
+
+            try (EvidenceCache.Evidence evidence = cache.open(file)) {
+                assertThat(evidence.isCached()).isFalse();
+            }
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static class CountingInputStream extends InputStream {
+
+        private final ByteArrayInputStream content;
+        private long bytesRead;
+        private boolean closed;
+
+        CountingInputStream(byte[] content) {
+            this.content = new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public int read() {
+            int read = this.content.read();
+            if (read >= 0) {
+                this.bytesRead++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            int read = this.content.read(bytes, offset, length);
+            if (read > 0) {
+                this.bytesRead += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+
+    /**
+     * Reads its content, and then fails, as a file on a broken disk would.
+     */
+    private static class FailingInputStream extends InputStream {
+
+        private final InputStream content;
+        private boolean closed;
+
+        FailingInputStream(byte[] content) {
+            this.content = new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = this.content.read();
+            if (read < 0) {
+                throw new IOException("Input/output error");
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = this.content.read(bytes, offset, length);
+            if (read < 0) {
+                throw new IOException("Input/output error");
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+}
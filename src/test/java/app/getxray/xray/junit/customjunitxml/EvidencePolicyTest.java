@@ -0,0 +1,242 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class EvidencePolicyTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void shouldAttachWholeEvidenceWithoutLimits() throws Exception {
+        String content = text(5000);
+        Path file = write("output.log", content);
+
+        EvidencePolicy.Budget budget = new EvidencePolicy(0, 0, EvidenceOverflow.SKIP, "", "").newBudget();
+
+        assertThat(read(budget.open(file, EvidenceCache.NONE))).isEqualTo(content);
+        assertThat(budget.getDropped()).isEmpty();
+    }
+
+    @Test
+    void shouldKeepTheHeadAndTheTailOfATruncatedFileWithinTheLimit() throws Exception {
+        String content = text(1000);
+        Path file = write("output.log", content);
+
+        EvidencePolicy.Budget budget = new EvidencePolicy(200, 0, EvidenceOverflow.TRUNCATE, "", "").newBudget();
+        String truncated = read(budget.open(file, EvidenceCache.NONE));
+
+        // "\n[... 1000 bytes truncated ...]\n" is 32 bytes long, which leaves 168 for the file
+        assertThat(truncated).isEqualTo(content.substring(0, 84) + "\n[... 832 bytes truncated ...]\n"
+                + content.substring(916));
+        assertThat(truncated).hasSizeLessThanOrEqualTo(200);
+        assertThat(budget.getDropped()).singleElement().satisfies(dropped -> {
+            assertThat(dropped.getName()).isEqualTo("output.log");
+            assertThat(dropped.getDescription()).isEqualTo("truncated to 168 of 1000 bytes, over evidence_max_bytes");
+        });
+    }
+
+    @Test
+    void shouldKeepOnlyTheLastByteWhenTheLimitLeavesRoomForOne() throws Exception {
+        String content = text(1000);
+        Path file = write("output.log", content);
+
+        EvidencePolicy.Budget budget = new EvidencePolicy(33, 0, EvidenceOverflow.TRUNCATE, "", "").newBudget();
+
+        assertThat(read(budget.open(file, EvidenceCache.NONE)))
+                .isEqualTo("\n[... 999 bytes truncated ...]\n" + content.charAt(999));
+        assertThat(budget.getDropped()).singleElement().satisfies(dropped -> assertThat(dropped.getDescription())
+                .isEqualTo("truncated to 1 of 1000 bytes, over evidence_max_bytes"));
+    }
+
+    @Test
+    void shouldLeaveOutTextWhenTheLimitLeavesNoRoomForTheMarker() throws Exception {
+        Path file = write("output.log", text(1000));
+
+        EvidencePolicy.Budget budget = new EvidencePolicy(32, 0, EvidenceOverflow.TRUNCATE, "", "").newBudget();
+
+        assertThat(budget.open(file, EvidenceCache.NONE)).isNull();
+        assertThat(budget.getDropped()).singleElement().satisfies(dropped -> assertThat(dropped.getDescription())
+                .isEqualTo("1000 bytes, over evidence_max_bytes"));
+    }
+
+    @Test
+    void shouldLeaveOutFilesThatCannotBeTruncated() throws Exception {
+        Path file = write("screenshot.png", text(1000));
+
+        EvidencePolicy.Budget budget = new EvidencePolicy(200, 0, EvidenceOverflow.TRUNCATE, "", "").newBudget();
+
+        assertThat(budget.open(file, EvidenceCache.NONE)).isNull();
+        assertThat(budget.getDropped()).singleElement().satisfies(dropped -> assertThat(dropped.getDescription())
+                .isEqualTo("1000 bytes, over evidence_max_bytes"));
+    }
+
+    @Test
+    void shouldEndATruncatedFileThatShrinksWhileItIsRead() throws Exception {
+        String content = text(1000);
+        Path file = write("output.log", content);
+
+        try (InputStream in = new EvidencePolicy.TruncatedInputStream(file, 1000, 100)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(960);
+            }
+
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8))
+                    .isEqualTo(content.substring(0, 50) + "\n[... 900 bytes truncated ...]\n" + content.substring(950, 960));
+        }
+    }
+
+    @Test
+    void shouldAccountForAllTheEvidenceOfATestInTheOrderItWasAdded() throws Exception {
+        Path first = write("first.txt", text(100));
+        Path second = write("second.txt", text(150));
+        Path third = write("third.txt", text(100));
+        Path fourth = write("fourth.txt", text(50));
+
+        EvidencePolicy.Budget budget = new EvidencePolicy(0, 300, EvidenceOverflow.SKIP, "", "").newBudget();
+
+        assertThat(budget.open(first, EvidenceCache.NONE)).isNotNull();
+        assertThat(budget.open(second, EvidenceCache.NONE)).isNotNull();
+        assertThat(budget.open(third, EvidenceCache.NONE)).isNull();
+        assertThat(budget.open(fourth, EvidenceCache.NONE)).isNotNull();
+        assertThat(budget.open(fourth, EvidenceCache.NONE)).isNull();
+        assertThat(budget.getDropped()).extracting(EvidencePolicy.Dropped::getDescription).containsExactly(
+                "100 bytes, over evidence_max_bytes_per_test", "50 bytes, over evidence_max_bytes_per_test");
+    }
+
+    @Test
+    void shouldTruncateEvidenceToWhatIsLeftOfTheBudgetOfTheTest() throws Exception {
+        Path first = write("first.txt", text(200));
+        Path second = write("second.txt", text(1000));
+        Path third = write("third.txt", text(1));
+
+        EvidencePolicy policy = new EvidencePolicy(500, 300, EvidenceOverflow.TRUNCATE, "", "");
+        EvidencePolicy.Budget budget = policy.newBudget();
+
+        assertThat(read(budget.open(first, EvidenceCache.NONE))).hasSize(200);
+        assertThat(read(budget.open(second, EvidenceCache.NONE))).hasSizeLessThanOrEqualTo(100);
+        assertThat(budget.getDropped()).singleElement().satisfies(dropped -> assertThat(dropped.getDescription())
+                .isEqualTo("truncated to 68 of 1000 bytes, over evidence_max_bytes_per_test"));
+        // the marker is 31 bytes long, so 1 is left
+        assertThat(read(budget.open(third, EvidenceCache.NONE))).hasSize(1);
+        // a new test starts over
+        assertThat(read(policy.newBudget().open(first, EvidenceCache.NONE))).hasSize(200);
+    }
+
+    @Test
+    void shouldNotChargeTheBudgetOfTheTestForEvidenceThatCannotBeRead() throws Exception {
+        // a directory has a size, but can't be read
+        Path unreadable = Files.createDirectory(tempDirectory.resolve("unreadable.txt"));
+        long unreadableSize = Files.size(unreadable);
+        assumeTrue(unreadableSize > 0);
+        Path fitting = write("fitting.txt", text((int) unreadableSize + 300));
+
+        EvidencePolicy.Budget budget = new EvidencePolicy(0, unreadableSize + 300, EvidenceOverflow.SKIP, "", "").newBudget();
+
+        assertThatThrownBy(() -> budget.open(unreadable, EvidenceCache.NONE)).isInstanceOf(IOException.class);
+        assertThat(read(budget.open(fitting, EvidenceCache.NONE))).hasSize((int) unreadableSize + 300);
+        assertThat(budget.getDropped()).isEmpty();
+    }
+
+    @Test
+    void shouldNotChargeTheBudgetOfTheTestForTruncatedEvidenceThatCannotBeRead() throws Exception {
+        Path unreadable = Files.createDirectory(tempDirectory.resolve("unreadable.log"));
+        Path fitting = write("fitting.txt", text(300));
+
+        EvidencePolicy.Budget budget = new EvidencePolicy(0, 300, EvidenceOverflow.TRUNCATE, "", "").newBudget();
+
+        assertThatThrownBy(() -> budget.open(unreadable, EvidenceCache.NONE)).isInstanceOf(IOException.class);
+        assertThat(read(budget.open(fitting, EvidenceCache.NONE))).hasSize(300);
+        assertThat(budget.getDropped()).isEmpty();
+    }
+
+    @Test
+    void shouldRecordThePathOfEvidenceLeftOutForReference() throws Exception {
+        Path file = write("screenshot.png", text(1000));
+
+        EvidencePolicy.Budget budget = new EvidencePolicy(200, 0, EvidenceOverflow.REFERENCE, "", "").newBudget();
+
+        assertThat(budget.open(file, EvidenceCache.NONE)).isNull();
+        assertThat(budget.getDropped()).singleElement().satisfies(dropped -> assertThat(dropped.getDescription())
+                .isEqualTo("1000 bytes, over evidence_max_bytes, at " + file.toAbsolutePath()));
+    }
+
+    @Test
+    void shouldAttachOnlyEvidenceIncludedAndNotExcluded() throws Exception {
+        Path screenshot = write("screenshot.png", "png");
+        Path secret = write("secret.png", "png");
+        Path log = write("logs/output.txt", "log");
+        Path other = write("output.txt", "txt");
+
+        EvidencePolicy policy = new EvidencePolicy(0, 0, EvidenceOverflow.SKIP, "*.png, **/logs/**", "secret*");
+        EvidencePolicy.Budget budget = policy.newBudget();
+
+        assertThat(budget.open(screenshot, EvidenceCache.NONE)).isNotNull();
+        assertThat(budget.open(log, EvidenceCache.NONE)).isNotNull();
+        assertThat(budget.open(secret, EvidenceCache.NONE)).isNull();
+        assertThat(budget.open(other, EvidenceCache.NONE)).isNull();
+        assertThat(budget.getDropped()).extracting(EvidencePolicy.Dropped::getName, EvidencePolicy.Dropped::getDescription)
+                .containsExactly(tuple("secret.png", "excluded"),
+                        tuple("output.txt", "excluded"));
+        assertThat(policy.mayAttachWhole(secret, 3)).isFalse();
+        assertThat(policy.mayAttachWhole(screenshot, 3)).isTrue();
+    }
+
+    @Test
+    void shouldIgnoreInvalidGlobs() throws Exception {
+        Path file = write("output.txt", "txt");
+
+        EvidencePolicy.Budget budget = new EvidencePolicy(0, 0, EvidenceOverflow.SKIP, "[", "{").newBudget();
+
+        assertThat(budget.open(file, EvidenceCache.NONE)).isNotNull();
+        assertThat(budget.getDropped()).isEmpty();
+    }
+
+    private Path write(String name, String content) throws IOException {
+        Path file = this.tempDirectory.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String text(int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < length; i++) {
+            text.append(i % 10 == 9 ? '\n' : (char) ('a' + i % 26));
+        }
+        return text.toString();
+    }
+
+    private static String read(EvidenceCache.Evidence evidence) throws IOException {
+        try (EvidenceCache.Evidence closed = evidence) {
+            StringBuilder encoded = new StringBuilder();
+            closed.writeTo(encoded::append);
+            return new String(Base64.getDecoder().decode(encoded.toString()), StandardCharsets.UTF_8);
+        }
+    }
+
+}
@@ -0,0 +1,29 @@
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+public class FailingAfterAllTestExample {
+
+    @AfterAll
+    static void tearDown() {
+        throw new IllegalStateException("could not tear down");
+    }
+
+    @Test
+    public void firstTest() {
+    }
+
+    @Test
+    public void secondTest() {
+    }
+
+    @Nested
+    class NestedExample {
+
+        @Test
+        public void nestedTest() {
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReportCompressionTest {
+
+    @Test
+    void shouldReadTheCompressionCaseInsensitively() {
+        assertThat(ReportCompression.from(" Gzip ")).isEqualTo(ReportCompression.GZIP);
+        assertThat(ReportCompression.from("none")).isEqualTo(ReportCompression.NONE);
+        assertThat(ReportCompression.from("")).isEqualTo(ReportCompression.NONE);
+        assertThat(ReportCompression.from(null)).isEqualTo(ReportCompression.NONE);
+    }
+
+    @Test
+    void shouldIgnoreAnUnknownCompression() {
+        assertThat(ReportCompression.from("brotli")).isEqualTo(ReportCompression.NONE);
+    }
+
+    @Test
+    void shouldFallBackToGzipWhenZstdIsMissing() {
+        // sees the JDK only, so never aircompressor
+        ClassLoader platformOnly = ClassLoader.getPlatformClassLoader();
+
+        ReportCompression compression = ReportCompression.from("zstd", platformOnly);
+
+        assertThat(compression).isEqualTo(ReportCompression.GZIP);
+        assertThat(compression.getFileExtension()).isEqualTo(".gz");
+    }
+
+    @Test
+    void shouldCompressWithGzipWhatCanBeReadBack() throws Exception {
+        String report = "<testsuite name=\"junit-jupiter\">" + "<testcase/>".repeat(1000) + "</testsuite>";
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = ReportCompression.GZIP.wrap(compressed, 512)) {
+            out.write(report.getBytes(StandardCharsets.UTF_8));
+        }
+
+        assertThat(compressed.size()).isLessThan(report.length());
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(report);
+        }
+    }
+
+    @Test
+    void shouldWriteReportsAsTheyAreWithoutCompression() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThat(ReportCompression.NONE.wrap(out, 512)).isSameAs(out);
+        assertThat(ReportCompression.NONE.getFileExtension()).isEmpty();
+    }
+}
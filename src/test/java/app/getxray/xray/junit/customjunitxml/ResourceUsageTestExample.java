@@ -0,0 +1,17 @@
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(XrayTestResourceUsageExtension.class)
+public class ResourceUsageTestExample {
+
+    static final int ALLOCATED_BYTES = 4 * 1024 * 1024;
+
+    static byte[] retained;
+
+    @Test
+    public void allocatingTest() {
+        retained = new byte[ALLOCATED_BYTES];
+    }
+}
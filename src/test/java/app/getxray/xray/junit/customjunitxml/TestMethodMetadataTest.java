@@ -0,0 +1,74 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TestMethodMetadataTest {
+
+    @Test
+    void shouldResolveXrayAnnotationsOfTestMethod() throws Exception {
+        MethodSource source = MethodSource.from(XrayEnabledTestExamples.class.getDeclaredMethod("annotatedXrayTestWithKey"));
+
+        TestMethodMetadata metadata = TestMethodMetadata.of(source);
+
+        assertThat(metadata.getMethod()).isPresent();
+        assertThat(metadata.getXrayTest()).isPresent();
+        assertThat(metadata.getXrayTest().get().key()).isEqualTo("CALC-100");
+        assertThat(metadata.getRequirement()).isEmpty();
+        assertThat(metadata.getDisplayName()).isEmpty();
+        assertThat(metadata.isTestFactory()).isFalse();
+        assertThat(metadata.hasDisplayNameGeneration()).isFalse();
+    }
+
+    @Test
+    void shouldResolveParameterizedTestMethod() throws Exception {
+        MethodSource source = MethodSource.from(XrayEnabledTestExamples.class.getDeclaredMethod("parameterizedTestAnnotatedWithDisplayName", int.class));
+
+        TestMethodMetadata metadata = TestMethodMetadata.of(source);
+
+        assertThat(metadata.getDisplayName()).isPresent();
+        assertThat(metadata.getDisplayName().get().value()).isEqualTo("custom name");
+    }
+
+    @Test
+    void shouldResolveMetadataOnlyOnce() throws Exception {
+        MethodSource source = MethodSource.from(XrayEnabledTestExamples.class.getDeclaredMethod("annotatedWithMultipleRequirements"));
+        MethodSource sameSource = MethodSource.from(XrayEnabledTestExamples.class.getName(), "annotatedWithMultipleRequirements", "");
+
+        assertThat(TestMethodMetadata.of(source)).isSameAs(TestMethodMetadata.of(sameSource));
+        assertThat(TestMethodMetadata.of(source).getRequirement().get().value()).containsExactly("CALC-123", "CALC-124");
+    }
+
+    @Test
+    void shouldReportClassLevelDisplayNameGenerationForUnknownMethods() {
+        MethodSource source = MethodSource.from(XrayEnabledCustomDisplayNameTest.class.getName(), "doesNotExist", "");
+
+        TestMethodMetadata metadata = TestMethodMetadata.of(source);
+
+        assertThat(metadata.getMethod()).isEmpty();
+        assertThat(metadata.hasDisplayNameGeneration()).isTrue();
+    }
+
+    @Test
+    void shouldReturnEmptyMetadataForUnknownClasses() {
+        MethodSource source = MethodSource.from("com.example.DoesNotExist", "someTest", "");
+
+        TestMethodMetadata metadata = TestMethodMetadata.of(source);
+
+        assertThat(metadata.getMethod()).isEmpty();
+        assertThat(metadata.getXrayTest()).isEmpty();
+        assertThat(metadata.hasDisplayNameGeneration()).isFalse();
+    }
+}
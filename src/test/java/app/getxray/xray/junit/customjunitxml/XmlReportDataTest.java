@@ -0,0 +1,130 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import app.getxray.xray.junit.customjunitxml.wip.DemoHierarchicalTestDescriptor;
+import org.junit.jupiter.api.Test;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.reporting.ReportEntry;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class XmlReportDataTest {
+
+    private static final int TESTS = 4000;
+    private static final int ENTRIES_PER_TEST = 10;
+
+    @Test
+    void shouldKeepAllReportEntriesPublishedConcurrently() throws Exception {
+        XmlReportData reportData = new XmlReportData(mock(TestPlan.class), Clock.systemDefaultZone());
+        List<TestIdentifier> tests = new ArrayList<>();
+        UniqueId engineId = UniqueId.forEngine("stress");
+        for (int i = 0; i < TESTS; i++) {
+            tests.add(TestIdentifier.from(new DemoHierarchicalTestDescriptor(engineId.append("test", "test" + i), "test" + i, () -> {
+            })));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        try {
+            pool.submit(() -> IntStream.range(0, TESTS * ENTRIES_PER_TEST).parallel().forEach(i -> {
+                // entries of the same test are published from different workers, interleaved
+                // with other tests finishing and with reports reading the entries
+                TestIdentifier test = tests.get(i % TESTS);
+                int entry = i / TESTS;
+                if (entry == 0) {
+                    reportData.markStarted(test);
+                }
+                reportData.addReportEntry(test, ReportEntry.from("entry", String.valueOf(entry)));
+                reportData.getReportEntries(tests.get((i * 31) % TESTS)).getOtherEntries()
+                        .forEach(ClassifiedReportEntries.OtherEntry::getKeyValuePairs);
+                if (entry == ENTRIES_PER_TEST - 1) {
+                    reportData.markFinished(test, TestExecutionResult.successful());
+                }
+            })).get(1, TimeUnit.MINUTES);
+        } finally {
+            pool.shutdown();
+        }
+
+        for (TestIdentifier test : tests) {
+            assertThat(reportData.getReportEntries(test).getOtherEntries()).hasSize(ENTRIES_PER_TEST);
+        }
+    }
+
+    @Test
+    void shouldKeepInstantsAndResultsOfTestsNotInTestPlan() throws Exception {
+        // tests registered dynamically get an index (and slots) when first seen
+        Instant instant = Instant.parse("2025-01-01T10:00:00.123456789Z");
+        XmlReportData reportData = new XmlReportData(mock(TestPlan.class), Clock.fixed(instant, ZoneOffset.UTC));
+        List<TestIdentifier> tests = new ArrayList<>();
+        UniqueId engineId = UniqueId.forEngine("dynamic");
+        for (int i = 0; i < TESTS; i++) {
+            tests.add(TestIdentifier.from(new DemoHierarchicalTestDescriptor(engineId.append("test", "test" + i), "test" + i, () -> {
+            })));
+        }
+
+        TestExecutionResult failed = TestExecutionResult.failed(new AssertionError("expected"));
+        ForkJoinPool pool = new ForkJoinPool(Math.max(4, Runtime.getRuntime().availableProcessors()));
+        try {
+            pool.submit(() -> IntStream.range(0, TESTS).parallel().forEach(i -> {
+                reportData.markStarted(tests.get(i));
+                reportData.markFinished(tests.get(i), i % 2 == 0 ? TestExecutionResult.successful() : failed);
+            })).get(1, TimeUnit.MINUTES);
+        } finally {
+            pool.shutdown();
+        }
+
+        for (int i = 0; i < TESTS; i++) {
+            TestIdentifier test = tests.get(i);
+            assertThat(reportData.getStartInstant(test)).isEqualTo(instant);
+            assertThat(reportData.getEndInstant(test)).isEqualTo(instant);
+            if (i % 2 == 0) {
+                assertThat(reportData.getResults(test)).isEmpty();
+            } else {
+                assertThat(reportData.getResults(test)).containsExactly(failed);
+            }
+            assertThat(reportData.wasSkipped(test)).isFalse();
+        }
+    }
+
+    @Test
+    void shouldCountRetainedReportEntriesOnlyWhenAskedTo() {
+        TestIdentifier test = TestIdentifier.from(new DemoHierarchicalTestDescriptor(
+                UniqueId.forEngine("entries").append("test", "test"), "test", () -> {
+                }));
+        XmlReportData uncounted = new XmlReportData(mock(TestPlan.class), Clock.systemDefaultZone());
+        XmlReportData counted = new XmlReportData(mock(TestPlan.class), Clock.systemDefaultZone(),
+                XmlReportJournal.NONE, null, file -> {
+                }, true);
+
+        for (XmlReportData reportData : List.of(uncounted, counted)) {
+            reportData.addReportEntry(test, ReportEntry.from("entry", "first"));
+            reportData.addComment(test, "second");
+            reportData.evict(test);
+            reportData.addReportEntry(test, ReportEntry.from("entry", "third"));
+        }
+
+        assertThat(uncounted.getPeakRetainedEntries()).isZero();
+        assertThat(counted.getPeakRetainedEntries()).isEqualTo(2);
+    }
+}
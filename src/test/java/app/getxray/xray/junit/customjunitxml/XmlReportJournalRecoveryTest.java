@@ -0,0 +1,178 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import app.getxray.xray.junit.customjunitxml.wip.DemoHierarchicalTestEngine;
+import org.joox.Match;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.reporting.ReportEntry;
+import org.junit.platform.launcher.Launcher;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+import org.junit.platform.launcher.TestPlan;
+import org.junit.platform.launcher.core.LauncherConfig;
+import org.junit.platform.launcher.core.LauncherFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.joox.JOOX.$;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectClass;
+import static org.junit.platform.engine.discovery.DiscoverySelectors.selectUniqueId;
+import static org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder.request;
+
+class XmlReportJournalRecoveryTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void shouldDeleteJournalOnceReportsAreWritten() throws Exception {
+        Path propertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        Files.write(propertiesFile, "report_journal=true\n".getBytes());
+
+        execute(new EnhancedLegacyXmlReportGeneratingListener(tempDirectory, propertiesFile, new PrintWriter(System.out),
+                Clock.systemDefaultZone()));
+
+        assertThat(tempDirectory.resolve("TEST-junit-jupiter.xml")).exists();
+        try (Stream<Path> files = Files.list(tempDirectory)) {
+            assertThat(files.filter(file -> file.toString().endsWith(".journal"))).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldRecoverReportFromJournalOfDeadRun() throws Exception {
+        Path journalFile = tempDirectory.resolve("xray-junit-extensions-1.journal");
+        execute(new DyingListener(journalFile));
+        assertThat(tempDirectory.resolve("TEST-junit-jupiter.xml")).doesNotExist();
+
+        Path propertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        XmlReportJournalRecovery.recover(journalFile, tempDirectory, propertiesFile, new PrintWriter(System.out));
+
+        Match testsuite = $(tempDirectory.resolve("TEST-junit-jupiter.xml").toFile());
+        assertThat(testsuite.attr("tests")).isEqualTo("2");
+        assertThat(testsuite.attr("errors")).isEqualTo("1");
+        assertThat(testsuite.attr("failures")).isEqualTo("0");
+        Match error = testsuite.children("testcase").children("error");
+        assertThat(error.attr("message")).isEqualTo(XmlReportJournalRecovery.NOT_FINISHED_MESSAGE);
+        // report entries are written after the system-out element describing the testcase
+        assertThat(testsuite.children("testcase").children("system-out").texts())
+                .anyMatch(text -> text.contains("output of the first test"));
+    }
+
+    @Test
+    void shouldRecoverTheReportOfEachEngineFromASingleJournal() throws Exception {
+        DemoHierarchicalTestEngine first = new DemoHierarchicalTestEngine("first");
+        first.addTest("firstTest", () -> {
+        });
+        DemoHierarchicalTestEngine second = new DemoHierarchicalTestEngine("second");
+        second.addTest("secondTest", () -> {
+        });
+        second.addTest("thirdTest", () -> {
+        });
+        Path journalFile = tempDirectory.resolve("xray-junit-extensions-1.journal");
+        LauncherFactory.create(LauncherConfig.builder()
+                .enableTestEngineAutoRegistration(false)
+                .enableTestExecutionListenerAutoRegistration(false)
+                .addTestEngines(first, second)
+                .addTestExecutionListeners(new DyingListener(journalFile))
+                .build())
+                .execute(request().selectors(selectUniqueId(first.getEngineDescriptor().getUniqueId()),
+                        selectUniqueId(second.getEngineDescriptor().getUniqueId())).build());
+
+        Path propertiesFile = Files.createTempFile("xray-junit-extensions", ".properties");
+        XmlReportJournalRecovery.recover(journalFile, tempDirectory, propertiesFile, new PrintWriter(System.out));
+
+        Match firstSuite = $(tempDirectory.resolve("TEST-first.xml").toFile());
+        assertThat(firstSuite.attr("tests")).isEqualTo("1");
+        assertThat(firstSuite.attr("errors")).isEqualTo("0");
+        assertThat(firstSuite.attr("skipped")).isEqualTo("0");
+        Match secondSuite = $(tempDirectory.resolve("TEST-second.xml").toFile());
+        assertThat(secondSuite.attr("tests")).isEqualTo("2");
+        assertThat(secondSuite.attr("errors")).isEqualTo("1");
+        assertThat(secondSuite.attr("skipped")).isEqualTo("1");
+        assertThat(secondSuite.children("testcase").children("error").attr("message"))
+                .isEqualTo(XmlReportJournalRecovery.NOT_FINISHED_MESSAGE);
+    }
+
+    private static void execute(TestExecutionListener listener) {
+        Launcher launcher = LauncherFactory.create(LauncherConfig.builder()
+                .enableTestExecutionListenerAutoRegistration(false)
+                .addTestExecutionListeners(listener)
+                .build());
+        launcher.execute(request().selectors(selectClass(BasicTestExample.class)).build());
+    }
+
+    /**
+     * Journals the events of the run, as the listener does, until the JVM
+     * "dies" while the second test is running.
+     */
+    private static class DyingListener implements TestExecutionListener {
+
+        private final Path journalFile;
+        private XmlReportJournal journal;
+        private XmlReportData reportData;
+        private int finishedTests;
+        private boolean dead;
+
+        DyingListener(Path journalFile) {
+            this.journalFile = journalFile;
+        }
+
+        @Override
+        public void testPlanExecutionStarted(TestPlan testPlan) {
+            try {
+                this.journal = XmlReportJournal.open(this.journalFile);
+                this.journal.recordTestPlan(testPlan);
+                this.reportData = new XmlReportData(testPlan, Clock.systemDefaultZone(), this.journal);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void executionStarted(TestIdentifier testIdentifier) {
+            if (!this.dead) {
+                this.reportData.markStarted(testIdentifier);
+                this.dead = testIdentifier.isTest() && this.finishedTests == 1;
+            }
+        }
+
+        @Override
+        public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult result) {
+            if (!this.dead) {
+                if (testIdentifier.isTest()) {
+                    this.reportData.addReportEntry(testIdentifier, ReportEntry.from("stdout", "output of the first test"));
+                    this.finishedTests++;
+                }
+                this.reportData.markFinished(testIdentifier, result);
+            }
+        }
+
+        // unlike the listener, the journal is kept, as if the JVM had died
+        @Override
+        public void testPlanExecutionFinished(TestPlan testPlan) {
+            try {
+                this.journal.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2025-2025 the original author or authors.
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v2.0 which
+ * accompanies this distribution and is available at
+ *
+ * https://www.eclipse.org/legal/epl-v20.html
+ */
+
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.platform.engine.UniqueId;
+import org.junit.platform.engine.support.descriptor.AbstractTestDescriptor;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.TestIdentifier;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class XrayTestIndexTest {
+
+    @TempDir
+    Path tempDirectory;
+
+    @Test
+    void shouldLookupIndexedMethods() throws Exception {
+        XrayTestIndex index = loadIndex(String.join("\n",
+                "com.example.SampleTest\\#=",
+                "com.example.SampleTest\\#annotated(int,\\ [Ljava.lang.String;)=",
+                "com.example.SampleTest\\#annotated(int,\\ [Ljava.lang.String;).xrayTest=true",
+                "com.example.SampleTest\\#annotated(int,\\ [Ljava.lang.String;).key=CALC-1",
+                "com.example.SampleTest\\#annotated(int,\\ [Ljava.lang.String;).summary=some\\: summary",
+                "com.example.SampleTest\\#annotated(int,\\ [Ljava.lang.String;).requirement=true",
+                "com.example.SampleTest\\#annotated(int,\\ [Ljava.lang.String;).requirements.0=REQ-1,\\ part\\ 2",
+                "com.example.SampleTest\\#annotated(int,\\ [Ljava.lang.String;).requirements.1=REQ-2",
+                ""));
+
+        XrayTestIndex.Entry entry = index.lookup(MethodSource.from("com.example.SampleTest", "annotated", "int, [Ljava.lang.String;"));
+
+        assertThat(entry).isNotNull();
+        assertThat(entry.hasXrayTest()).isTrue();
+        assertThat(entry.hasRequirement()).isTrue();
+        assertThat(entry.getKey()).hasValue("CALC-1");
+        assertThat(entry.getSummary()).hasValue("some: summary");
+        assertThat(entry.getId()).isEmpty();
+        assertThat(entry.getDescription()).isEmpty();
+        assertThat(entry.getRequirements()).containsExactly("REQ-1, part 2", "REQ-2");
+        assertThat(entry.getDisplayName()).isEmpty();
+        assertThat(entry.isTestFactory()).isFalse();
+        assertThat(entry.hasDisplayNameGeneration()).isFalse();
+    }
+
+    @Test
+    void shouldKeepRequirementsInOrderOfTheirIndex() throws Exception {
+        StringBuilder content = new StringBuilder("com.example.SampleTest\\#=\n");
+        for (int i = 11; i >= 0; i--) {
+            content.append("com.example.SampleTest\\#annotated().requirements.").append(i).append("=REQ-").append(i).append('\n');
+        }
+        XrayTestIndex index = loadIndex(content.toString());
+
+        assertThat(index.lookup(MethodSource.from("com.example.SampleTest", "annotated", "")).getRequirements())
+                .containsExactly("REQ-0", "REQ-1", "REQ-2", "REQ-3", "REQ-4", "REQ-5", "REQ-6", "REQ-7", "REQ-8", "REQ-9", "REQ-10", "REQ-11");
+    }
+
+    @Test
+    void shouldLookupDisplayNameFacts() throws Exception {
+        XrayTestIndex index = loadIndex(String.join("\n",
+                "com.example.SampleTest\\#=displayNameGeneration",
+                "com.example.SampleTest\\#named()=",
+                "com.example.SampleTest\\#named().displayName=custom\\ name",
+                "com.example.SampleTest\\#factory()=",
+                "com.example.SampleTest\\#factory().testFactory=true",
+                ""));
+
+        XrayTestIndex.Entry named = index.lookup(MethodSource.from("com.example.SampleTest", "named", ""));
+        assertThat(named.getDisplayName()).hasValue("custom name");
+        assertThat(named.hasDisplayNameGeneration()).isTrue();
+        assertThat(named.hasXrayTest()).isFalse();
+        assertThat(index.lookup(MethodSource.from("com.example.SampleTest", "factory", "")).isTestFactory()).isTrue();
+    }
+
+    @Test
+    void shouldLeaveMethodsOutsideOfTheIndexToReflection() throws Exception {
+        XrayTestIndex index = loadIndex("com.example.SampleTest\\#=\ncom.example.SampleTest\\#notAnnotated()=\n");
+
+        XrayTestIndex.Entry notAnnotated = index.lookup(MethodSource.from("com.example.SampleTest", "notAnnotated", ""));
+        assertThat(notAnnotated).isNotNull();
+        assertThat(notAnnotated.hasXrayTest()).isFalse();
+        assertThat(notAnnotated.hasRequirement()).isFalse();
+        assertThat(notAnnotated.getRequirements()).isEmpty();
+        // e.g. inherited from a class that was not indexed
+        assertThat(index.lookup(MethodSource.from("com.example.SampleTest", "inherited", ""))).isNull();
+        assertThat(index.lookup(MethodSource.from("com.example.OtherTest", "someTest", ""))).isNull();
+    }
+
+    @Test
+    void shouldResolveMetadataOfIndexedTestsWithoutLoadingTheirClass() throws Exception {
+        // no such class exists, so anything not taken from the index would be empty
+        writeIndex(String.join("\n",
+                "com.example.MissingTest\\#=displayNameGeneration",
+                "com.example.MissingTest\\#annotated()=",
+                "com.example.MissingTest\\#annotated().requirement=true",
+                "com.example.MissingTest\\#annotated().requirements.0=REQ-1",
+                "com.example.MissingTest\\#named()=",
+                "com.example.MissingTest\\#named().displayName=custom\\ name",
+                ""));
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { tempDirectory.toUri().toURL() }, null)) {
+            Thread.currentThread().setContextClassLoader(classLoader);
+            DefaultXrayTestMetadataReader reader = new DefaultXrayTestMetadataReader();
+            TestIdentifier annotated = testIdentifier("annotated", "annotated display name");
+            TestIdentifier named = testIdentifier("named", "named display name");
+
+            assertThat(reader.isAnnotated(annotated)).isTrue();
+            assertThat(reader.getRequirements(annotated)).containsExactly("REQ-1");
+            assertThat(reader.getSummary(annotated)).hasValue("annotated display name");
+            assertThat(reader.isAnnotated(named)).isFalse();
+            assertThat(reader.getSummary(named)).hasValue("custom name");
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    @Test
+    void shouldBeEmptyWithoutIndexResource() throws Exception {
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { tempDirectory.toUri().toURL() }, null)) {
+            assertThat(XrayTestIndex.load(classLoader).isEmpty()).isTrue();
+        }
+    }
+
+    private XrayTestIndex loadIndex(String content) throws Exception {
+        writeIndex(content);
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { tempDirectory.toUri().toURL() }, null)) {
+            return XrayTestIndex.load(classLoader);
+        }
+    }
+
+    private void writeIndex(String content) throws Exception {
+        Path resource = tempDirectory.resolve(XrayTestIndex.RESOURCE_NAME);
+        Files.createDirectories(resource.getParent());
+        Files.write(resource, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static TestIdentifier testIdentifier(String methodName, String displayName) {
+        UniqueId uniqueId = UniqueId.forEngine("junit-jupiter").append("method", methodName + "()");
+        return TestIdentifier.from(new AbstractTestDescriptor(uniqueId, displayName, MethodSource.from("com.example.MissingTest", methodName, "")) {
+            @Override
+            public Type getType() {
+                return Type.TEST;
+            }
+        });
+    }
+}
@@ -0,0 +1,19 @@
+package app.getxray.xray.junit.customjunitxml;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(XrayTestReporterParameterResolver.class)
+public class XrayTestReporterInBeforeAllTestExample {
+
+    @BeforeAll
+    static void setUp(XrayTestReporter xrayReporter) {
+        xrayReporter.addComment("from the class");
+    }
+
+    @Test
+    public void testWithTestRunComment(XrayTestReporter xrayReporter) {
+        xrayReporter.addComment("from the test");
+    }
+}